@@ -0,0 +1,68 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.web.AppUriMapper;
+import com.danielflower.apprunner.web.ProxyMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the routing table based {@link AppUriMapper} with the original split-and-resolve implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppUriMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int apps;
+
+    private AppUriMapper mapper;
+    private LegacyAppUriMapper legacyMapper;
+    private StubRequest[] requests;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        ProxyMap proxyMap = new ProxyMap();
+        mapper = new AppUriMapper(proxyMap);
+        legacyMapper = new LegacyAppUriMapper();
+        for (int i = 0; i < apps; i++) {
+            String name = "app-" + i;
+            URL url = new URL("http://localhost:" + (20000 + i) + "/" + name);
+            proxyMap.add(name, url);
+            legacyMapper.add(name, url);
+        }
+        Random random = new Random(42);
+        requests = new StubRequest[1024];
+        for (int i = 0; i < requests.length; i++) {
+            String name = "app-" + random.nextInt(apps);
+            requests[i] = new StubRequest(i % 2 == 0
+                ? "/" + name + "/static/css/site.css"
+                : "/" + name + "/api/search?q=hello%20world&page=" + i);
+        }
+    }
+
+    private StubRequest nextRequest() {
+        return requests[next++ & (requests.length - 1)];
+    }
+
+    @Benchmark
+    public URI routingTable() throws Exception {
+        StubRequest request = nextRequest();
+        URI target = mapper.mapFrom(request);
+        mapper.onComplete(request, null, target, 0);
+        return target;
+    }
+
+    @Benchmark
+    public URI legacy() throws Exception {
+        return legacyMapper.mapFrom(nextRequest());
+    }
+}
@@ -0,0 +1,67 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.io.RingBuffer;
+import org.apache.commons.collections4.queue.CircularFifoQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the console log ring buffer with the synchronized queue of strings it replaced, with several
+ * processes writing output while a reader takes snapshots (as the console.log endpoint does).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsoleLogBenchmark {
+
+    private static final String LINE = "2024-01-01 12:00:00,000 [worker-3] INFO  com.example.Handler - Handled GET /my-app/things in 3ms\n";
+
+    private RingBuffer ringBuffer;
+    private CircularFifoQueue<String> legacy;
+
+    @Setup
+    public void setup() {
+        ringBuffer = RingBuffer.withCapacityInMB(1);
+        legacy = new CircularFifoQueue<>(5000);
+        for (int i = 0; i < 20000; i++) {
+            ringBuffer.consumeLine(LINE);
+            legacy.add(LINE);
+        }
+    }
+
+    @Benchmark
+    @Group("ringBuffer")
+    @GroupThreads(2)
+    public void ringBufferWrite() {
+        ringBuffer.consumeLine(LINE);
+    }
+
+    @Benchmark
+    @Group("ringBuffer")
+    @GroupThreads(1)
+    public byte[] ringBufferSnapshot() {
+        return ringBuffer.snapshot();
+    }
+
+    @Benchmark
+    @Group("legacy")
+    @GroupThreads(2)
+    public void legacyWrite() {
+        synchronized (legacy) {
+            legacy.add(LINE);
+        }
+    }
+
+    @Benchmark
+    @Group("legacy")
+    @GroupThreads(1)
+    public String legacySnapshot() {
+        synchronized (legacy) {
+            return String.join("", legacy);
+        }
+    }
+}
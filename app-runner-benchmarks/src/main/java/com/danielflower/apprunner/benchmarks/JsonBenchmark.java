@@ -0,0 +1,64 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.AppEstate;
+import com.danielflower.apprunner.AppRunnerHooks;
+import com.danielflower.apprunner.Config;
+import com.danielflower.apprunner.mgmt.BuildQueue;
+import com.danielflower.apprunner.mgmt.BuildStatus;
+import com.danielflower.apprunner.mgmt.SystemInfo;
+import com.danielflower.apprunner.web.ProxyMap;
+import com.danielflower.apprunner.web.v1.AppResource;
+import io.muserver.rest.MuRuntimeDelegate;
+import jakarta.ws.rs.core.Response;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON serialisation done by the REST API when listing apps and their build statuses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"10", "100"})
+    public int apps;
+
+    private AppResource appResource;
+    private StubUriInfo uriInfo;
+    private BuildStatus buildStatus;
+
+    @Setup
+    public void setup() throws Exception {
+        MuRuntimeDelegate.ensureSet();
+        AppRunnerHooks hooks = new AppRunnerHooks() {};
+        AppEstate estate = new AppEstate(new Config(new HashMap<>()), new ProxyMap(), null, null, hooks, new BuildQueue(1));
+        for (int i = 0; i < apps; i++) {
+            estate.add(new StubApp("app-" + i, 20));
+        }
+        appResource = new AppResource(estate, SystemInfo.create(), null, hooks);
+        uriInfo = new StubUriInfo("https://apprunner.example.org/api/v1/apps");
+        buildStatus = estate.app("app-0").get().lastBuildStatus();
+    }
+
+    @Benchmark
+    public JSONObject buildStatusToJSON() {
+        return buildStatus.toJSON();
+    }
+
+    @Benchmark
+    public Response singleApp() {
+        return appResource.app(uriInfo, "app-0");
+    }
+
+    @Benchmark
+    public String allApps() {
+        return appResource.apps(uriInfo);
+    }
+}
@@ -0,0 +1,34 @@
+package com.danielflower.apprunner.benchmarks;
+
+import io.muserver.MuRequest;
+import io.muserver.murp.UriMapper;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The URI mapper as it was before the routing table was introduced, kept as a baseline for comparison.
+ */
+public class LegacyAppUriMapper implements UriMapper {
+
+    private final ConcurrentHashMap<String, URL> mapping = new ConcurrentHashMap<>();
+
+    public void add(String prefix, URL url) {
+        mapping.put(prefix, url);
+    }
+
+    @Override
+    public URI mapFrom(MuRequest request) throws Exception {
+        String[] segments = request.uri().getPath().split("/", 3);
+        if (segments.length > 1 && !segments[1].isEmpty()) {
+            URL url = mapping.get(segments[1]);
+            if (url == null) {
+                return null;
+            }
+            String qs = request.uri().getRawQuery() == null ? "" : "?" + request.uri().getRawQuery();
+            return url.toURI().resolve(request.uri().getRawPath() + qs);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.web.ProxyMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures app lookups in the proxy map, both on their own and while another thread is continually
+ * redeploying apps (i.e. replacing their mappings).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyMapBenchmark {
+
+    @Param({"100"})
+    public int apps;
+
+    private ProxyMap proxyMap;
+    private String[] names;
+    private URL[] urls;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int bound) {
+            int i = next++;
+            if (next == bound) {
+                next = 0;
+            }
+            return i;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        proxyMap = new ProxyMap();
+        names = new String[apps];
+        urls = new URL[apps];
+        for (int i = 0; i < apps; i++) {
+            names[i] = "app-" + i;
+            urls[i] = new URL("http://localhost:" + (20000 + i) + "/" + names[i]);
+            proxyMap.add(names[i], urls[i]);
+        }
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public URL getOnly(Cursor cursor) {
+        return proxyMap.get(names[cursor.next(apps)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public URL get(Cursor cursor) {
+        return proxyMap.get(names[cursor.next(apps)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void add(Cursor cursor) {
+        int i = cursor.next(apps);
+        proxyMap.add(names[i], urls[i]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.AppEstate;
+import com.danielflower.apprunner.AppRunnerHooks;
+import com.danielflower.apprunner.Config;
+import com.danielflower.apprunner.StartupScheduler;
+import com.danielflower.apprunner.mgmt.BuildQueue;
+import com.danielflower.apprunner.mgmt.SystemInfo;
+import com.danielflower.apprunner.web.ProxyMap;
+import com.danielflower.apprunner.web.UpstreamClientSettings;
+import com.danielflower.apprunner.web.UpstreamClients;
+import com.danielflower.apprunner.web.WebServer;
+import com.danielflower.apprunner.web.v1.AppResource;
+import com.danielflower.apprunner.web.v1.SystemResource;
+import io.muserver.Method;
+import io.muserver.MuServer;
+import io.muserver.MuServerBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests through the full App Runner web server and reverse proxy to a stub app running in the same JVM.
+ * Use the sample time results to compare latency percentiles between mu-server or murp versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class ProxyThroughputBenchmark {
+
+    @Param({"64", "16384"})
+    public int responseSize;
+
+    private MuServer stubApp;
+    private WebServer webServer;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] body = new byte[responseSize];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        String bodyText = new String(body);
+        stubApp = MuServerBuilder.httpServer()
+            .addHandler(Method.GET, "/stub-app/hello", (req, resp, pathParams) -> {
+                resp.contentType("text/plain");
+                resp.write(bodyText);
+            })
+            .start();
+
+        ProxyMap proxyMap = new ProxyMap();
+        proxyMap.add("stub-app", new URL(stubApp.uri().toString() + "/stub-app"));
+
+        AppRunnerHooks hooks = new AppRunnerHooks() {};
+        SystemInfo systemInfo = SystemInfo.create();
+        AppEstate estate = new AppEstate(new Config(new HashMap<>()), proxyMap, null, null, hooks, new BuildQueue(1));
+        int port = WebServer.getAFreePort();
+        UpstreamClients upstreamClients = new UpstreamClients(proxyMap, appName -> UpstreamClientSettings.DEFAULT);
+        webServer = new WebServer(port, -1, null, null, -1, proxyMap, upstreamClients, "stub-app",
+            new SystemResource(systemInfo, new StartupScheduler(1, app -> 0), new BuildQueue(1), List.of(), null, upstreamClients),
+            new AppResource(estate, systemInfo, null, hooks), 30000, 60000, "apprunner", 1024 * 1024);
+        webServer.start();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/stub-app/hello")).build();
+    }
+
+    @TearDown
+    public void stop() {
+        webServer.close();
+        stubApp.stop();
+    }
+
+    @Benchmark
+    public int proxiedGet() throws Exception {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected response " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
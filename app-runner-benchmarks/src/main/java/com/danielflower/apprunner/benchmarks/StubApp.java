@@ -0,0 +1,121 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.io.ChunkedLog;
+import com.danielflower.apprunner.io.RingBuffer;
+import com.danielflower.apprunner.mgmt.AppDescription;
+import com.danielflower.apprunner.mgmt.Availability;
+import com.danielflower.apprunner.mgmt.BuildHistory;
+import com.danielflower.apprunner.mgmt.BuildStatus;
+import com.danielflower.apprunner.mgmt.GitCommit;
+import com.danielflower.apprunner.mgmt.ProcessHistory;
+import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * An app that has had a successful build, with enough data to make its JSON representation realistic.
+ */
+class StubApp implements AppDescription {
+    private final String name;
+    private final String gitUrl;
+    private final BuildStatus lastBuild;
+    private final ArrayList<String> contributors = new ArrayList<>();
+    private final ChunkedLog buildLog = new ChunkedLog();
+    private final BuildHistory buildHistory = new BuildHistory(new File("target/stub-build-history"), 1, 0);
+    private final RingBuffer consoleLog = new RingBuffer(1024);
+    private final ProcessHistory processHistory = new ProcessHistory(Collections::emptyList);
+
+    StubApp(String name, int contributorCount) {
+        this.name = name;
+        this.gitUrl = "https://github.com/example/" + name + ".git";
+        Instant start = Instant.parse("2024-01-01T10:15:30Z");
+        GitCommit commit = new GitCommit("3b18e512dba79e4c8300dd08aeb37f8e728b8dad", new Date(start.toEpochMilli()),
+            "Some Author", "Fixed the thing that was broken\n\nIt was broken because of reasons");
+        this.lastBuild = BuildStatus.success(start, start.plusSeconds(42), gitUrl, commit, "maven");
+        for (int i = contributorCount; i > 0; i--) {
+            contributors.add("Contributor " + i);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String gitUrl() {
+        return gitUrl;
+    }
+
+    public void gitUrl(String url) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Availability currentAvailability() {
+        return Availability.available();
+    }
+
+    public BuildStatus lastBuildStatus() {
+        return lastBuild;
+    }
+
+    public BuildStatus lastSuccessfulBuild() {
+        return lastBuild;
+    }
+
+    public String latestBuildLog() {
+        return buildLog.asString();
+    }
+
+    @Override
+    public ChunkedLog buildLog() {
+        return buildLog;
+    }
+
+    @Override
+    public BuildHistory buildHistory() {
+        return buildHistory;
+    }
+
+    public String latestConsoleLog() {
+        return "";
+    }
+
+    @Override
+    public RingBuffer consoleLog() {
+        return consoleLog;
+    }
+
+    public ArrayList<String> contributors() {
+        return contributors;
+    }
+
+    public File dataDir() {
+        return null;
+    }
+
+    public Map<String, Long> resourceUsage() {
+        return Collections.emptyMap();
+    }
+
+    public ProcessHistory processHistory() {
+        return processHistory;
+    }
+
+    public void stopApp() {
+    }
+
+    public void update(AppRunnerFactoryProvider runnerProvider, InvocationOutputHandler outputHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void clearBuildCaches() {
+    }
+
+    public void delete() {
+    }
+}
@@ -0,0 +1,152 @@
+package com.danielflower.apprunner.benchmarks;
+
+import io.muserver.*;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A request that only has a URI and attributes, for benchmarking code that does not need a real server.
+ */
+class StubRequest implements MuRequest {
+    private final URI uri;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    StubRequest(String relativeUri) {
+        this.uri = URI.create("https://apprunner.example.org" + relativeUri);
+    }
+
+    @Override
+    public String contentType() {
+        return null;
+    }
+
+    @Override
+    public long startTime() {
+        return 0;
+    }
+
+    @Override
+    public Method method() {
+        return Method.GET;
+    }
+
+    @Override
+    public URI uri() {
+        return uri;
+    }
+
+    @Override
+    public URI serverURI() {
+        return uri;
+    }
+
+    @Override
+    public Headers headers() {
+        return Headers.http1Headers();
+    }
+
+    @Override
+    public Optional<InputStream> inputStream() {
+        return Optional.empty();
+    }
+
+    @Override
+    public String readBodyAsString() {
+        return "";
+    }
+
+    @Override
+    public List<UploadedFile> uploadedFiles(String name) {
+        return List.of();
+    }
+
+    @Override
+    public UploadedFile uploadedFile(String name) {
+        return null;
+    }
+
+    @Override
+    public RequestParameters query() {
+        return null;
+    }
+
+    @Override
+    public RequestParameters form() {
+        return null;
+    }
+
+    @Override
+    public List<Cookie> cookies() {
+        return List.of();
+    }
+
+    @Override
+    public Optional<String> cookie(String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public String contextPath() {
+        return "";
+    }
+
+    @Override
+    public String relativePath() {
+        return uri.getRawPath();
+    }
+
+    @Override
+    public Object attribute(String key) {
+        return attributes.get(key);
+    }
+
+    @Override
+    public void attribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    @Override
+    public Map<String, Object> attributes() {
+        return attributes;
+    }
+
+    @Override
+    public AsyncHandle handleAsync() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String remoteAddress() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public String clientIP() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public MuServer server() {
+        return null;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return false;
+    }
+
+    @Override
+    public String protocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public HttpConnection connection() {
+        return null;
+    }
+}
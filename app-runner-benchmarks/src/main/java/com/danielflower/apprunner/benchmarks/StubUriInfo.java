@@ -0,0 +1,96 @@
+package com.danielflower.apprunner.benchmarks;
+
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * A UriInfo that only knows the request URI, which is all the app resource uses.
+ */
+class StubUriInfo implements UriInfo {
+    private final URI requestUri;
+
+    StubUriInfo(String requestUri) {
+        this.requestUri = URI.create(requestUri);
+    }
+
+    public URI getRequestUri() {
+        return requestUri;
+    }
+
+    public String getPath() {
+        return requestUri.getPath();
+    }
+
+    public String getPath(boolean decode) {
+        return decode ? requestUri.getPath() : requestUri.getRawPath();
+    }
+
+    public List<PathSegment> getPathSegments() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<PathSegment> getPathSegments(boolean decode) {
+        throw new UnsupportedOperationException();
+    }
+
+    public UriBuilder getRequestUriBuilder() {
+        throw new UnsupportedOperationException();
+    }
+
+    public URI getAbsolutePath() {
+        return requestUri;
+    }
+
+    public UriBuilder getAbsolutePathBuilder() {
+        throw new UnsupportedOperationException();
+    }
+
+    public URI getBaseUri() {
+        return requestUri.resolve("/");
+    }
+
+    public UriBuilder getBaseUriBuilder() {
+        throw new UnsupportedOperationException();
+    }
+
+    public MultivaluedMap<String, String> getPathParameters() {
+        throw new UnsupportedOperationException();
+    }
+
+    public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+        throw new UnsupportedOperationException();
+    }
+
+    public MultivaluedMap<String, String> getQueryParameters() {
+        throw new UnsupportedOperationException();
+    }
+
+    public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<String> getMatchedURIs() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<String> getMatchedURIs(boolean decode) {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<Object> getMatchedResources() {
+        throw new UnsupportedOperationException();
+    }
+
+    public URI resolve(URI uri) {
+        return requestUri.resolve(uri);
+    }
+
+    public URI relativize(URI uri) {
+        return requestUri.relativize(uri);
+    }
+}
@@ -0,0 +1,63 @@
+package com.danielflower.apprunner.benchmarks;
+
+import com.danielflower.apprunner.io.Zippy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures zipping up an app's data directory, as done when downloading app data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZippyBenchmark {
+
+    @Param({"100", "1000"})
+    public int files;
+
+    @Param({"8192"})
+    public int fileSize;
+
+    private File dataDir;
+
+    @Setup
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("zippy-benchmark").toFile();
+        Random random = new Random(42);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < files; i++) {
+            // half random and half repetitive so that the compression ratio is somewhat realistic
+            random.nextBytes(content);
+            for (int j = content.length / 2; j < content.length; j++) {
+                content[j] = (byte) ('a' + j % 26);
+            }
+            Path dir = dataDir.toPath().resolve("dir-" + (i % 10));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("file-" + i + ".dat"), content);
+        }
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(dataDir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void zipDirectory() throws IOException {
+        Zippy.zipDirectory(dataDir, OutputStream.nullOutputStream());
+    }
+}
@@ -3,8 +3,14 @@ package com.danielflower.apprunner;
 import com.danielflower.apprunner.io.OutputToWriterBridge;
 import com.danielflower.apprunner.mgmt.*;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
+import com.danielflower.apprunner.runners.BuildPriority;
+import com.danielflower.apprunner.runners.Cgroup;
 import com.danielflower.apprunner.runners.UnsupportedProjectTypeException;
+import com.danielflower.apprunner.web.LoadBalancer;
 import com.danielflower.apprunner.web.ProxyMap;
+import com.danielflower.apprunner.web.UpstreamClient;
+import com.danielflower.apprunner.web.UpstreamClientSettings;
+import com.danielflower.apprunner.web.UpstreamClients;
 import com.danielflower.apprunner.web.WebServer;
 import com.danielflower.apprunner.web.v1.AppResource;
 import com.danielflower.apprunner.web.v1.SystemResource;
@@ -23,11 +29,8 @@ import javax.crypto.Cipher;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static com.danielflower.apprunner.FileSandbox.fullPath;
 
@@ -37,8 +40,11 @@ public class App {
     private final Config config;
     private WebServer webServer;
     private AppEstate estate;
-    private final AtomicBoolean startupComplete = new AtomicBoolean(false);
+    private StartupScheduler startupScheduler;
+    private RecentTraffic recentTraffic;
+    private UpstreamClients upstreamClients;
     private BackupService backupService;
+    private ProcessSampler processSampler;
 
     public App(Config config) {
         this.config = config;
@@ -56,16 +62,34 @@ public class App {
         GitRepoLoader gitRepoLoader = FileBasedGitRepoLoader.getGitRepoLoader(dataDir);
         addSampleAppIfNoAppsAlreadyThere(gitRepoLoader);
 
-        ProxyMap proxyMap = new ProxyMap();
+        ProxyMap proxyMap = new ProxyMap(appName -> LoadBalancer.fromName(config.getForApp(appName, Config.APP_LOAD_BALANCER, "round-robin")));
+
+        // The JDK client reads these once, so they must be set before the first client is created. They apply to each app's pool.
+        setSystemPropertyIfConfigured("jdk.httpclient.connectionPoolSize", "apprunner.proxy.pool.size");
+        setSystemPropertyIfConfigured("jdk.httpclient.keepalive.timeout", "apprunner.proxy.keepalive.seconds");
+        upstreamClients = new UpstreamClients(proxyMap, appName -> new UpstreamClientSettings(
+            UpstreamClientSettings.parseProtocol(config.getForApp(appName, Config.APP_PROXY_PROTOCOL, "h2c")),
+            config.getIntForApp(appName, Config.APP_PROXY_MAX_CONNECTIONS, 0)));
 
         log.info("Detecting providers...");
         AppRunnerFactoryProvider runnerProvider = AppRunnerFactoryProvider.create(config);
         log.info("Registered providers..." + System.lineSeparator() + runnerProvider.describeRunners());
 
+        int buildConcurrency = config.getInt("apprunner.build.concurrency", 0);
+        if (buildConcurrency < 1) {
+            buildConcurrency = StartupScheduler.defaultConcurrency(systemInfo, config.getLong("apprunner.build.memory.per.build.mb", 1024) * 1024L * 1024L);
+        }
+        BuildQueue buildQueue = new BuildQueue(buildConcurrency);
+        log.info("Up to " + buildConcurrency + " builds will run at once");
+        BuildPriority.lowerBuildPriority(config.getInt("apprunner.build.nice", 10), fileSandbox.tempDir("build-priority"));
+        String cgroupRoot = config.get("apprunner.cgroup.root", "");
+        Cgroup.useRoot(StringUtils.isBlank(cgroupRoot) ? null : new File(cgroupRoot));
+
         estate = new AppEstate(
+            config,
             proxyMap,
             fileSandbox,
-            runnerProvider, config.hooks);
+            runnerProvider, config.hooks, buildQueue);
 
         for (Map.Entry<String, String> repo : gitRepoLoader.loadAll().entrySet()) {
             try {
@@ -75,6 +99,9 @@ public class App {
             }
         }
 
+        processSampler = new ProcessSampler(estate::all, new File("/proc"), config.getInt("apprunner.process.sample.seconds", 10));
+        processSampler.start();
+
         estate.addAppAddedListener(app -> gitRepoLoader.save(app.name(), app.gitUrl()));
         estate.addAppUpdatedListener(app -> gitRepoLoader.save(app.name(), app.gitUrl()));
         estate.addAppDeletedListener(app -> gitRepoLoader.delete(app.name()));
@@ -120,11 +147,25 @@ public class App {
         int totalTimeout = config.getInt("apprunner.proxy.total.timeout", 60000);
 
 
+        recentTraffic = new RecentTraffic(new File(dataDir, "recent-traffic.properties"));
+        int startupConcurrency = config.getInt("apprunner.startup.concurrency", 0);
+        if (startupConcurrency < 1) {
+            startupConcurrency = StartupScheduler.defaultConcurrency(systemInfo, config.getLong("apprunner.startup.memory.per.app.mb", 512) * 1024L * 1024L);
+        }
+        startupScheduler = new StartupScheduler(startupConcurrency, recentTraffic::requests);
+        recentTraffic.start(() -> {
+            Map<String, Long> requests = new HashMap<>();
+            for (UpstreamClient client : upstreamClients.clients()) {
+                requests.put(client.appName(), client.requests());
+            }
+            return requests;
+        }, config.getInt("apprunner.traffic.save.minutes", 5));
+
         AppResource appResource = new AppResource(estate, systemInfo, fileSandbox, config.hooks);
-        SystemResource systemResource = new SystemResource(systemInfo, startupComplete, runnerProvider.factories(), backupService);
+        SystemResource systemResource = new SystemResource(systemInfo, startupScheduler, buildQueue, runnerProvider.factories(), backupService, upstreamClients);
 
         long maxRequestSize = config.getLong("apprunner.request.max.size.bytes", 500 * 1024 * 1024L);
-        webServer = new WebServer(httpPort, httpsPort, sslContext, acmeCertManager, redirectToHttps, proxyMap, defaultAppName,
+        webServer = new WebServer(httpPort, httpsPort, sslContext, acmeCertManager, redirectToHttps, proxyMap, upstreamClients, defaultAppName,
             systemResource, appResource, idleTimeout, totalTimeout, viaName, maxRequestSize);
 
         webServer.start();
@@ -139,27 +180,25 @@ public class App {
     }
 
     private void deployAllAppsAsyncronously(AppEstate estate, String firstAppToStart) {
-        ExecutorService executor = Executors.newFixedThreadPool(2);
-        estate.appsByStartupOrder(firstAppToStart)
-            .forEach(a -> executor.submit(() -> {
-                try (StringBuilderWriter writer = new StringBuilderWriter()) {
-                    try {
-                        estate.update(a.name(), new OutputToWriterBridge(writer));
-                    } catch (Exception e) {
-                        log.warn("Error while starting up " + a.name() + System.lineSeparator() + "Logs:" + System.lineSeparator() + writer, e);
-                    }
+        List<AppDescription> apps = estate.appsByStartupOrder(firstAppToStart).collect(Collectors.toList());
+        startupScheduler.start(apps, firstAppToStart, this::startupDependencies, a -> {
+            try (StringBuilderWriter writer = new StringBuilderWriter()) {
+                try {
+                    estate.update(a.name(), new OutputToWriterBridge(writer));
+                } catch (Exception e) {
+                    log.warn("Error while starting up " + a.name() + System.lineSeparator() + "Logs:" + System.lineSeparator() + writer, e);
+                    throw e;
                 }
-            }));
-        executor.shutdown();
-
-        new Thread(() -> {
-            try {
-                executor.awaitTermination(1, TimeUnit.HOURS);
-                startupComplete.set(true);
-            } catch (InterruptedException e) {
-                log.info("Interupted exception while awaiting startup", e);
             }
-        }).start();
+        });
+    }
+
+    private Set<String> startupDependencies(String appName) {
+        String value = config.getForApp(appName, Config.APP_DEPENDS_ON, "");
+        return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(StringUtils::isNotEmpty)
+            .collect(Collectors.toSet());
     }
 
     private void deleteOldTempFiles(File tempDir) {
@@ -173,6 +212,13 @@ public class App {
         }
     }
 
+    private void setSystemPropertyIfConfigured(String systemProperty, String configKey) {
+        String value = config.get(configKey, null);
+        if (StringUtils.isNotBlank(value) && System.getProperty(systemProperty) == null) {
+            System.setProperty(systemProperty, value);
+        }
+    }
+
     private void addSampleAppIfNoAppsAlreadyThere(GitRepoLoader gitRepoLoader) throws Exception {
         if (gitRepoLoader.loadAll().isEmpty()) {
             String url = config.get(Config.INITIAL_APP_URL, null);
@@ -194,6 +240,14 @@ public class App {
                 Thread.interrupted();
             }
         }
+        if (processSampler != null) {
+            processSampler.stop();
+            processSampler = null;
+        }
+        if (recentTraffic != null) {
+            recentTraffic.stop();
+            recentTraffic = null;
+        }
         if (webServer != null) {
             log.info("Stopping apps");
             estate.shutdown();
@@ -2,6 +2,7 @@ package com.danielflower.apprunner;
 
 import com.danielflower.apprunner.mgmt.AppDescription;
 import com.danielflower.apprunner.mgmt.AppManager;
+import com.danielflower.apprunner.mgmt.BuildQueue;
 import com.danielflower.apprunner.problems.AppNotFoundException;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
 import com.danielflower.apprunner.runners.UnsupportedProjectTypeException;
@@ -30,8 +31,12 @@ public class AppEstate {
     private final List<AppChangedListener> appDeletedListeners = new ArrayList<>();
     private final AppRunnerFactoryProvider runnerProvider;
     private final AppRunnerHooks appRunnerHooks;
+    private final Config config;
+    private final BuildQueue buildQueue;
 
-    public AppEstate(ProxyMap proxyMap, FileSandbox fileSandbox, AppRunnerFactoryProvider runnerProvider, AppRunnerHooks appRunnerHooks) {
+    public AppEstate(Config config, ProxyMap proxyMap, FileSandbox fileSandbox, AppRunnerFactoryProvider runnerProvider, AppRunnerHooks appRunnerHooks, BuildQueue buildQueue) {
+        this.config = config;
+        this.buildQueue = buildQueue;
         this.proxyMap = proxyMap;
         this.fileSandbox = fileSandbox;
         this.runnerProvider = runnerProvider;
@@ -63,9 +68,12 @@ public class AppEstate {
     public AppDescription addApp(String gitUrl, String appName) throws UnsupportedProjectTypeException, IOException, GitAPIException {
         log.info("Loading app [" + appName + "] (git:" + gitUrl + ")");
         appRunnerHooks.validateGitUrl(gitUrl);
-        AppManager appMan = AppManager.create(gitUrl, fileSandbox, appName);
+        AppManager appMan = AppManager.create(gitUrl, fileSandbox, appName, config, buildQueue);
         runnerProvider.runnerFor(appName, fileSandbox.repoDir(appName));
         appMan.addListener(proxyMap::add);
+        appMan.useRecentRequests(() -> proxyMap.recentRequests(appName));
+        appMan.useShadowTraffic(proxyMap::startShadowing);
+        appMan.useCanaryRouting(proxyMap::startCanary);
         this.add(appMan);
         return appMan;
     }
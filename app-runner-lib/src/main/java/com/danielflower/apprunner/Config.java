@@ -31,6 +31,48 @@ public class Config {
     public static final String GIT_URL_VALIDATION_REGEX = "apprunner.git.url.validation.regex";
     public static final String GIT_URL_VALIDATION_MESSAGE = "apprunner.git.url.validation.message";
 
+    public static final String APP_REPLICAS = "replicas";
+    public static final String APP_LOAD_BALANCER = "load.balancer";
+    public static final String APP_PROXY_PROTOCOL = "proxy.protocol";
+    public static final String APP_PROXY_MAX_CONNECTIONS = "proxy.max.connections";
+    public static final String APP_DRAIN_TIMEOUT = "drain.timeout";
+    public static final String APP_CONSOLE_LOG_MB = "console.log.mb";
+    public static final String APP_BUILD_LOG_SPILL_MB = "build.log.spill.mb";
+    public static final String APP_BUILD_HISTORY_COUNT = "build.history.count";
+    public static final String APP_BUILD_HISTORY_MB = "build.history.mb";
+    public static final String APP_DEPENDS_ON = "depends.on";
+    public static final String APP_BUILD_CACHE_MB = "build.cache.mb";
+    public static final String APP_INSTANCE_MODE = "instance.mode";
+    public static final String APP_DEPENDENCY_SNAPSHOT_MB = "dependency.snapshot.mb";
+    public static final String APP_TOOLCHAIN_CACHE_MB = "toolchain.cache.mb";
+    public static final String APP_GIT_CLIENT = "git.client";
+    public static final String APP_GIT_DEPTH = "git.depth";
+    public static final String APP_GIT_FILTER = "git.filter";
+    public static final String APP_STARTUP_TIMEOUT = "startup.timeout";
+    public static final String APP_STARTUP_HEALTH_PATH = "startup.health.path";
+    public static final String APP_STARTUP_READY_MARKER = "startup.ready.marker";
+    public static final String APP_WARMUP_REQUESTS = "warmup.requests";
+    public static final String APP_WARMUP_LATENCY_MS = "warmup.latency.ms";
+    public static final String APP_WARMUP_TIMEOUT = "warmup.timeout";
+    public static final String APP_WARMUP_SCRIPT = "warmup.script";
+    public static final String APP_SHADOW_PERCENT = "shadow.percent";
+    public static final String APP_SHADOW_DURATION = "shadow.duration";
+    public static final String APP_SHADOW_MAX_SLOWDOWN_PERCENT = "shadow.max.slowdown.percent";
+    public static final String APP_SHADOW_MIN_REQUESTS = "shadow.min.requests";
+    public static final String APP_CANARY_STEPS = "canary.steps";
+    public static final String APP_CANARY_STEP_DURATION = "canary.step.duration";
+    public static final String APP_CANARY_MAX_SLOWDOWN_PERCENT = "canary.max.slowdown.percent";
+    public static final String APP_CANARY_MAX_ERROR_INCREASE_PERCENT = "canary.max.error.increase.percent";
+    public static final String APP_CANARY_MIN_REQUESTS = "canary.min.requests";
+    public static final String APP_CGROUP_CPU_MAX = "cgroup.cpu.max";
+    public static final String APP_CGROUP_CPU_WEIGHT = "cgroup.cpu.weight";
+    public static final String APP_CGROUP_MEMORY_MAX = "cgroup.memory.max";
+    public static final String APP_CGROUP_IO_WEIGHT = "cgroup.io.weight";
+    public static final String APP_CGROUP_BUILD_CPU_MAX = "cgroup.build.cpu.max";
+    public static final String APP_CGROUP_BUILD_CPU_WEIGHT = "cgroup.build.cpu.weight";
+    public static final String APP_CGROUP_BUILD_MEMORY_MAX = "cgroup.build.memory.max";
+    public static final String APP_CGROUP_BUILD_IO_WEIGHT = "cgroup.build.io.weight";
+
     public static final String JAVA_HOME = "java.home";
     public static final String M2_HOME = "m2.home";
     public static final String LEIN_JAR = "lein.jar";
@@ -199,6 +241,32 @@ public class Config {
         }
     }
 
+    /**
+     * Gets a setting for a specific app, where <code>apprunner.app.{appName}.{setting}</code> overrides
+     * <code>apprunner.app.{setting}</code>, which in turn overrides the given default.
+     */
+    public String getForApp(String appName, String setting, String defaultVal) {
+        return get("apprunner.app." + appName + "." + setting, get("apprunner.app." + setting, defaultVal));
+    }
+
+    public int getIntForApp(String appName, String setting, int defaultValue) {
+        String s = getForApp(appName, setting, String.valueOf(defaultValue));
+        try {
+            return Integer.parseInt(s, 10);
+        } catch (NumberFormatException e) {
+            throw new InvalidConfigException("Could not convert " + setting + "=" + s + " for " + appName + " to an integer");
+        }
+    }
+
+    public long getLongForApp(String appName, String setting, long defaultValue) {
+        String s = getForApp(appName, setting, String.valueOf(defaultValue));
+        try {
+            return Long.parseLong(s, 10);
+        } catch (NumberFormatException e) {
+            throw new InvalidConfigException("Could not convert " + setting + "=" + s + " for " + appName + " to an integer");
+        }
+    }
+
     public File getDir(String name) {
         File f = new File(get(name));
         if (!f.isDirectory()) {
@@ -35,6 +35,9 @@ public class FileSandbox {
     public File appDir(String name) {
         return ensureExists("apps/" + name);
     }
+    public File cacheDir(String name) {
+        return ensureExists("cache/" + name);
+    }
 
     private File ensureExists(String relativePath) {
         String path = FilenameUtils.concat(fullPath(root), FilenameUtils.separatorsToSystem(relativePath));
@@ -0,0 +1,126 @@
+package com.danielflower.apprunner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * The number of requests each app received recently, kept across restarts so that the busiest apps can be started first.
+ * <p>
+ * The counts are saved periodically, so they survive a crash or reboot as well as a clean shutdown. Each save adds the
+ * requests received since the previous save, after decaying the existing counts so that they halve every
+ * {@link #HALF_LIFE_MILLIS}, meaning apps that used to be busy gradually lose their priority.
+ */
+public class RecentTraffic {
+    private static final Logger log = LoggerFactory.getLogger(RecentTraffic.class);
+    static final long HALF_LIFE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final File file;
+    private final Map<String, Double> requests = new HashMap<>();
+    private final Map<String, Long> lastTotals = new HashMap<>();
+    private long lastUpdated;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "recent-traffic");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Supplier<Map<String, Long>> totals;
+
+    public RecentTraffic(File file) {
+        this.file = file;
+        this.lastUpdated = System.currentTimeMillis();
+        if (file.isFile()) {
+            Properties props = new Properties();
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                props.load(reader);
+                for (String name : props.stringPropertyNames()) {
+                    requests.put(name, Double.parseDouble(props.getProperty(name)));
+                }
+                lastUpdated = Math.min(lastUpdated, file.lastModified());
+            } catch (Exception e) {
+                log.warn("Could not read " + fullPath(file) + " so apps will start in name order", e);
+            }
+        }
+    }
+
+    public synchronized long requests(String appName) {
+        return Math.round(requests.getOrDefault(appName, 0.0));
+    }
+
+    /**
+     * Starts saving the counts periodically
+     * @param totals The number of requests each app has received since AppRunner started
+     * @param intervalMinutes How often to save the counts. If not positive, they are only saved by {@link #stop()}
+     */
+    public void start(Supplier<Map<String, Long>> totals, int intervalMinutes) {
+        this.totals = totals;
+        if (intervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::update, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Stops the periodic saves and saves the counts one last time
+     */
+    public void stop() {
+        executor.shutdownNow();
+        update();
+    }
+
+    private void update() {
+        if (totals != null) {
+            try {
+                update(totals.get(), System.currentTimeMillis());
+            } catch (Exception e) {
+                log.warn("Could not update the recent request counts", e);
+            }
+        }
+    }
+
+    /**
+     * Decays the existing counts, adds the requests received since the last update, and saves the counts
+     * @param latestTotals The number of requests each app has received since AppRunner started
+     * @param now The current time in millis
+     */
+    synchronized void update(Map<String, Long> latestTotals, long now) {
+        double decay = Math.pow(0.5, Math.max(0, now - lastUpdated) / (double) HALF_LIFE_MILLIS);
+        lastUpdated = now;
+        requests.replaceAll((name, count) -> count * decay);
+        for (Map.Entry<String, Long> entry : latestTotals.entrySet()) {
+            long total = entry.getValue();
+            long previous = lastTotals.getOrDefault(entry.getKey(), 0L);
+            // a lower total means the app's client was recreated, so every request it counted is new
+            long latest = total >= previous ? total - previous : total;
+            lastTotals.put(entry.getKey(), total);
+            requests.merge(entry.getKey(), (double) latest, Double::sum);
+        }
+        requests.values().removeIf(count -> count < 0.5);
+
+        Properties props = new Properties();
+        for (Map.Entry<String, Double> entry : requests.entrySet()) {
+            props.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+                props.store(writer, "Recent requests per app, used to decide which apps to start first");
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save request counts to " + fullPath(file), e);
+        }
+    }
+}
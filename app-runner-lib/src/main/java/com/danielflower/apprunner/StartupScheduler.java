@@ -0,0 +1,207 @@
+package com.danielflower.apprunner;
+
+import com.danielflower.apprunner.mgmt.AppDescription;
+import com.danielflower.apprunner.mgmt.SystemInfo;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Starts all the apps when AppRunner starts, running several builds at once.
+ * <p>
+ * An app is not started until the apps it depends on have finished starting (whether or not they started
+ * successfully). Of the apps that are ready to start, the default app goes first, followed by the apps that
+ * received the most requests recently.
+ */
+public class StartupScheduler {
+    private static final Logger log = LoggerFactory.getLogger(StartupScheduler.class);
+
+    public interface AppStarter {
+        void start(AppDescription app) throws Exception;
+    }
+
+    private final int concurrency;
+    private final ToLongFunction<String> recentRequests;
+    private final ExecutorService executor;
+    private final List<AppDescription> pending = new ArrayList<>();
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Long> running = new LinkedHashMap<>();
+    private final Set<String> finished = new HashSet<>();
+    private final List<String> failed = new ArrayList<>();
+    private AppStarter starter;
+    private String firstAppToStart;
+    private int total;
+    private long startTime;
+    private long endTime;
+    private long totalStartupMillis;
+    private boolean started = false;
+
+    /**
+     * @param concurrency The maximum number of apps to build at once
+     * @param recentRequests Gets the number of recent requests to the given app, where busier apps are started first
+     */
+    public StartupScheduler(int concurrency, ToLongFunction<String> recentRequests) {
+        this.concurrency = Math.max(1, concurrency);
+        this.recentRequests = recentRequests;
+        this.executor = Executors.newFixedThreadPool(this.concurrency);
+    }
+
+    /**
+     * Works out how many apps to build at once, which is one per CPU as long as there is enough free memory for each one
+     * @param systemInfo The system info
+     * @param memoryPerAppInBytes The approximate amount of memory used by a build
+     * @return The number of apps to build concurrently
+     */
+    public static int defaultConcurrency(SystemInfo systemInfo, long memoryPerAppInBytes) {
+        long freeMemory = freePhysicalMemory();
+        int byMemory = freeMemory <= 0 || memoryPerAppInBytes <= 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, freeMemory / memoryPerAppInBytes);
+        return Math.max(1, Math.min(systemInfo.numCpus, byMemory));
+    }
+
+    @SuppressWarnings("deprecation") // the replacement is not available in Java 11
+    private static long freePhysicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize();
+        }
+        return -1;
+    }
+
+    /**
+     * Starts the apps in the background
+     * @param apps The apps to start
+     * @param firstAppToStart The name of an app to start before any others, or null
+     * @param dependenciesOf Gets the names of the apps that the given app needs running before it starts
+     * @param starter Starts a single app
+     */
+    public synchronized void start(List<AppDescription> apps, String firstAppToStart, Function<String, Set<String>> dependenciesOf, AppStarter starter) {
+        if (started) {
+            throw new IllegalStateException("Startup has already been started");
+        }
+        started = true;
+        this.starter = starter;
+        this.firstAppToStart = firstAppToStart;
+        this.total = apps.size();
+        this.startTime = System.currentTimeMillis();
+        Set<String> names = new HashSet<>();
+        for (AppDescription app : apps) {
+            names.add(app.name());
+        }
+        for (AppDescription app : apps) {
+            Set<String> deps = new HashSet<>(dependenciesOf.apply(app.name()));
+            deps.remove(app.name());
+            for (String dep : new ArrayList<>(deps)) {
+                if (!names.contains(dep)) {
+                    log.warn(app.name() + " depends on " + dep + " which is not an app, so the dependency is ignored");
+                    deps.remove(dep);
+                }
+            }
+            dependencies.put(app.name(), deps);
+            pending.add(app);
+        }
+        log.info("Starting " + total + " apps with up to " + concurrency + " at a time");
+        scheduleReadyApps();
+    }
+
+    private synchronized void scheduleReadyApps() {
+        while (running.size() < concurrency && !pending.isEmpty()) {
+            Optional<AppDescription> next = pending.stream()
+                .filter(a -> finished.containsAll(dependencies.get(a.name())))
+                .min(priorityOrder());
+            if (!next.isPresent()) {
+                if (!running.isEmpty()) {
+                    return; // a running app may be what the pending ones are waiting for
+                }
+                AppDescription cyclic = pending.stream().min(priorityOrder()).get();
+                log.warn("The dependencies of " + cyclic.name() + " can never be met as they are circular, so it will be started anyway");
+                next = Optional.of(cyclic);
+            }
+            AppDescription app = next.get();
+            pending.remove(app);
+            running.put(app.name(), System.currentTimeMillis());
+            executor.execute(() -> startApp(app));
+        }
+        if (pending.isEmpty() && running.isEmpty() && endTime == 0) {
+            endTime = System.currentTimeMillis();
+            log.info("Started " + total + " apps in " + (endTime - startTime) + "ms with " + failed.size() + " failure(s)");
+            executor.shutdown();
+        }
+    }
+
+    private Comparator<AppDescription> priorityOrder() {
+        return Comparator.comparing((AppDescription a) -> !a.name().equalsIgnoreCase(firstAppToStart))
+            .thenComparing(Comparator.comparingLong((AppDescription a) -> recentRequests.applyAsLong(a.name())).reversed())
+            .thenComparing(AppDescription::name, String.CASE_INSENSITIVE_ORDER);
+    }
+
+    private void startApp(AppDescription app) {
+        boolean succeeded = false;
+        try {
+            starter.start(app);
+            succeeded = true;
+        } catch (Exception e) {
+            log.warn("Error while starting up " + app.name(), e);
+        } finally {
+            synchronized (this) {
+                Long appStart = running.remove(app.name());
+                totalStartupMillis += System.currentTimeMillis() - appStart;
+                finished.add(app.name());
+                if (!succeeded) {
+                    failed.add(app.name());
+                }
+                scheduleReadyApps();
+            }
+        }
+    }
+
+    /**
+     * @return True if every app has either started or failed to start
+     */
+    public synchronized boolean isComplete() {
+        return started && endTime > 0;
+    }
+
+    /**
+     * Waits for all the apps to start
+     * @return True if startup completed before the timeout
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit) && isComplete();
+    }
+
+    public synchronized JSONObject progressJSON() {
+        long now = System.currentTimeMillis();
+        JSONObject json = new JSONObject()
+            .put("complete", isComplete())
+            .put("concurrency", concurrency)
+            .put("totalApps", total)
+            .put("startedApps", finished.size() - failed.size())
+            .put("failedApps", new JSONArray(failed))
+            .put("pendingApps", pending.size());
+        JSONArray inProgress = new JSONArray();
+        for (Map.Entry<String, Long> entry : running.entrySet()) {
+            inProgress.put(new JSONObject().put("name", entry.getKey()).put("elapsedMillis", now - entry.getValue()));
+        }
+        json.put("inProgress", inProgress);
+        if (started) {
+            json.put("elapsedMillis", (endTime > 0 ? endTime : now) - startTime);
+        }
+        if (!isComplete() && !finished.isEmpty()) {
+            // each remaining app is assumed to take as long as the average so far, spread across the workers
+            long averageMillis = totalStartupMillis / finished.size();
+            int remaining = pending.size() + running.size();
+            json.put("estimatedRemainingMillis", (long) Math.ceil((double) remaining / concurrency) * averageMillis);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,209 @@
+package com.danielflower.apprunner.io;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * An append-only log of lines held in fixed-size chunks, so appending never copies what was already written.
+ * <p>
+ * If a spill file is given, once the log grows past the spill threshold each full chunk is moved from memory to
+ * the file, so only the chunk currently being written to stays in memory. Readers can read any range of the log
+ * while it is being written without blocking the writer.
+ */
+public class ChunkedLog implements LineConsumer, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ChunkedLog.class);
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The chunks in memory, where the first chunk starts at <code>spilled</code>, and all bytes before that are in the file.
+     */
+    private static class Chunks {
+        final long spilled;
+        final byte[][] chunks;
+
+        Chunks(long spilled, byte[][] chunks) {
+            this.spilled = spilled;
+            this.chunks = chunks;
+        }
+    }
+
+    private final File spillFile;
+    private final long spillThreshold;
+    private FileChannel spillChannel;
+    private volatile Chunks chunks = new Chunks(0, new byte[0][]);
+    private volatile long length = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a log that is only held in memory
+     */
+    public ChunkedLog() {
+        this(null, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param spillFile The file to move the log to once it gets big, or null to always keep it in memory
+     * @param spillThreshold The size in bytes that the log can grow to before it is moved to the spill file
+     */
+    public ChunkedLog(File spillFile, long spillThreshold) {
+        this.spillFile = spillFile;
+        this.spillThreshold = spillFile == null ? Long.MAX_VALUE : spillThreshold;
+    }
+
+    /**
+     * Appends the line followed by a line separator
+     */
+    @Override
+    public void consumeLine(String line) {
+        byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        append(bytes);
+    }
+
+    public synchronized void append(byte[] bytes) {
+        if (closed) {
+            return;
+        }
+        long len = length;
+        int offset = 0;
+        while (offset < bytes.length) {
+            int positionInChunk = (int) (len % CHUNK_SIZE);
+            byte[] chunk;
+            if (positionInChunk == 0) {
+                chunk = newChunk(len);
+            } else {
+                byte[][] current = chunks.chunks;
+                chunk = current[current.length - 1];
+            }
+            int toCopy = Math.min(bytes.length - offset, CHUNK_SIZE - positionInChunk);
+            System.arraycopy(bytes, offset, chunk, positionInChunk, toCopy);
+            offset += toCopy;
+            len += toCopy;
+        }
+        length = len;
+    }
+
+    private byte[] newChunk(long position) {
+        Chunks current = chunks;
+        long spilled = current.spilled;
+        byte[][] keep = current.chunks;
+        if (position > spillThreshold && spillFull(current)) {
+            spilled = position;
+            keep = new byte[0][];
+        }
+        byte[] chunk = new byte[CHUNK_SIZE];
+        byte[][] updated = Arrays.copyOf(keep, keep.length + 1);
+        updated[keep.length] = chunk;
+        chunks = new Chunks(spilled, updated);
+        return chunk;
+    }
+
+    private boolean spillFull(Chunks current) {
+        try {
+            if (spillChannel == null) {
+                FileUtils.forceMkdirParent(spillFile);
+                spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE, StandardOpenOption.READ);
+            }
+            long position = current.spilled;
+            for (byte[] chunk : current.chunks) {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                while (buffer.hasRemaining()) {
+                    position += spillChannel.write(buffer, position);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not write log to " + fullPath(spillFile) + " so it will be kept in memory", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return The number of bytes in the log
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Writes part of the log to the given stream
+     * @param from The position of the first byte to write
+     * @param to The position after the last byte to write. If past the end, then it writes to the end.
+     * @param out The stream to write to
+     * @return The number of bytes written
+     * @throws IOException Thrown if the log could not be read or the stream could not be written to
+     */
+    public long writeTo(long from, long to, OutputStream out) throws IOException {
+        long end = Math.min(to, length); // read the length before the chunks, so the chunks are at least as new
+        Chunks snapshot = chunks;
+        long position = Math.max(0, from);
+        if (position < snapshot.spilled) {
+            long fileEnd = Math.min(end, snapshot.spilled);
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            while (position < fileEnd) {
+                buffer.clear().limit((int) Math.min(CHUNK_SIZE, fileEnd - position));
+                int read = spillChannel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + fullPath(spillFile));
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+            }
+        }
+        while (position < end) {
+            long offsetInMemory = position - snapshot.spilled;
+            byte[] chunk = snapshot.chunks[(int) (offsetInMemory / CHUNK_SIZE)];
+            int positionInChunk = (int) (offsetInMemory % CHUNK_SIZE);
+            int toWrite = (int) Math.min(end - position, CHUNK_SIZE - positionInChunk);
+            out.write(chunk, positionInChunk, toWrite);
+            position += toWrite;
+        }
+        return Math.max(0, end - Math.max(0, from));
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(0, Long.MAX_VALUE, out);
+    }
+
+    /**
+     * @return The whole log as a string. Prefer {@link #writeTo(OutputStream)} for large logs.
+     */
+    public String asString() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            log.warn("Could not read log", e);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stops accepting new lines, and deletes the spill file if there is one. Reads in progress may fail.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+            } catch (IOException e) {
+                log.info("Error closing " + fullPath(spillFile), e);
+            }
+            FileUtils.deleteQuietly(spillFile);
+        }
+    }
+}
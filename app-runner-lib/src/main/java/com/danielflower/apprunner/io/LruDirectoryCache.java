@@ -0,0 +1,172 @@
+package com.danielflower.apprunner.io;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * A directory of cached directories with a total size budget, where the least recently used entries are deleted
+ * when the budget is exceeded.
+ * <p>
+ * Each entry is a directory named after its key, with a sibling <code>.size</code> file that records the size of
+ * the entry and whose modification time records when the entry was last used. The size file is only written once
+ * the entry is complete, so directories without one are partially written entries and are deleted on startup.
+ */
+public class LruDirectoryCache {
+    private static final Logger log = LoggerFactory.getLogger(LruDirectoryCache.class);
+    private static final String SIZE_SUFFIX = ".size";
+
+    private final File root;
+    private final long maxBytes;
+    private final int inUseEntries;
+    private final String description;
+
+    /**
+     * @param inUseEntries The number of most recently used entries that may be in use and so are never evicted
+     * @param description What the entries are, used in log messages, such as "cached build"
+     */
+    public LruDirectoryCache(File root, long maxBytes, int inUseEntries, String description) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+        this.inUseEntries = inUseEntries;
+        this.description = description;
+        File[] incomplete = root.listFiles(f -> f.isDirectory() && !sizeFile(f.getName()).isFile());
+        if (incomplete != null) {
+            for (File dir : incomplete) {
+                FileUtils.deleteQuietly(dir);
+            }
+        }
+    }
+
+    /**
+     * @return The lowercase hex SHA-256 hash of the given bytes, for use as a key
+     */
+    public static String sha256Hex(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is always available", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return The entry for the given key, or null if there is no complete entry. Looking up an entry marks it as used.
+     */
+    public File lookup(String key) {
+        File entry = new File(root, key);
+        File sizeFile = sizeFile(key);
+        if (!isEnabled() || !entry.isDirectory() || !sizeFile.isFile()) {
+            return null;
+        }
+        if (!sizeFile.setLastModified(System.currentTimeMillis())) {
+            log.info("Could not update the last used time of " + fullPath(sizeFile));
+        }
+        return entry;
+    }
+
+    /**
+     * Deletes any existing entry for the key and returns its directory, which is not created. Once its contents
+     * have been written, call {@link #complete(String)}.
+     */
+    public File newEntry(String key) throws IOException {
+        File entry = new File(root, key);
+        FileUtils.deleteQuietly(sizeFile(key));
+        FileUtils.deleteDirectory(entry);
+        return entry;
+    }
+
+    /**
+     * Marks the entry as complete, and then removes the least recently used entries if over budget
+     */
+    public void complete(String key) throws IOException {
+        long size = FileUtils.sizeOfDirectory(new File(root, key));
+        FileUtils.writeStringToFile(sizeFile(key), String.valueOf(size), StandardCharsets.UTF_8);
+        evictLeastRecentlyUsed(key);
+    }
+
+    /**
+     * Forgets every entry. The files of entries that may be in use are left until the next startup.
+     */
+    public void clear() throws IOException {
+        List<File> sizeFiles = sizeFilesOldestFirst();
+        for (int i = 0; i < sizeFiles.size(); i++) {
+            File sizeFile = sizeFiles.get(i);
+            FileUtils.forceDelete(sizeFile);
+            if (i < sizeFiles.size() - inUseEntries) {
+                FileUtils.deleteDirectory(new File(root, keyOf(sizeFile)));
+            }
+        }
+    }
+
+    private void evictLeastRecentlyUsed(String keep) {
+        List<File> oldestFirst = sizeFilesOldestFirst();
+        long total = 0;
+        for (File sizeFile : oldestFirst) {
+            total += sizeOf(sizeFile);
+        }
+        for (File sizeFile : oldestFirst.subList(0, Math.max(0, oldestFirst.size() - inUseEntries))) {
+            if (total <= maxBytes) {
+                break;
+            }
+            String key = keyOf(sizeFile);
+            if (key.equals(keep)) {
+                continue;
+            }
+            log.info("Evicting " + description + " " + key + " from " + fullPath(root));
+            total -= sizeOf(sizeFile);
+            FileUtils.deleteQuietly(sizeFile);
+            FileUtils.deleteQuietly(new File(root, key));
+        }
+    }
+
+    private List<File> sizeFilesOldestFirst() {
+        File[] sizeFiles = root.listFiles((dir, name) -> name.endsWith(SIZE_SUFFIX));
+        List<File> oldestFirst = sizeFiles == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(sizeFiles));
+        oldestFirst.sort(Comparator.comparingLong(File::lastModified));
+        return oldestFirst;
+    }
+
+    private File sizeFile(String key) {
+        return new File(root, key + SIZE_SUFFIX);
+    }
+
+    private static String keyOf(File sizeFile) {
+        return sizeFile.getName().substring(0, sizeFile.getName().length() - SIZE_SUFFIX.length());
+    }
+
+    private static long sizeOf(File sizeFile) {
+        try {
+            return Long.parseLong(FileUtils.readFileToString(sizeFile, StandardCharsets.UTF_8).trim());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.danielflower.apprunner.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size byte buffer that keeps the most recently written bytes, overwriting the oldest ones when full.
+ * <p>
+ * Positions are absolute byte offsets since the buffer was created, so they only ever increase. Writers reserve
+ * a range of positions, copy their bytes in, and then publish them in reservation order. Readers never block
+ * writers: they copy the published bytes and then check whether any writer has since reserved the region they
+ * copied, discarding whatever may have been overwritten.
+ */
+public class RingBuffer implements LineConsumer {
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    private final byte[] buffer;
+    private final int capacity;
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private volatile long floor = 0;
+    private final List<Runnable> writeListeners = new CopyOnWriteArrayList<>();
+
+    public RingBuffer(int capacityInBytes) {
+        if (capacityInBytes < 1) {
+            throw new IllegalArgumentException("The capacity must be at least one byte");
+        }
+        this.capacity = capacityInBytes;
+        this.buffer = new byte[capacityInBytes];
+    }
+
+    public static RingBuffer withCapacityInMB(int megabytes) {
+        return new RingBuffer((int) Math.min(Integer.MAX_VALUE - 8, megabytes * 1024L * 1024L));
+    }
+
+    @Override
+    public void consumeLine(String line) {
+        write(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void write(byte[] bytes) {
+        if (bytes.length == 0) {
+            return;
+        }
+        long start = reserved.getAndAdd(bytes.length);
+        // if there are more bytes than capacity, only the tail can survive anyway
+        int offset = Math.max(0, bytes.length - capacity);
+        int length = bytes.length - offset;
+        int index = (int) ((start + offset) % capacity);
+        int firstPart = Math.min(length, capacity - index);
+        System.arraycopy(bytes, offset, buffer, index, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(bytes, offset + firstPart, buffer, 0, length - firstPart);
+        }
+        // Publish in order, so that everything before the committed position has been fully written. Writers
+        // only ever wait here for other writers that are part-way through copying their bytes.
+        for (int spins = 0; committed.get() != start; spins++) {
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield(); // the earlier writer may have been descheduled
+            }
+        }
+        committed.set(start + bytes.length);
+        for (Runnable listener : writeListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Adds a callback that is run on the writing thread each time new bytes are published, so it should not block.
+     */
+    public void addWriteListener(Runnable listener) {
+        writeListeners.add(listener);
+    }
+
+    public void removeWriteListener(Runnable listener) {
+        writeListeners.remove(listener);
+    }
+
+    /**
+     * Causes subsequent reads to only return bytes written after this call. Offsets continue to increase.
+     */
+    public void clear() {
+        floor = committed.get();
+    }
+
+    /**
+     * @return The position after the last published byte
+     */
+    public long end() {
+        return committed.get();
+    }
+
+    /**
+     * @return The position of the oldest byte that can still be read
+     */
+    public long start() {
+        return Math.max(floor, Math.max(0, reserved.get() - capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return A consistent copy of all the bytes currently available
+     */
+    public byte[] snapshot() {
+        for (int attempt = 1; ; attempt++) {
+            long end = committed.get();
+            long start = Math.max(floor, Math.max(0, end - capacity));
+            byte[] copy = new byte[(int) (end - start)];
+            copy(start, copy, 0, copy.length);
+            long validFrom = oldestUnchangedPosition(start);
+            if (validFrom >= end && attempt < 3) {
+                continue; // writers lapped this reader, so everything copied may be stale
+            }
+            int skip = (int) Math.min(copy.length, validFrom - start);
+            if (skip == 0) {
+                return copy;
+            }
+            byte[] valid = new byte[copy.length - skip];
+            System.arraycopy(copy, skip, valid, 0, valid.length);
+            return valid;
+        }
+    }
+
+    public String snapshotAsString() {
+        byte[] bytes = snapshot();
+        int charStart = 0;
+        while (charStart < bytes.length && (bytes[charStart] & 0xC0) == 0x80) {
+            charStart++; // the oldest character may have been partly overwritten
+        }
+        return new String(bytes, charStart, bytes.length - charStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the available bytes from the given position onwards, without copying the whole buffer.
+     * If writers overtake the reader while it is writing, bytes that were overwritten are skipped.
+     * @param from The position to start from. If older than {@link #start()} then the oldest available bytes are sent.
+     * @param out The stream to write to
+     * @return The position after the last byte written, which can be used as the <code>from</code> value for the next call
+     * @throws IOException Thrown if writing to the stream fails
+     */
+    public long writeTo(long from, OutputStream out) throws IOException {
+        return writeTo(from, committed.get(), out);
+    }
+
+    /**
+     * Writes the available bytes between the given positions
+     * @param from The position to start from. If older than {@link #start()} then the oldest available bytes are sent.
+     * @param end The position to stop at, which must be no later than {@link #end()}
+     * @param out The stream to write to
+     * @return The position after the last byte written
+     * @throws IOException Thrown if writing to the stream fails
+     */
+    public long writeTo(long from, long end, OutputStream out) throws IOException {
+        long position = Math.max(from, Math.max(floor, end - capacity));
+        byte[] chunk = new byte[(int) Math.min(READ_CHUNK_SIZE, Math.max(0, end - position))];
+        while (position < end) {
+            int length = (int) Math.min(chunk.length, end - position);
+            copy(position, chunk, 0, length);
+            long validFrom = oldestUnchangedPosition(position);
+            if (validFrom >= position + length) {
+                position = validFrom;
+                continue;
+            }
+            int skip = (int) Math.max(0, validFrom - position);
+            out.write(chunk, skip, length - skip);
+            position += length;
+        }
+        return Math.max(position, from);
+    }
+
+    private void copy(long start, byte[] dest, int destOffset, int length) {
+        int index = (int) (start % capacity);
+        int firstPart = Math.min(length, capacity - index);
+        System.arraycopy(buffer, index, dest, destOffset, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(buffer, 0, dest, destOffset + firstPart, length - firstPart);
+        }
+    }
+
+    private long oldestUnchangedPosition(long copiedFrom) {
+        // the copy must be complete before checking whether any writer has reserved the copied region
+        VarHandle.acquireFence();
+        return Math.max(copiedFrom, reserved.get() - capacity);
+    }
+}
@@ -1,12 +1,16 @@
 package com.danielflower.apprunner.mgmt;
 
+import com.danielflower.apprunner.io.ChunkedLog;
+import com.danielflower.apprunner.io.RingBuffer;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
 import org.apache.maven.shared.invoker.InvocationOutputHandler;
 import org.eclipse.jgit.api.errors.GitAPIException;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public interface AppDescription {
     String name();
@@ -23,15 +27,40 @@ public interface AppDescription {
 
     String latestBuildLog();
 
+    ChunkedLog buildLog();
+
+    BuildHistory buildHistory();
+
     String latestConsoleLog();
 
-    ArrayList<String> contributors();
+    RingBuffer consoleLog();
+
+    /**
+     * @return The names of the authors of the app's commits, in alphabetical order
+     */
+    List<String> contributors();
 
     File dataDir();
 
+    /**
+     * @return The CPU, memory and IO used by the app and its builds, keyed by name, or an empty map if the app is
+     * not running in a cgroup
+     */
+    Map<String, Long> resourceUsage();
+
+    /**
+     * @return Recent samples of the CPU, memory, threads, open files and IO of the app's running processes
+     */
+    ProcessHistory processHistory();
+
     void stopApp() throws Exception;
 
     void update(AppRunnerFactoryProvider runnerProvider, InvocationOutputHandler outputHandler) throws Exception;
 
+    /**
+     * Deletes cached builds, dependencies and incremental build state so that the next deploy builds from scratch
+     */
+    void clearBuildCaches() throws IOException;
+
     void delete();
 }
@@ -1,14 +1,22 @@
 package com.danielflower.apprunner.mgmt;
 
+import com.danielflower.apprunner.Config;
 import com.danielflower.apprunner.FileSandbox;
+import com.danielflower.apprunner.io.ChunkedLog;
 import com.danielflower.apprunner.io.LineConsumer;
+import com.danielflower.apprunner.io.RingBuffer;
 import com.danielflower.apprunner.problems.AppRunnerException;
+import com.danielflower.apprunner.problems.InvalidConfigException;
+import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import com.danielflower.apprunner.runners.AppRunner;
 import com.danielflower.apprunner.runners.AppRunnerFactory;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
+import com.danielflower.apprunner.runners.BuildCancellation;
+import com.danielflower.apprunner.runners.Cgroup;
+import com.danielflower.apprunner.runners.DependencySnapshots;
+import com.danielflower.apprunner.runners.ToolchainCache;
 import com.danielflower.apprunner.runners.Waiter;
 import io.muserver.Mutils;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.file.PathUtils;
 import org.apache.commons.io.file.StandardDeleteOption;
@@ -21,7 +29,6 @@ import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.StoredConfig;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.URIish;
 import org.slf4j.Logger;
@@ -34,18 +41,17 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 import static com.danielflower.apprunner.FileSandbox.fullPath;
 
 public class AppManager implements AppDescription {
     public static final Logger log = LoggerFactory.getLogger(AppManager.class);
-    private static final Executor deletionQueue = Executors.newSingleThreadExecutor();
     public static final int REMOTE_GIT_TIMEOUT = 300;
 
-    public static AppManager create(String gitUrl, FileSandbox fileSandbox, String name) throws IOException, GitAPIException {
+    public static AppManager create(String gitUrl, FileSandbox fileSandbox, String name, Config config, BuildQueue buildQueue) throws IOException, GitAPIException {
         if (!name.matches("^[A-Za-z0-9_-]+$")) {
             throw new ValidationException("The app name can only contain letters, numbers, hyphens and underscores");
         }
@@ -54,7 +60,18 @@ public class AppManager implements AppDescription {
         File instanceDir = fileSandbox.tempDir(name + File.separator + "instances");
         File dataDir = fileSandbox.appDir(name, "data");
         File tempDir = fileSandbox.tempDir(name);
-        File[] dirsToDelete = { gitDir, tempDir, fileSandbox.appDir(name) };
+        File buildLogDir = fileSandbox.appDir(name, "build-logs");
+        File buildCacheDir = fileSandbox.cacheDir(name + File.separator + "builds");
+        BuildArtifactCache buildCache = new BuildArtifactCache(buildCacheDir, config.getLongForApp(name, Config.APP_BUILD_CACHE_MB, 512) * 1024L * 1024L);
+        DependencySnapshots dependencySnapshots = new DependencySnapshots(fileSandbox.cacheDir(name + File.separator + "dependencies"),
+            config.getLongForApp(name, Config.APP_DEPENDENCY_SNAPSHOT_MB, 1024) * 1024L * 1024L);
+        ToolchainCache toolchainCache = new ToolchainCache(fileSandbox.cacheDir(name + File.separator + "toolchains"),
+            config.getLongForApp(name, Config.APP_TOOLCHAIN_CACHE_MB, 2048) * 1024L * 1024L);
+        BuildHistory buildHistory = new BuildHistory(fileSandbox.appDir(name, "builds"),
+            config.getIntForApp(name, Config.APP_BUILD_HISTORY_COUNT, 20),
+            config.getLongForApp(name, Config.APP_BUILD_HISTORY_MB, 50) * 1024L * 1024L);
+        FileUtils.cleanDirectory(buildLogDir); // any files here were spilled by builds before a restart
+        File[] dirsToDelete = { gitDir, tempDir, fileSandbox.appDir(name), fileSandbox.cacheDir(name) };
 
         Git git;
         boolean isNew = false;
@@ -63,26 +80,35 @@ public class AppManager implements AppDescription {
             isNew = true;
         } catch (RepositoryNotFoundException e) {
             log.info("Clone app " + name + " from " + gitUrl + " to " + Mutils.fullPath(gitDir));
-            git = Git.cloneRepository()
-                .setURI(gitUrl)
-                .setBare(false)
-                .setDirectory(gitDir)
-                .setTimeout(REMOTE_GIT_TIMEOUT)
-                .call();
+            long start = System.currentTimeMillis();
+            if (useNativeGit(config, name)) {
+                NativeGit.cloneRepo(log::info, gitUrl, gitDir, config.getIntForApp(name, Config.APP_GIT_DEPTH, 0),
+                    config.getForApp(name, Config.APP_GIT_FILTER, null));
+                git = Git.open(gitDir);
+            } else {
+                git = Git.cloneRepository()
+                    .setURI(gitUrl)
+                    .setBare(false)
+                    .setDirectory(gitDir)
+                    .setTimeout(REMOTE_GIT_TIMEOUT)
+                    .call();
+            }
+            log.info("Cloned " + name + " in " + (System.currentTimeMillis() - start) + "ms");
         }
 
         StoredConfig gitCfg = git.getRepository().getConfig();
-        gitCfg.setString("remote", "origin", "url", gitUrl);
+        gitCfg.setString("remote", "origin", "url", NativeGit.toNativeUrl(gitUrl));
         try {
             gitCfg.save();
         } catch (IOException e) {
             throw new AppRunnerException("Error while setting remote on Git repo at " + gitDir, e);
         }
         log.info("Created app manager for " + name + " in dir " + dataDir);
-        GitCommit gitCommit = getCurrentHead(name, git);
-        AppManager appManager = new AppManager(name, gitUrl, git, instanceDir, dataDir, tempDir, gitCommit, dirsToDelete);
+        CommitIndex commitIndex = new CommitIndex(new File(fileSandbox.cacheDir(name + File.separator + "git"), "commit-index.json"));
+        GitCommit gitCommit = getCurrentHead(name, git, commitIndex);
+        AppManager appManager = new AppManager(name, gitUrl, git, instanceDir, dataDir, tempDir, buildLogDir, buildHistory, buildCache, dependencySnapshots, toolchainCache, buildQueue, commitIndex, gitCommit, dirsToDelete, config);
         if (isNew) {
-            appManager.gitUpdateFromOrigin();
+            appManager.gitUpdateFromOrigin(log::info);
         }
         return appManager;
     }
@@ -98,27 +124,48 @@ public class AppManager implements AppDescription {
     }
 
     private GitCommit getCurrentHead() {
-        return getCurrentHead(name, git);
+        return getCurrentHead(name, git, commitIndex);
     }
-    private static GitCommit getCurrentHead(String name, Git git) {
+    private static GitCommit getCurrentHead(String name, Git git, CommitIndex commitIndex) {
         GitCommit gitCommit = null;
         try {
-            gitCommit = GitCommit.fromHEAD(git);
+            gitCommit = commitIndex.head(git.getRepository());
         } catch (Exception e) {
             log.warn("Could not find git commit info for " + name, e);
         }
         return gitCommit;
     }
 
-    private void gitUpdateFromOrigin() throws GitAPIException {
-        FetchResult fetchResult = git.fetch().setRemote("origin").setTimeout(REMOTE_GIT_TIMEOUT).call();
-        Ref headRef = fetchResult.getAdvertisedRef(Constants.HEAD);
-        if (headRef != null) {
-            git.checkout().setForced(true).setName(headRef.getObjectId().getName()).call();
+    private static boolean useNativeGit(Config config, String name) {
+        String client = config.getForApp(name, Config.APP_GIT_CLIENT, "jgit");
+        if ("native".equalsIgnoreCase(client)) {
+            return true;
+        } else if ("jgit".equalsIgnoreCase(client)) {
+            return false;
+        }
+        throw new InvalidConfigException("Unsupported value for " + Config.APP_GIT_CLIENT + ": " + client + " - must be jgit or native");
+    }
+
+    private void gitUpdateFromOrigin(LineConsumer output) throws GitAPIException {
+        if (useNativeGit(config, name)) {
+            NativeGit.fetchAndCheckoutHead(output, git.getRepository().getWorkTree(), config.getIntForApp(name, Config.APP_GIT_DEPTH, 0));
         } else {
-            git.reset().setMode(ResetCommand.ResetType.HARD).setRef("origin/master").call();
+            if (config.getIntForApp(name, Config.APP_GIT_DEPTH, 0) > 0 || StringUtils.isNotBlank(config.getForApp(name, Config.APP_GIT_FILTER, null))) {
+                output.consumeLine("Shallow and partial clones need the native git client, so the full history will be fetched");
+            }
+            long start = System.currentTimeMillis();
+            FetchResult fetchResult = git.fetch().setRemote("origin").setTimeout(REMOTE_GIT_TIMEOUT).call();
+            output.consumeLine("Fetched from git in " + (System.currentTimeMillis() - start) + "ms");
+            start = System.currentTimeMillis();
+            Ref headRef = fetchResult.getAdvertisedRef(Constants.HEAD);
+            if (headRef != null) {
+                git.checkout().setForced(true).setName(headRef.getObjectId().getName()).call();
+            } else {
+                git.reset().setMode(ResetCommand.ResetType.HARD).setRef("origin/master").call();
+            }
+            output.consumeLine("Checked out the latest commit in " + (System.currentTimeMillis() - start) + "ms");
         }
-        this.contributors = getContributorsFromRepo();
+        updateCommitIndex();
     }
 
     private volatile String gitUrl;
@@ -127,25 +174,49 @@ public class AppManager implements AppDescription {
     private final File instanceDir;
     private final File dataDir;
     private final File tempDir;
+    private final File buildLogDir;
+    private final BuildHistory buildHistory;
+    private final BuildArtifactCache buildCache;
+    private final DependencySnapshots dependencySnapshots;
+    private final ToolchainCache toolchainCache;
+    private final BuildQueue buildQueue;
+    private final CommitIndex commitIndex;
     private final File[] dirsToDelete;
-    private ArrayList<String> contributors;
+    private final Config config;
     private final List<AppChangeListener> listeners = new ArrayList<>();
     private volatile AppRunner currentRunner;
-    private String latestBuildLog;
-    private final CircularFifoQueue<String> consoleLog = new CircularFifoQueue<>(5000);
+    private volatile ChunkedLog buildLog = new ChunkedLog();
+    private final RingBuffer consoleLog;
+    private final ProcessHistory processHistory = new ProcessHistory(() -> {
+        AppRunner runner = currentRunner;
+        return runner == null ? Collections.emptyList() : runner.processIds();
+    });
     private volatile Availability availability = Availability.unavailable("Not started");
     private volatile BuildStatus lastBuildStatus;
     private volatile BuildStatus lastSuccessfulBuildStatus;
+    private final DeployCoalescer deployCoalescer = new DeployCoalescer();
+    private volatile Supplier<List<String>> recentRequests = Collections::emptyList;
+    private volatile ShadowTraffic shadowTraffic;
+    private volatile CanaryRouting canaryRouting;
+    private volatile Cgroup cgroup;
 
-    private AppManager(String name, String gitUrl, Git git, File instanceDir, File dataDir, File tempDir, GitCommit gitCommit, File[] dirsToDelete) {
+    private AppManager(String name, String gitUrl, Git git, File instanceDir, File dataDir, File tempDir, File buildLogDir, BuildHistory buildHistory, BuildArtifactCache buildCache, DependencySnapshots dependencySnapshots, ToolchainCache toolchainCache, BuildQueue buildQueue, CommitIndex commitIndex, GitCommit gitCommit, File[] dirsToDelete, Config config) {
         this.gitUrl = gitUrl;
         this.name = name;
         this.git = git;
         this.instanceDir = instanceDir;
         this.dataDir = dataDir;
         this.tempDir = tempDir;
+        this.buildLogDir = buildLogDir;
+        this.buildHistory = buildHistory;
+        this.buildCache = buildCache;
+        this.dependencySnapshots = dependencySnapshots;
+        this.toolchainCache = toolchainCache;
+        this.buildQueue = buildQueue;
+        this.commitIndex = commitIndex;
         this.dirsToDelete = dirsToDelete;
-        this.contributors = new ArrayList<>();
+        this.config = config;
+        this.consoleLog = RingBuffer.withCapacityInMB(Math.max(1, config.getIntForApp(name, Config.APP_CONSOLE_LOG_MB, 1)));
         this.lastBuildStatus = BuildStatus.notStarted(gitUrl, gitCommit);
     }
 
@@ -159,7 +230,7 @@ public class AppManager implements AppDescription {
 
     public void gitUrl(String url) throws URISyntaxException, GitAPIException {
         Objects.requireNonNull(url, "url");
-        git.remoteSetUrl().setRemoteName("origin").setRemoteUri(new URIish(url)).call();
+        git.remoteSetUrl().setRemoteName("origin").setRemoteUri(new URIish(NativeGit.toNativeUrl(url))).call();
         this.gitUrl = url;
     }
 
@@ -179,17 +250,30 @@ public class AppManager implements AppDescription {
     }
 
     public String latestBuildLog() {
-        return latestBuildLog;
+        return buildLog.asString();
+    }
+
+    @Override
+    public ChunkedLog buildLog() {
+        return buildLog;
+    }
+
+    @Override
+    public BuildHistory buildHistory() {
+        return buildHistory;
     }
 
     public String latestConsoleLog() {
-        synchronized (consoleLog) {
-            return String.join("", consoleLog);
-        }
+        return consoleLog.snapshotAsString();
     }
 
-    public ArrayList<String> contributors() {
-        return contributors;
+    @Override
+    public RingBuffer consoleLog() {
+        return consoleLog;
+    }
+
+    public List<String> contributors() {
+        return commitIndex.contributors();
     }
 
     @Override
@@ -206,18 +290,93 @@ public class AppManager implements AppDescription {
         }
     }
 
-    public synchronized void update(AppRunnerFactoryProvider runnerProvider, InvocationOutputHandler outputHandler) throws Exception {
+    public void update(AppRunnerFactoryProvider runnerProvider, InvocationOutputHandler outputHandler) throws Exception {
+        deployCoalescer.deploy(outputHandler, handler -> runUpdate(runnerProvider, handler));
+    }
+
+    private synchronized void runUpdate(AppRunnerFactoryProvider runnerProvider, InvocationOutputHandler outputHandler) throws Exception {
         clearLogs();
         markBuildAsFetching();
 
+        BuildHistory.Recording recording = startRecordingBuild();
+
+        ChunkedLog buildLog = this.buildLog;
         LineConsumer buildLogHandler = line -> {
             try {
                 outputHandler.consumeLine(line);
             } catch (IOException ignored) {
             }
-            latestBuildLog += line + System.lineSeparator();
+            buildLog.consumeLine(line);
+            if (recording != null) {
+                recording.consumeLine(line);
+            }
         };
 
+        Cgroup.enter(setUpCgroup(buildLogHandler));
+        try {
+            deploy(runnerProvider, buildLogHandler);
+        } finally {
+            Cgroup.leave();
+            if (recording != null) {
+                recording.finish(lastBuildStatus);
+            }
+        }
+    }
+
+    /**
+     * Creates the cgroup that the app and its builds run in, with the limits currently configured for the app.
+     * Builds have the same limits as the app unless build limits are configured.
+     */
+    private Cgroup setUpCgroup(LineConsumer buildLogHandler) {
+        Map<String, String> runLimits = cgroupLimits(Collections.emptyMap(), Config.APP_CGROUP_CPU_MAX, Config.APP_CGROUP_CPU_WEIGHT,
+            Config.APP_CGROUP_MEMORY_MAX, Config.APP_CGROUP_IO_WEIGHT);
+        Map<String, String> buildLimits = cgroupLimits(runLimits, Config.APP_CGROUP_BUILD_CPU_MAX, Config.APP_CGROUP_BUILD_CPU_WEIGHT,
+            Config.APP_CGROUP_BUILD_MEMORY_MAX, Config.APP_CGROUP_BUILD_IO_WEIGHT);
+        Cgroup cgroup = Cgroup.forApp(name, runLimits, buildLimits);
+        if (cgroup == null && !(runLimits.isEmpty() && buildLimits.isEmpty())) {
+            buildLogHandler.consumeLine("Resource limits are configured for " + name + " but cgroups are not available, so it will run without them");
+        }
+        this.cgroup = cgroup;
+        return cgroup;
+    }
+
+    private Map<String, String> cgroupLimits(Map<String, String> defaults, String cpuMaxKey, String cpuWeightKey, String memoryMaxKey, String ioWeightKey) {
+        Map<String, String> limits = new LinkedHashMap<>();
+        putIfSet(limits, "cpu.max", config.getForApp(name, cpuMaxKey, defaults.get("cpu.max")));
+        putIfSet(limits, "cpu.weight", config.getForApp(name, cpuWeightKey, defaults.get("cpu.weight")));
+        putIfSet(limits, "memory.max", config.getForApp(name, memoryMaxKey, defaults.get("memory.max")));
+        String ioWeight = config.getForApp(name, ioWeightKey, defaults.get("io.weight"));
+        putIfSet(limits, "io.weight", StringUtils.isNumeric(ioWeight) ? "default " + ioWeight : ioWeight);
+        return limits;
+    }
+
+    private static void putIfSet(Map<String, String> map, String key, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            map.put(key, value.trim());
+        }
+    }
+
+    @Override
+    public ProcessHistory processHistory() {
+        return processHistory;
+    }
+
+    @Override
+    public Map<String, Long> resourceUsage() {
+        Cgroup cgroup = this.cgroup;
+        return cgroup == null ? Collections.emptyMap() : cgroup.usage();
+    }
+
+    private BuildHistory.Recording startRecordingBuild() {
+        try {
+            return buildHistory.start();
+        } catch (IOException e) {
+            log.warn("Could not start recording the build log for " + name + " so it will not be kept in the history", e);
+            return null;
+        }
+    }
+
+    private void deploy(AppRunnerFactoryProvider runnerProvider, LineConsumer buildLogHandler) throws Exception {
         // Well this is complicated.
         // Basically, we want the build log to contain a bit of the startup, and then detach itself.
         AtomicReference<LineConsumer> buildLogHandle = new AtomicReference<>(buildLogHandler);
@@ -226,53 +385,210 @@ public class AppManager implements AppDescription {
             if (another != null) {
                 another.consumeLine(StringUtils.stripEnd(line, "\r\n"));
             }
-            synchronized (consoleLog) {
-                consoleLog.add(line);
-            }
+            consoleLog.consumeLine(line);
         };
 
 
         buildLogHandler.consumeLine("Fetching latest changes from git...");
-        File instanceDir = fetchChangesAndCreateInstanceDir();
-        buildLogHandler.consumeLine("Created new instance in " + fullPath(instanceDir));
+        fetchChanges(buildLogHandler);
+        AppRunnerFactory appRunnerFactory = runnerProvider.runnerFor(name(), git.getRepository().getWorkTree());
+        GitCommit commit = getCurrentHead();
+        String cacheKey = commit == null ? null : BuildArtifactCache.key(commit.id, appRunnerFactory.id(), appRunnerFactory.versionInfo());
+        File cachedBuild = cacheKey == null ? null : buildCache.lookup(cacheKey);
+        File instanceDir = createInstanceDir(buildLogHandler, cachedBuild);
 
         AppRunner oldRunner = currentRunner;
-        AppRunnerFactory appRunnerFactory = runnerProvider.runnerFor(name(), instanceDir);
         String runnerId = appRunnerFactory.id();
         markBuildAsStarting(runnerId);
         AppRunner newRunner = appRunnerFactory.appRunner(instanceDir);
+        newRunner.useDependencySnapshots(dependencySnapshots);
+        newRunner.useToolchainCache(toolchainCache);
+        boolean useCachedBuild = cachedBuild != null && newRunner.canLaunchCopiedBuild();
         log.info("Using " + appRunnerFactory.id() + " for " + name);
-        int port = getAFreePort();
+        int replicas = Math.max(1, config.getIntForApp(name, Config.APP_REPLICAS, 1));
 
-        Map<String, String> envVarsForApp = createAppEnvVars(port, name, dataDir, tempDir);
-
-        try (Waiter startupWaiter = Waiter.waitForApp(name, port)) {
-            newRunner.start(buildLogHandler, consoleLogHandler, envVarsForApp, startupWaiter);
+        List<URL> urls = new ArrayList<>();
+        WarmupResult warmupResult = null;
+        try {
+            int port = getAFreePort();
+            Map<String, String> envVarsForApp = createAppEnvVars(port, name, dataDir, tempDir);
+            if (useCachedBuild) {
+                buildLogHandler.consumeLine("Commit " + commit.id + " has already been built with " + runnerId + " so the cached build will be launched");
+            } else {
+                try (BuildQueue.Slot slot = buildQueue.join(name)) {
+                    slot.await(position -> markBuildAsQueued(buildLogHandler, runnerId, position));
+                    if (lastBuildStatus.queuePosition != null) {
+                        buildLogHandler.consumeLine("Starting the build");
+                        markBuildAsStarting(runnerId);
+                    }
+                    newRunner.build(buildLogHandler, envVarsForApp);
+                    if (toolchainCache.isEnabled()) {
+                        toolchainCache.enforceBudget(buildLogHandler);
+                    }
+                }
+                if (cacheKey != null && buildCache.isEnabled() && newRunner.canLaunchCopiedBuild()) {
+                    cacheBuild(buildLogHandler, cacheKey, instanceDir);
+                }
+            }
+            for (int i = 1; i <= replicas; i++) {
+                if (i > 1) {
+                    port = getAFreePort();
+                    envVarsForApp = createAppEnvVars(port, name, dataDir, tempDir);
+                }
+                if (replicas > 1) {
+                    buildLogHandler.consumeLine("Starting instance " + i + " of " + replicas + " on port " + port);
+                }
+                try (Waiter startupWaiter = Waiter.waitForApp(name, port, config.getForApp(name, Config.APP_STARTUP_HEALTH_PATH, null),
+                    config.getLongForApp(name, Config.APP_STARTUP_TIMEOUT, 30000), config.getForApp(name, Config.APP_STARTUP_READY_MARKER, null))) {
+                    newRunner.launch(buildLogHandler, consoleLogHandler, envVarsForApp, startupWaiter);
+                }
+                urls.add(new URL("http://localhost:" + port + "/" + name));
+            }
+            Warmup warmup = Warmup.forApp(name, config, git.getRepository().getWorkTree(), recentRequests);
+            if (warmup != null) {
+                warmupResult = warmup.run(buildLogHandler, urls);
+            }
         } catch (Exception e) {
             newRunner.shutdown();
             recordBuildFailure("Crashed during startup", runnerId);
             throw e;
         }
+        if (oldRunner != null) {
+            try {
+                compareWithLiveTraffic(buildLogHandler, urls);
+                rollOutGradually(buildLogHandler, urls);
+            } catch (Exception e) {
+                newRunner.shutdown();
+                recordBuildFailure(e instanceof AppRunnerException ? e.getMessage() : "Failed while comparing the new version with the live version", runnerId);
+                throw e;
+            }
+        }
+        if (!BuildCancellation.disableForCurrentThread()) {
+            newRunner.shutdown();
+            recordBuildFailure("Cancelled", runnerId);
+            throw new InterruptedException("The deploy was cancelled before the new version was switched to");
+        }
         currentRunner = newRunner;
-        recordBuildSuccess(runnerId);
+        recordBuildSuccess(runnerId, warmupResult);
         buildLogHandle.set(null);
 
+        List<IntSupplier> inFlightOnOldVersion = new ArrayList<>();
         for (AppChangeListener listener : listeners) {
-            listener.onAppStarted(name, new URL("http://localhost:" + port + "/" + name));
+            inFlightOnOldVersion.add(listener.onAppStarted(name, urls));
         }
         if (oldRunner != null) {
+            drain(buildLogHandler, "the previous version", inFlightOnOldVersion);
             buildLogHandler.consumeLine("Shutting down previous version");
             log.info("Shutting down previous version of " + name);
             oldRunner.shutdown();
             buildLogHandler.consumeLine("Deployment complete.");
             File oldInstanceDir = oldRunner.getInstanceDir();
-            quietlyDeleteTheOldInstanceDirInTheBackground(oldInstanceDir);
+            InstanceDirs.reap(oldInstanceDir);
         }
     }
 
+    /**
+     * Mirrors some live requests to the new version while the current version is still serving them, and fails
+     * the deploy if the new version is slower or has more errors than allowed.
+     */
+    private void compareWithLiveTraffic(LineConsumer buildLogHandler, List<URL> urls) throws InterruptedException {
+        int percent = Math.min(100, config.getIntForApp(name, Config.APP_SHADOW_PERCENT, 0));
+        ShadowTraffic shadowTraffic = this.shadowTraffic;
+        if (percent <= 0 || shadowTraffic == null) {
+            return;
+        }
+        long duration = config.getLongForApp(name, Config.APP_SHADOW_DURATION, 30000);
+        buildLogHandler.consumeLine("Mirroring " + percent + "% of live GET requests to the new version for " + duration + "ms");
+        ShadowTraffic.Session session = shadowTraffic.start(name, urls, percent);
+        ShadowComparison comparison;
+        try {
+            Thread.sleep(duration);
+        } finally {
+            comparison = session.stop();
+        }
+        comparison.describe().forEach(buildLogHandler::consumeLine);
+        int maxSlowdownPercent = config.getIntForApp(name, Config.APP_SHADOW_MAX_SLOWDOWN_PERCENT, -1);
+        if (maxSlowdownPercent >= 0) {
+            String regression = comparison.regression(maxSlowdownPercent, config.getIntForApp(name, Config.APP_SHADOW_MIN_REQUESTS, 20));
+            if (regression != null) {
+                throw new ProjectCannotStartException("The new version was not deployed because " + regression);
+            }
+        }
+    }
+
+    private void rollOutGradually(LineConsumer buildLogHandler, List<URL> urls) throws InterruptedException {
+        CanaryRollout rollout = CanaryRollout.forApp(name, config);
+        CanaryRouting canaryRouting = this.canaryRouting;
+        if (rollout != null && canaryRouting != null) {
+            CanaryRouting.Canary canary = canaryRouting.start(name, urls);
+            try {
+                rollout.run(buildLogHandler, canary);
+            } catch (InterruptedException | RuntimeException e) {
+                // the requests already sent to the new version are let finish before it is shut down
+                boolean interrupted = Thread.interrupted();
+                try {
+                    drain(buildLogHandler, "the new version", Collections.singletonList(canary::candidateActiveRequests));
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Waits until there are no requests in flight to a version of the app that no longer gets new requests, or until
+     * the drain timeout
+     * @param version The version being drained, such as "the previous version", for the build log
+     */
+    private void drain(LineConsumer buildLogHandler, String version, List<IntSupplier> inFlightCounters) throws InterruptedException {
+        long timeout = config.getLongForApp(name, Config.APP_DRAIN_TIMEOUT, 30000);
+        long start = System.currentTimeMillis();
+        int inFlight = inFlight(inFlightCounters);
+        if (inFlight > 0) {
+            buildLogHandler.consumeLine("Waiting for " + inFlight + " in-flight request(s) to " + version + " to complete");
+        }
+        while (inFlight > 0 && System.currentTimeMillis() - start < timeout) {
+            Thread.sleep(50);
+            inFlight = inFlight(inFlightCounters);
+        }
+        long duration = System.currentTimeMillis() - start;
+        if (inFlight > 0) {
+            buildLogHandler.consumeLine("Drain timeout of " + timeout + "ms reached with " + inFlight + " request(s) still in flight");
+        } else {
+            buildLogHandler.consumeLine(StringUtils.capitalize(version) + " drained in " + duration + "ms");
+        }
+        log.info("Drained " + version + " of " + name + " in " + duration + "ms with " + inFlight + " request(s) remaining");
+    }
+
+    private static int inFlight(List<IntSupplier> inFlightCounters) {
+        int total = 0;
+        for (IntSupplier counter : inFlightCounters) {
+            total += counter.getAsInt();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void clearBuildCaches() throws IOException {
+        log.info("Clearing the build caches of " + name);
+        buildCache.clear();
+        dependencySnapshots.clear();
+        toolchainCache.clear();
+    }
+
     @Override
     public void delete() {
         git.close();
+        buildLog.close();
+        Cgroup cgroup = this.cgroup;
+        if (cgroup != null) {
+            cgroup.delete();
+        }
         for (File dir : dirsToDelete) {
             try {
                 log.info("Deleting " + Mutils.fullPath(dir));
@@ -299,8 +615,13 @@ public class AppManager implements AppDescription {
         }
     }
 
-    private void recordBuildSuccess(String runnerId) {
-        lastBuildStatus = lastSuccessfulBuildStatus = BuildStatus.success(lastBuildStatus.startTime, Instant.now(), gitUrl, getCurrentHead(), runnerId);
+    private void markBuildAsQueued(LineConsumer buildLogHandler, String runnerId, int position) {
+        buildLogHandler.consumeLine("Waiting for other builds to finish (position " + position + " in the queue)");
+        lastBuildStatus = BuildStatus.queued(lastBuildStatus.startTime, gitUrl, getCurrentHead(), runnerId, position);
+    }
+
+    private void recordBuildSuccess(String runnerId, WarmupResult warmupResult) {
+        lastBuildStatus = lastSuccessfulBuildStatus = BuildStatus.success(lastBuildStatus.startTime, Instant.now(), gitUrl, getCurrentHead(), runnerId, warmupResult);
         availability = Availability.available();
     }
 
@@ -311,56 +632,65 @@ public class AppManager implements AppDescription {
         }
     }
 
-    private static void quietlyDeleteTheOldInstanceDirInTheBackground(final File instanceDir) {
-        deletionQueue.execute(() -> {
-            try {
-                log.info("Going to delete " + fullPath(instanceDir));
-                if (instanceDir.isDirectory()) {
-                    FileUtils.deleteDirectory(instanceDir);
-                }
-                log.info("Deletion completion");
-            } catch (Exception e) {
-                log.info("Couldn't delete " + fullPath(instanceDir) +
-                    " but it doesn't really matter as it will get deleted on next AppRunner startup.");
-            }
-        });
+    private void fetchChanges(LineConsumer buildLogHandler) throws GitAPIException {
+        try {
+            gitUpdateFromOrigin(buildLogHandler);
+        } catch (Exception e) {
+            recordBuildFailure("Could not fetch from git: " + e.getMessage(), null);
+            throw e;
+        }
     }
 
-    private File fetchChangesAndCreateInstanceDir() throws GitAPIException, IOException {
+    private File createInstanceDir(LineConsumer buildLogHandler, File cachedBuild) throws IOException {
+        long start = System.currentTimeMillis();
+        File dest = newInstanceDir();
         try {
-            gitUpdateFromOrigin();
-            return copyToNewInstanceDir();
+            String how;
+            if (cachedBuild != null) {
+                FileUtils.copyDirectory(cachedBuild, dest);
+                how = "copied from the build cache";
+            } else {
+                InstanceDirs.Mode mode = InstanceDirs.Mode.fromConfig(config.getForApp(name, Config.APP_INSTANCE_MODE, "checkout"));
+                how = InstanceDirs.populate(git.getRepository(), dest, mode).name().toLowerCase();
+            }
+            buildLogHandler.consumeLine("Created new instance in " + fullPath(dest) + " (" + how + ", " + (System.currentTimeMillis() - start) + "ms)");
+            return dest;
         } catch (Exception e) {
-            recordBuildFailure("Could not fetch from git: " + e.getMessage(), null);
+            recordBuildFailure("Could not create instance directory: " + e.getMessage(), null);
             throw e;
         }
     }
 
-    private ArrayList<String> getContributorsFromRepo() {
-        ArrayList<String> contributors = new ArrayList<>();
+    private void cacheBuild(LineConsumer buildLogHandler, String cacheKey, File instanceDir) {
+        long start = System.currentTimeMillis();
         try {
-            // get authors
-            Iterable<RevCommit> commits = git.log().all().call();
-            for (RevCommit commit : commits) {
-                String author = commit.getAuthorIdent().getName();
-                if (!contributors.contains(author)) {
-                    contributors.add(author);
-                }
+            if (buildCache.store(cacheKey, instanceDir)) {
+                buildLogHandler.consumeLine("Cached the build in " + (System.currentTimeMillis() - start) + "ms");
             }
-            log.info("getting the contributors " + contributors);
         } catch (Exception e) {
-            log.warn("Failed to get authors from repo: " + e.getMessage());
+            log.warn("Could not cache the build of " + name, e);
         }
-        return contributors;
     }
 
-    private void clearLogs() {
-        latestBuildLog = "";
-        synchronized (consoleLog) {
-            consoleLog.clear();
+    private void updateCommitIndex() {
+        long start = System.currentTimeMillis();
+        try {
+            int count = commitIndex.update(git.getRepository());
+            log.info("Indexed " + count + " new commits of " + name + " in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            log.warn("Failed to index the commits of " + name + ": " + e.getMessage());
         }
     }
 
+    private void clearLogs() {
+        ChunkedLog previous = buildLog;
+        long spillThreshold = config.getLongForApp(name, Config.APP_BUILD_LOG_SPILL_MB, 4) * 1024L * 1024L;
+        File spillFile = new File(buildLogDir, "build-" + System.currentTimeMillis() + ".log");
+        buildLog = spillThreshold > 0 ? new ChunkedLog(spillFile, spillThreshold) : new ChunkedLog();
+        previous.close();
+        consoleLog.clear();
+    }
+
     public static Map<String, String> createAppEnvVars(int port, String name, File dataDir, File tempDir) {
         HashMap<String, String> envVarsForApp = new HashMap<>(System.getenv());
         envVarsForApp.put("APP_PORT", String.valueOf(port));
@@ -375,14 +705,39 @@ public class AppManager implements AppDescription {
         listeners.add(appChangeListener);
     }
 
+    /**
+     * @param recentRequests Supplies the paths of recent GET requests to this app, which are replayed against new
+     *                       versions to warm them up if no warmup script is configured
+     */
+    public void useRecentRequests(Supplier<List<String>> recentRequests) {
+        this.recentRequests = recentRequests;
+    }
+
+    /**
+     * @param shadowTraffic Used to mirror live requests to new versions before they are given traffic
+     */
+    public void useShadowTraffic(ShadowTraffic shadowTraffic) {
+        this.shadowTraffic = shadowTraffic;
+    }
+
+    /**
+     * @param canaryRouting Used to give new versions a growing share of traffic before they replace the live version
+     */
+    public void useCanaryRouting(CanaryRouting canaryRouting) {
+        this.canaryRouting = canaryRouting;
+    }
+
     public interface AppChangeListener {
-        void onAppStarted(String name, URL newUrl);
+        /**
+         * Called when a new version of an app is ready to receive requests
+         * @return The number of requests still being handled by the version that was replaced
+         */
+        IntSupplier onAppStarted(String name, List<URL> newUrls);
     }
 
-    private File copyToNewInstanceDir() throws IOException {
+    private File newInstanceDir() {
         File dest = new File(instanceDir, String.valueOf(System.currentTimeMillis()));
         dest.mkdir();
-        FileUtils.copyDirectory(git.getRepository().getWorkTree(), dest, pathname -> !pathname.getName().equals(".git"));
         return dest;
     }
 
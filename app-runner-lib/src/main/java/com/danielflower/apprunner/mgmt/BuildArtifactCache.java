@@ -0,0 +1,69 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.io.LruDirectoryCache;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * Copies of built instance directories, so that a commit that has already been built by the same runner can be
+ * launched again without building it.
+ * <p>
+ * Each entry is keyed by a hash of the commit ID, runner ID and runner version. When the total size goes over the
+ * budget, the least recently used entries are deleted.
+ */
+public class BuildArtifactCache {
+    private static final Logger log = LoggerFactory.getLogger(BuildArtifactCache.class);
+
+    private final LruDirectoryCache cache;
+
+    public BuildArtifactCache(File root, long maxBytes) {
+        this.cache = new LruDirectoryCache(root, maxBytes, 0, "cached build");
+    }
+
+    public static String key(String commitId, String runnerId, String runnerVersion) {
+        return LruDirectoryCache.sha256Hex((commitId + "\n" + runnerId + "\n" + runnerVersion).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * @return The cached build directory for the given key, or null if it is not cached
+     */
+    public File lookup(String key) {
+        return cache.lookup(key);
+    }
+
+    /**
+     * Copies a built directory into the cache, and then removes the least recently used entries if over budget.
+     * @return True if it was stored
+     */
+    public boolean store(String key, File builtDir) throws IOException {
+        if (!isEnabled()) {
+            return false;
+        }
+        long size = FileUtils.sizeOfDirectory(builtDir);
+        if (size > cache.maxBytes()) {
+            log.info("Not caching " + fullPath(builtDir) + " as its size of " + size + " bytes is over the cache budget");
+            return false;
+        }
+        FileUtils.copyDirectory(builtDir, cache.newEntry(key));
+        cache.complete(key);
+        return true;
+    }
+
+    /**
+     * Deletes every cached build
+     */
+    public void clear() throws IOException {
+        cache.clear();
+    }
+}
@@ -0,0 +1,166 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.io.LineConsumer;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * The build logs of past deployments of an app, stored as gzipped files with a JSON description of each build.
+ * <p>
+ * Each deployment gets an increasing numeric ID. Once a deployment finishes, the oldest logs are deleted until
+ * the number of logs and their total size are within the configured limits. The latest log is always kept.
+ */
+public class BuildHistory {
+    private static final Logger log = LoggerFactory.getLogger(BuildHistory.class);
+    private static final String LOG_SUFFIX = ".log.gz";
+    private static final String IN_PROGRESS_SUFFIX = ".log.gz.partial";
+    private static final String INFO_SUFFIX = ".json";
+
+    private final File dir;
+    private final int maxBuilds;
+    private final long maxBytes;
+
+    public BuildHistory(File dir, int maxBuilds, long maxBytes) {
+        this.dir = dir;
+        this.maxBuilds = Math.max(1, maxBuilds);
+        this.maxBytes = maxBytes;
+        for (File file : listFiles(IN_PROGRESS_SUFFIX)) {
+            log.info("Deleting incomplete build log " + fullPath(file));
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Starts recording a new deployment's build log
+     */
+    public synchronized Recording start() throws IOException {
+        FileUtils.forceMkdir(dir);
+        long id = 1;
+        for (BuildRecord build : builds()) {
+            id = Math.max(id, build.id + 1);
+        }
+        return new Recording(id);
+    }
+
+    /**
+     * @return All the stored builds, newest first
+     */
+    public List<BuildRecord> builds() {
+        List<BuildRecord> builds = new ArrayList<>();
+        for (File info : listFiles(INFO_SUFFIX)) {
+            String name = info.getName();
+            try {
+                long id = Long.parseLong(name.substring(0, name.length() - INFO_SUFFIX.length()));
+                JSONObject status = new JSONObject(FileUtils.readFileToString(info, StandardCharsets.UTF_8));
+                File logFile = logFile(id);
+                if (logFile.isFile()) {
+                    builds.add(new BuildRecord(id, status, logFile));
+                }
+            } catch (Exception e) {
+                log.warn("Ignoring unreadable build info " + fullPath(info) + " - " + e.getMessage());
+            }
+        }
+        builds.sort(Comparator.comparingLong((BuildRecord b) -> b.id).reversed());
+        return builds;
+    }
+
+    public Optional<BuildRecord> build(long id) {
+        return builds().stream().filter(b -> b.id == id).findFirst();
+    }
+
+    private synchronized void applyRetention() {
+        List<BuildRecord> builds = builds();
+        long totalBytes = 0;
+        for (int i = 0; i < builds.size(); i++) {
+            BuildRecord build = builds.get(i);
+            totalBytes += build.logFile.length();
+            if (i > 0 && (i >= maxBuilds || totalBytes > maxBytes)) {
+                log.info("Deleting build log " + build.id + " from " + fullPath(dir));
+                FileUtils.deleteQuietly(build.logFile);
+                FileUtils.deleteQuietly(infoFile(build.id));
+            }
+        }
+    }
+
+    private File[] listFiles(String suffix) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(suffix));
+        return files == null ? new File[0] : files;
+    }
+
+    private File logFile(long id) {
+        return new File(dir, id + LOG_SUFFIX);
+    }
+
+    private File infoFile(long id) {
+        return new File(dir, id + INFO_SUFFIX);
+    }
+
+    public static class BuildRecord {
+        public final long id;
+        public final JSONObject status;
+        public final File logFile;
+
+        BuildRecord(long id, JSONObject status, File logFile) {
+            this.id = id;
+            this.status = status;
+            this.logFile = logFile;
+        }
+    }
+
+    /**
+     * The build log of a deployment in progress. Lines are compressed as they are written, and the log becomes
+     * visible in the history once {@link #finish(BuildStatus)} is called.
+     */
+    public class Recording implements LineConsumer {
+        public final long id;
+        private final File partialFile;
+        private final Writer writer;
+        private boolean closed = false;
+
+        private Recording(long id) throws IOException {
+            this.id = id;
+            this.partialFile = new File(dir, id + IN_PROGRESS_SUFFIX);
+            this.writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(partialFile), 8192), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public synchronized void consumeLine(String line) {
+            if (closed) {
+                return;
+            }
+            try {
+                writer.write(line);
+                writer.write(System.lineSeparator());
+            } catch (IOException e) {
+                closed = true;
+                log.warn("Could not write to " + fullPath(partialFile) + " so the rest of this build log will not be stored", e);
+            }
+        }
+
+        public synchronized void finish(BuildStatus status) {
+            closed = true;
+            try {
+                writer.close();
+                FileUtils.writeStringToFile(infoFile(id), status.toJSON().toString(4), StandardCharsets.UTF_8);
+                FileUtils.moveFile(partialFile, logFile(id));
+            } catch (IOException e) {
+                log.warn("Could not save build log " + id + " to " + fullPath(dir), e);
+                FileUtils.deleteQuietly(partialFile);
+                FileUtils.deleteQuietly(infoFile(id));
+            }
+            applyRetention();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Limits how many builds run at once across all apps, so that builds do not starve the running apps of CPU and
+ * memory. Builds that cannot start straight away wait their turn in the order they were requested.
+ */
+public class BuildQueue {
+
+    private final int concurrency;
+    private final LinkedList<Slot> waiting = new LinkedList<>();
+    private final List<Slot> running = new ArrayList<>();
+
+    public BuildQueue(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public int concurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Joins the back of the queue. Call {@link Slot#await(IntConsumer)} to wait for the build to be allowed to
+     * start, and close the slot when the build finishes.
+     */
+    public synchronized Slot join(String appName) {
+        Slot slot = new Slot(appName);
+        waiting.add(slot);
+        return slot;
+    }
+
+    public synchronized JSONObject toJSON() {
+        JSONArray runningApps = new JSONArray();
+        running.forEach(s -> runningApps.put(s.appName));
+        JSONArray waitingApps = new JSONArray();
+        waiting.forEach(s -> waitingApps.put(s.appName));
+        return new JSONObject()
+            .put("concurrency", concurrency)
+            .put("running", runningApps)
+            .put("waiting", waitingApps);
+    }
+
+    public class Slot implements AutoCloseable {
+        private final String appName;
+
+        private Slot(String appName) {
+            this.appName = appName;
+        }
+
+        /**
+         * Blocks until the build can start.
+         * @param positionListener Told the position in the queue (where 1 is next) each time it changes while waiting
+         */
+        public void await(IntConsumer positionListener) throws InterruptedException {
+            int reportedPosition = -1;
+            while (true) {
+                int position;
+                synchronized (BuildQueue.this) {
+                    position = waiting.indexOf(this) + 1;
+                    if (position == 0) {
+                        return;
+                    }
+                    if (position == 1 && running.size() < concurrency) {
+                        waiting.removeFirst();
+                        running.add(this);
+                        BuildQueue.this.notifyAll();
+                        return;
+                    }
+                    if (position == reportedPosition) {
+                        BuildQueue.this.wait();
+                        continue;
+                    }
+                }
+                // reported outside the lock as the listener may be slow, e.g. when streaming to a client
+                positionListener.accept(position);
+                reportedPosition = position;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (BuildQueue.this) {
+                if (!running.remove(this)) {
+                    waiting.remove(this);
+                }
+                BuildQueue.this.notifyAll();
+            }
+        }
+    }
+}
@@ -13,8 +13,18 @@ public class BuildStatus {
     public final String gitUrl;
     public final GitCommit gitCommit;
     public final String runnerId;
+    public final Integer queuePosition;
+    public final WarmupResult warmup;
 
     public BuildStatus(String status, Instant startTime, Instant endTime, String description, String gitUrl, GitCommit gitCommit, String runnerId) {
+        this(status, startTime, endTime, description, gitUrl, gitCommit, runnerId, null);
+    }
+
+    public BuildStatus(String status, Instant startTime, Instant endTime, String description, String gitUrl, GitCommit gitCommit, String runnerId, Integer queuePosition) {
+        this(status, startTime, endTime, description, gitUrl, gitCommit, runnerId, queuePosition, null);
+    }
+
+    public BuildStatus(String status, Instant startTime, Instant endTime, String description, String gitUrl, GitCommit gitCommit, String runnerId, Integer queuePosition, WarmupResult warmup) {
         this.status = status;
         this.startTime = startTime;
         this.endTime = endTime;
@@ -22,6 +32,8 @@ public class BuildStatus {
         this.gitUrl = gitUrl;
         this.gitCommit = gitCommit;
         this.runnerId = runnerId;
+        this.queuePosition = queuePosition;
+        this.warmup = warmup;
     }
 
 
@@ -33,13 +45,22 @@ public class BuildStatus {
         return new BuildStatus("fetching", startTime, null, "Fetching changes from git", gitUrl, null, null);
     }
 
+    public static BuildStatus queued(Instant startTime, String gitUrl, GitCommit gitCommit, String runnerId, int queuePosition) {
+        String description = "Waiting for other builds to finish (position " + queuePosition + " in the queue)";
+        return new BuildStatus("queued", startTime, null, description, gitUrl, gitCommit, runnerId, queuePosition);
+    }
+
     public static BuildStatus inProgress(Instant startTime, String gitUrl, GitCommit gitCommit, String runnerId) {
         return new BuildStatus("building", startTime, null, "Building now...", gitUrl, gitCommit, runnerId);
     }
 
     public static BuildStatus success(Instant startTime, Instant endTime, String gitUrl, GitCommit gitCommit, String runnerId) {
+        return success(startTime, endTime, gitUrl, gitCommit, runnerId, null);
+    }
+
+    public static BuildStatus success(Instant startTime, Instant endTime, String gitUrl, GitCommit gitCommit, String runnerId, WarmupResult warmup) {
         String success = "Completed successfully in " + ((endTime.toEpochMilli() - startTime.toEpochMilli())/1000) + " seconds";
-        return new BuildStatus("success", startTime, endTime, success, gitUrl, gitCommit, runnerId);
+        return new BuildStatus("success", startTime, endTime, success, gitUrl, gitCommit, runnerId, null, warmup);
     }
 
     public static BuildStatus failure(Instant startTime, Instant endTime, String message, String gitUrl, GitCommit gitCommit, String runnerId) {
@@ -54,6 +75,8 @@ public class BuildStatus {
             .put("endTime", endTime == null ? null : endTime.toString())
             .put("description", description)
             .put("gitUrl", gitUrl)
-            .put("commit", gitCommit == null ? null : gitCommit.toJSON());
+            .put("commit", gitCommit == null ? null : gitCommit.toJSON())
+            .putOpt("queuePosition", queuePosition)
+            .putOpt("warmup", warmup == null ? null : warmup.toJSON());
     }
 }
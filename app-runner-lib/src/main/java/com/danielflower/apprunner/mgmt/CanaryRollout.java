@@ -0,0 +1,113 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.Config;
+import com.danielflower.apprunner.io.LineConsumer;
+import com.danielflower.apprunner.problems.InvalidConfigException;
+import com.danielflower.apprunner.problems.ProjectCannotStartException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives a new version of an app an increasing share of its traffic, for example 5% and then 25%, before it replaces
+ * the live version. After each step the p99 latency and 5xx rate of the new version are compared with the live
+ * version, and the new version is rolled back if it is worse by more than the configured thresholds.
+ */
+class CanaryRollout {
+    private final List<Integer> steps;
+    private final long stepMillis;
+    private final int maxSlowdownPercent;
+    private final int maxErrorIncreasePercent;
+    private final int minRequests;
+
+    CanaryRollout(List<Integer> steps, long stepMillis, int maxSlowdownPercent, int maxErrorIncreasePercent, int minRequests) {
+        this.steps = steps;
+        this.stepMillis = stepMillis;
+        this.maxSlowdownPercent = maxSlowdownPercent;
+        this.maxErrorIncreasePercent = maxErrorIncreasePercent;
+        this.minRequests = minRequests;
+    }
+
+    /**
+     * @return The rollout configured for the app, or null if new versions replace the live version in one go
+     */
+    static CanaryRollout forApp(String appName, Config config) {
+        List<Integer> steps = parseSteps(config.getForApp(appName, Config.APP_CANARY_STEPS, ""));
+        if (steps.isEmpty()) {
+            return null;
+        }
+        return new CanaryRollout(steps,
+            config.getLongForApp(appName, Config.APP_CANARY_STEP_DURATION, 60000),
+            config.getIntForApp(appName, Config.APP_CANARY_MAX_SLOWDOWN_PERCENT, 50),
+            config.getIntForApp(appName, Config.APP_CANARY_MAX_ERROR_INCREASE_PERCENT, 1),
+            config.getIntForApp(appName, Config.APP_CANARY_MIN_REQUESTS, 20));
+    }
+
+    /**
+     * @param value Increasing percentages separated by commas, such as <code>5,25,100</code>. The final 100% step
+     *              is when the new version replaces the live version, so it does not need to be given.
+     */
+    static List<Integer> parseSteps(String value) {
+        List<Integer> steps = new ArrayList<>();
+        for (String step : StringUtils.split(StringUtils.defaultString(value), ", %")) {
+            int percent;
+            try {
+                percent = Integer.parseInt(step);
+            } catch (NumberFormatException e) {
+                throw new InvalidConfigException("Invalid canary step '" + step + "' in " + value);
+            }
+            int previous = steps.isEmpty() ? 0 : steps.get(steps.size() - 1);
+            if (percent <= previous || percent > 100) {
+                throw new InvalidConfigException("Canary steps must be increasing percentages from 1 to 100 but were " + value);
+            }
+            if (percent < 100) {
+                steps.add(percent);
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Runs each step of the rollout. If the new version regresses, all traffic is sent back to the live version
+     * and an exception is thrown. Otherwise the canary is left at the last step, ready for the new version to
+     * replace the live version.
+     */
+    void run(LineConsumer output, CanaryRouting.Canary canary) throws InterruptedException {
+        try {
+            for (int percent : steps) {
+                output.consumeLine("Sending " + percent + "% of requests to the new version for " + stepMillis + "ms");
+                canary.shift(percent);
+                Thread.sleep(stepMillis);
+                canary.instanceStats().forEach((url, stats) -> output.consumeLine("  " + url + ": " + stats));
+                String regression = regression(canary.liveStats(), canary.candidateStats());
+                if (regression != null) {
+                    canary.rollBack();
+                    output.consumeLine("Rolled back to the live version because " + regression);
+                    throw new ProjectCannotStartException("The new version was rolled back at " + percent + "% of traffic because " + regression);
+                }
+            }
+            canary.end();
+        } catch (InterruptedException | RuntimeException e) {
+            canary.rollBack();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The reason the candidate is worse than the live version, or null if it is not
+     */
+    String regression(TrafficStats live, TrafficStats candidate) {
+        if (candidate.requests < minRequests || live.requests < minRequests) {
+            return null;
+        }
+        if (candidate.errorPercent() > live.errorPercent() + maxErrorIncreasePercent) {
+            return "its 5xx rate was " + candidate.errorPercent() + "% compared with " + live.errorPercent() + "% for the live version";
+        }
+        if (candidate.p99Millis * 100 > live.p99Millis * (100 + maxSlowdownPercent)) {
+            return "its p99 latency was " + candidate.p99Millis + "ms compared with " + live.p99Millis
+                + "ms for the live version, which is more than " + maxSlowdownPercent + "% slower";
+        }
+        return null;
+    }
+}
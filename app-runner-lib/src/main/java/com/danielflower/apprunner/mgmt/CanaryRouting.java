@@ -0,0 +1,57 @@
+package com.danielflower.apprunner.mgmt;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the requests to an app between the live version and a new version, so that the new version can be given
+ * more traffic in steps while its latency and error rate are compared with the live version
+ */
+public interface CanaryRouting {
+
+    /**
+     * Prepares a canary rollout. No requests are sent to the candidate until {@link Canary#shift(int)} is called.
+     * @param appName The app being deployed
+     * @param candidateUrls The URLs of the new instances of the app
+     */
+    Canary start(String appName, List<URL> candidateUrls);
+
+    interface Canary {
+        /**
+         * Sends the given percentage of requests to the new version, and starts recording the latency and status of
+         * requests to each instance from now
+         */
+        void shift(int percent);
+
+        /**
+         * @return The combined stats of the live instances since the last shift
+         */
+        TrafficStats liveStats();
+
+        /**
+         * @return The combined stats of the new instances since the last shift
+         */
+        TrafficStats candidateStats();
+
+        /**
+         * @return The stats of each live and new instance since the last shift
+         */
+        Map<URL, TrafficStats> instanceStats();
+
+        /**
+         * @return The number of requests currently being proxied to the new instances
+         */
+        int candidateActiveRequests();
+
+        /**
+         * Sends all requests back to the live version and stops recording stats
+         */
+        void rollBack();
+
+        /**
+         * Stops recording stats, leaving the traffic split as it is until the new version replaces the live version
+         */
+        void end();
+    }
+}
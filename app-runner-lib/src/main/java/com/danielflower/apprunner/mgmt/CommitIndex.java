@@ -0,0 +1,187 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The authors of an app's commits and the details of its HEAD commit. After a fetch only the commits that have
+ * not been seen before are read, and the index is saved so that a restart does not walk the whole history again.
+ */
+class CommitIndex {
+    private static final Logger log = LoggerFactory.getLogger(CommitIndex.class);
+
+    private final File file;
+    private Set<String> indexedTips = new HashSet<>();
+    private final Map<String, Integer> authorCounts = new HashMap<>();
+    private volatile List<String> contributors = Collections.emptyList();
+    private volatile GitCommit head;
+
+    CommitIndex(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            try {
+                JSONObject json = new JSONObject(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+                for (Object tip : json.getJSONArray("tips")) {
+                    indexedTips.add((String) tip);
+                }
+                JSONObject authors = json.getJSONObject("authors");
+                for (String author : authors.keySet()) {
+                    authorCounts.put(author, authors.getInt(author));
+                }
+                head = json.has("head") ? GitCommit.fromJSON(json.getJSONObject("head")) : null;
+                contributors = sortedAuthors();
+            } catch (Exception e) {
+                log.warn("Could not read " + file + " so the commit index will be rebuilt", e);
+                indexedTips.clear();
+                authorCounts.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Contributor names in alphabetical order
+     */
+    List<String> contributors() {
+        return contributors;
+    }
+
+    /**
+     * @return The HEAD commit, or null if the repo has no commits
+     */
+    GitCommit head(Repository repo) throws IOException {
+        ObjectId id = repo.resolve("HEAD");
+        if (id == null) {
+            return null;
+        }
+        GitCommit cached = head;
+        if (cached != null && cached.id.equals(id.name())) {
+            return cached;
+        }
+        try (RevWalk walk = new RevWalk(repo)) {
+            return head = GitCommit.fromCommit(walk.parseCommit(id));
+        }
+    }
+
+    /**
+     * Reads any commits reachable from the repo's refs that have not been indexed yet
+     * @return The number of commits that were read
+     */
+    synchronized int update(Repository repo) throws IOException {
+        int count = 0;
+        try (RevWalk walk = new RevWalk(repo)) {
+            Set<String> tips = new HashSet<>();
+            List<Ref> refs = new ArrayList<>(repo.getRefDatabase().getRefs());
+            Ref headRef = repo.exactRef("HEAD");
+            if (headRef != null) {
+                refs.add(headRef);
+            }
+            for (Ref ref : refs) {
+                ObjectId id = ref.getObjectId();
+                if (id == null) {
+                    continue;
+                }
+                try {
+                    RevCommit commit = walk.parseCommit(id);
+                    if (tips.add(commit.name())) {
+                        walk.markStart(commit);
+                    }
+                } catch (IncorrectObjectTypeException notACommit) {
+                    // e.g. a tag of a tree
+                }
+            }
+
+            if (!tips.equals(indexedTips)) {
+                if (stillReachable(repo, indexedTips, tips)) {
+                    for (String tip : indexedTips) {
+                        walk.markUninteresting(walk.parseCommit(ObjectId.fromString(tip)));
+                    }
+                } else {
+                    authorCounts.clear();
+                }
+                for (RevCommit commit : walk) {
+                    authorCounts.merge(commit.getAuthorIdent().getName(), 1, Integer::sum);
+                    commit.disposeBody();
+                    count++;
+                }
+                indexedTips = tips;
+                contributors = sortedAuthors();
+            }
+        }
+        head(repo);
+        save();
+        return count;
+    }
+
+    /**
+     * @return True if every old tip is an ancestor of one of the new tips, so the commits already counted are all
+     * still in the history. After a history rewrite, such as a force push, the old commits are still in the object
+     * database but are no longer reachable, so the index must be rebuilt.
+     */
+    private static boolean stillReachable(Repository repo, Set<String> oldTips, Set<String> newTips) throws IOException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            List<RevCommit> newCommits = new ArrayList<>();
+            for (String tip : newTips) {
+                newCommits.add(walk.parseCommit(ObjectId.fromString(tip)));
+            }
+            for (String tip : oldTips) {
+                ObjectId id = ObjectId.fromString(tip);
+                if (!repo.getObjectDatabase().has(id)) {
+                    return false;
+                }
+                RevCommit old = walk.parseCommit(id);
+                boolean reachable = false;
+                for (RevCommit newCommit : newCommits) {
+                    if (walk.isMergedInto(old, newCommit)) {
+                        reachable = true;
+                        break;
+                    }
+                }
+                if (!reachable) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IncorrectObjectTypeException e) {
+            return false;
+        }
+    }
+
+    private List<String> sortedAuthors() {
+        List<String> sorted = new ArrayList<>(authorCounts.keySet());
+        Collections.sort(sorted);
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private void save() {
+        JSONObject authors = new JSONObject();
+        authorCounts.forEach(authors::put);
+        GitCommit head = this.head;
+        JSONObject json = new JSONObject()
+            .put("tips", new JSONArray(indexedTips))
+            .put("authors", authors)
+            .put("head", head == null ? null : head.toJSON());
+        try {
+            File temp = new File(file.getParentFile(), file.getName() + ".partial");
+            FileUtils.writeStringToFile(temp, json.toString(), StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save the commit index to " + file, e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.runners.BuildCancellation;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses deploy requests for a single app. While a deploy is in flight, any further requests share a single
+ * follow-up deploy, which starts once the current one finishes and so picks up the newest commit. Each caller
+ * sees the output of, and gets the result of, the deploy that covers its request.
+ * <p>
+ * If the caller running a shared deploy cancels it, the other callers are not failed: they take part in another
+ * deploy instead.
+ */
+class DeployCoalescer {
+
+    interface Deploy {
+        void run(InvocationOutputHandler outputHandler) throws Exception;
+    }
+
+    private Pending inFlight;
+    private Pending next;
+
+    void deploy(InvocationOutputHandler outputHandler, Deploy deploy) throws Exception {
+        while (true) {
+            Pending mine;
+            boolean leader;
+            synchronized (this) {
+                if (next == null) {
+                    next = new Pending();
+                    leader = true;
+                } else {
+                    leader = false;
+                }
+                mine = next;
+                mine.outputHandlers.add(outputHandler);
+            }
+
+            if (leader) {
+                lead(mine, outputHandler, deploy);
+                return;
+            }
+            outputHandler.consumeLine("Another deploy request for this app is waiting for the current deploy to finish, so this request will share its result");
+            boolean ran;
+            try {
+                ran = mine.awaitResult();
+            } catch (InterruptedException e) {
+                mine.outputHandlers.remove(outputHandler);
+                throw e;
+            }
+            if (ran) {
+                return;
+            }
+            outputHandler.consumeLine("The deploy this request was sharing was cancelled, so it will be deployed again");
+        }
+    }
+
+    private void lead(Pending mine, InvocationOutputHandler outputHandler, Deploy deploy) throws Exception {
+        try {
+            synchronized (this) {
+                if (inFlight != null) {
+                    mine.consumeLine("Waiting for the current deploy of this app to finish");
+                }
+                while (inFlight != null) {
+                    wait();
+                }
+                inFlight = mine;
+                if (next == mine) {
+                    next = null;
+                }
+            }
+        } catch (Throwable e) {
+            synchronized (this) {
+                if (next == mine) {
+                    next = null;
+                }
+            }
+            mine.outputHandlers.remove(outputHandler);
+            mine.result.complete(false);
+            throw e;
+        }
+
+        try {
+            deploy.run(mine);
+            mine.result.complete(true);
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException || BuildCancellation.currentBuildCancelled()) {
+                mine.outputHandlers.remove(outputHandler);
+                mine.result.complete(false);
+            } else {
+                mine.result.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                inFlight = null;
+                notifyAll();
+            }
+        }
+    }
+
+    private static class Pending implements InvocationOutputHandler {
+        private final List<InvocationOutputHandler> outputHandlers = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        @Override
+        public void consumeLine(String line) {
+            for (InvocationOutputHandler outputHandler : outputHandlers) {
+                try {
+                    outputHandler.consumeLine(line);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        /**
+         * @return True if the deploy ran, or false if it was cancelled by the caller running it
+         */
+        boolean awaitResult() throws Exception {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
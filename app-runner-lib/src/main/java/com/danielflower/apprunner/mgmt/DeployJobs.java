@@ -0,0 +1,196 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.io.ChunkedLog;
+import com.danielflower.apprunner.runners.BuildCancellation;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deploys that run in the background, so that a client can start a deploy and then poll for its status and build
+ * log rather than holding a connection open for the whole build. A limited number of finished jobs are kept, and
+ * the build log of each is kept in memory up to a limit, after which the rest is only in the app's build log.
+ */
+public class DeployJobs {
+    private static final Logger log = LoggerFactory.getLogger(DeployJobs.class);
+
+    public interface Deployer {
+        void deploy(String appName, InvocationOutputHandler outputHandler) throws Exception;
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final Deployer deployer;
+    private final int finishedJobsToKeep;
+    private final long maxLogBytes;
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+    private final ExecutorService executor;
+
+    public DeployJobs(Deployer deployer, int finishedJobsToKeep, long maxLogBytes) {
+        this.deployer = deployer;
+        this.finishedJobsToKeep = finishedJobsToKeep;
+        this.maxLogBytes = maxLogBytes;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "deploy-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Job submit(String appName) {
+        Job job = new Job(UUID.randomUUID().toString(), appName);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            removeOldFinishedJobs();
+        }
+        executor.execute(job::run);
+        return job;
+    }
+
+    public Optional<Job> job(String id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id));
+        }
+    }
+
+    private void removeOldFinishedJobs() {
+        int finished = 0;
+        for (Job job : jobs.values()) {
+            if (job.status.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (finished > finishedJobsToKeep && iterator.hasNext()) {
+            if (iterator.next().status.isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    public class Job {
+        public final String id;
+        public final String appName;
+        public final Instant created = Instant.now();
+        private final ChunkedLog log = new ChunkedLog();
+        private volatile Status status = Status.QUEUED;
+        private volatile Instant finished;
+        private volatile String error;
+        private BuildCancellation cancellation;
+        private boolean cancelRequested;
+        private volatile boolean logTruncated;
+
+        private Job(String id, String appName) {
+            this.id = id;
+            this.appName = appName;
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        /**
+         * @return The build output so far, which is added to while the job is running
+         */
+        public ChunkedLog log() {
+            return log;
+        }
+
+        /**
+         * Stops the deploy, killing any build process it is running. This has no effect if the job has finished,
+         * or if the new version has already started receiving requests.
+         */
+        public void cancel() {
+            BuildCancellation toCancel;
+            synchronized (this) {
+                if (status.isFinished()) {
+                    return;
+                }
+                cancelRequested = true;
+                toCancel = cancellation;
+            }
+            if (toCancel != null) {
+                toCancel.cancel();
+            }
+        }
+
+        private void run() {
+            synchronized (this) {
+                if (cancelRequested) {
+                    finish(Status.CANCELLED, null);
+                    return;
+                }
+                cancellation = BuildCancellation.begin();
+                status = Status.RUNNING;
+            }
+            try {
+                log.consumeLine("Going to build and deploy " + appName + " at " + new Date());
+                deployer.deploy(appName, this::consumeBuildOutput);
+                synchronized (this) {
+                    if (cancelRequested) {
+                        log.consumeLine("The new version was already receiving requests when the cancellation was requested, so the deploy was not cancelled");
+                    }
+                }
+                log.consumeLine("Success");
+                finish(Status.SUCCEEDED, null);
+            } catch (Exception e) {
+                if (cancellation.isCancelled()) {
+                    log.consumeLine("The deploy was cancelled");
+                    finish(Status.CANCELLED, null);
+                } else {
+                    DeployJobs.log.warn("Deploy job " + id + " for " + appName + " failed", e);
+                    log.consumeLine("Error while updating: " + e);
+                    finish(Status.FAILED, e.getMessage());
+                }
+            } finally {
+                cancellation.end();
+            }
+        }
+
+        private void consumeBuildOutput(String line) {
+            if (logTruncated) {
+                return;
+            }
+            if (log.length() + line.length() > maxLogBytes) {
+                logTruncated = true;
+                log.consumeLine("The rest of the output is not shown here as it is over " + maxLogBytes + " bytes. See the build log of " + appName + " for the full output.");
+            } else {
+                log.consumeLine(line);
+            }
+        }
+
+        private synchronized void finish(Status status, String error) {
+            this.error = error;
+            this.finished = Instant.now();
+            this.status = status;
+            log.close();
+        }
+
+        public JSONObject toJSON() {
+            Instant finished = this.finished;
+            return new JSONObject()
+                .put("id", id)
+                .put("app", appName)
+                .put("status", status.name().toLowerCase())
+                .put("created", created.toString())
+                .putOpt("finished", finished == null ? null : finished.toString())
+                .putOpt("error", error)
+                .put("logLength", log.length());
+        }
+    }
+}
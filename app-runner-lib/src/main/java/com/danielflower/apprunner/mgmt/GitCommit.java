@@ -31,15 +31,22 @@ public class GitCommit {
             try (RevWalk walk = new RevWalk(git.getRepository())) {
                 mostRecentCommit = walk.parseCommit(head);
             }
-            Date commitDate = new Date(1000L * mostRecentCommit.getCommitTime());
-            String id = mostRecentCommit.getId().name();
-            PersonIdent author = mostRecentCommit.getAuthorIdent();
-            return new GitCommit(id, commitDate, author.getName(), mostRecentCommit.getFullMessage());
+            return fromCommit(mostRecentCommit);
         } else {
             return null;
         }
     }
 
+    static GitCommit fromCommit(RevCommit commit) {
+        Date commitDate = new Date(1000L * commit.getCommitTime());
+        PersonIdent author = commit.getAuthorIdent();
+        return new GitCommit(commit.getId().name(), commitDate, author.getName(), commit.getFullMessage());
+    }
+
+    static GitCommit fromJSON(JSONObject json) {
+        return new GitCommit(json.getString("id"), new Date(json.getLong("date")), json.getString("author"), json.getString("message"));
+    }
+
 
     public JSONObject toJSON() {
         return new JSONObject()
@@ -0,0 +1,149 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.problems.InvalidConfigException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.file.PathUtils;
+import org.apache.commons.io.file.StandardDeleteOption;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * Creates and removes the instance directories that each version of an app is built and run in.
+ */
+public class InstanceDirs {
+    private static final Logger log = LoggerFactory.getLogger(InstanceDirs.class);
+    private static final String REAPING_PREFIX = "deleting-";
+    private static final AtomicInteger reaperCount = new AtomicInteger();
+    private static final ExecutorService reapers = Executors.newFixedThreadPool(
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), r -> {
+            Thread thread = new Thread(r, "instance-reaper-" + reaperCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    public enum Mode {
+        /**
+         * Writes each file at HEAD straight from the git object database
+         */
+        CHECKOUT,
+        /**
+         * Hard links each file to the git work tree, falling back to checking out files that cannot be linked.
+         * Files are shared with the work tree, so this should only be used for apps whose builds do not change
+         * tracked files in place.
+         */
+        LINK,
+        /**
+         * Copies the git work tree
+         */
+        COPY;
+
+        public static Mode fromConfig(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidConfigException("Unsupported instance mode '" + value + "'. Valid values are checkout, link or copy");
+            }
+        }
+    }
+
+    /**
+     * Fills an empty directory with the files of the repository at HEAD. If that fails, the work tree is copied instead.
+     * @return The mode that was actually used
+     */
+    public static Mode populate(Repository repo, File dest, Mode mode) throws IOException {
+        if (mode != Mode.COPY) {
+            try {
+                checkout(repo, dest, mode == Mode.LINK);
+                return mode;
+            } catch (Exception e) {
+                log.warn("Could not create " + fullPath(dest) + " from the git repo, so the work tree will be copied instead", e);
+                FileUtils.cleanDirectory(dest);
+            }
+        }
+        FileUtils.copyDirectory(repo.getWorkTree(), dest, pathname -> !pathname.getName().equals(".git"));
+        return Mode.COPY;
+    }
+
+    private static void checkout(Repository repo, File dest, boolean link) throws IOException {
+        ObjectId head = repo.resolve(Constants.HEAD);
+        if (head == null) {
+            throw new IOException("The repo has no HEAD commit");
+        }
+        Path destRoot = dest.toPath();
+        Path workTree = repo.getWorkTree().toPath();
+        boolean canLink = link;
+        try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(revWalk.parseCommit(head).getTree());
+            treeWalk.setRecursive(true);
+            ObjectReader reader = treeWalk.getObjectReader();
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                Path target = destRoot.resolve(path);
+                Files.createDirectories(target.getParent());
+                FileMode mode = treeWalk.getFileMode(0);
+                if (mode == FileMode.GITLINK) {
+                    Files.createDirectories(target); // submodules are not cloned, so are empty in the work tree too
+                } else if (mode == FileMode.SYMLINK) {
+                    String linkTarget = new String(reader.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+                    Files.createSymbolicLink(target, Paths.get(linkTarget));
+                } else {
+                    if (canLink) {
+                        try {
+                            Files.createLink(target, workTree.resolve(path));
+                            continue;
+                        } catch (IOException | UnsupportedOperationException e) {
+                            log.info("Could not hard link " + path + " into " + fullPath(dest) + " so files will be checked out instead: " + e.getMessage());
+                            canLink = false;
+                        }
+                    }
+                    try (OutputStream out = Files.newOutputStream(target)) {
+                        reader.open(treeWalk.getObjectId(0)).copyTo(out);
+                    }
+                    if (mode == FileMode.EXECUTABLE_FILE && !target.toFile().setExecutable(true)) {
+                        log.info("Could not make " + fullPath(target.toFile()) + " executable");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes an instance directory in the background. The directory is renamed straight away so that it is out
+     * of the way, and then deleted on one of several reaper threads so that big trees do not queue behind each other.
+     */
+    public static void reap(File instanceDir) {
+        File toDelete = new File(instanceDir.getParentFile(), REAPING_PREFIX + instanceDir.getName());
+        if (!instanceDir.renameTo(toDelete)) {
+            toDelete = instanceDir;
+        }
+        File dir = toDelete;
+        reapers.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                if (dir.isDirectory()) {
+                    PathUtils.deleteDirectory(dir.toPath(), StandardDeleteOption.OVERRIDE_READ_ONLY);
+                }
+                log.info("Deleted " + fullPath(instanceDir) + " in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                log.info("Couldn't delete " + fullPath(dir) +
+                    " but it doesn't really matter as it will get deleted on next AppRunner startup.");
+            }
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.io.LineConsumer;
+import com.danielflower.apprunner.runners.ProcessStarter;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * Clones and fetches with the <code>git</code> command line tool rather than JGit. Unlike JGit, this supports
+ * shallow and partial (filtered) clones, which makes a big difference for repos with long histories. The repo
+ * is still read with JGit afterwards.
+ */
+class NativeGit {
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(AppManager.REMOTE_GIT_TIMEOUT);
+
+    /**
+     * @param depth  The number of commits to clone, or 0 for the full history
+     * @param filter A partial clone filter such as <code>blob:none</code>, or blank to get all objects
+     */
+    static void cloneRepo(LineConsumer output, String gitUrl, File gitDir, int depth, String filter) {
+        CommandLine command = git().addArgument("clone");
+        if (depth > 0) {
+            command.addArgument("--depth").addArgument(String.valueOf(depth));
+        }
+        if (StringUtils.isNotBlank(filter)) {
+            command.addArgument("--filter=" + filter.trim(), false);
+        }
+        command.addArgument(toNativeUrl(gitUrl), false).addArgument(fullPath(gitDir), false);
+        ProcessStarter.run(output, env(), command, gitDir.getParentFile(), TIMEOUT);
+    }
+
+    /**
+     * Fetches the commit that the remote's HEAD points to and checks it out
+     */
+    static void fetchAndCheckoutHead(LineConsumer output, File workTree, int depth) {
+        long start = System.currentTimeMillis();
+        CommandLine fetch = git().addArgument("fetch");
+        if (depth > 0) {
+            fetch.addArgument("--depth").addArgument(String.valueOf(depth));
+        } else if (new File(workTree, ".git" + File.separator + "shallow").isFile()) {
+            fetch.addArgument("--unshallow");
+        }
+        fetch.addArgument("origin").addArgument("HEAD");
+        ProcessStarter.run(output, env(), fetch, workTree, TIMEOUT);
+        output.consumeLine("Fetched from git in " + (System.currentTimeMillis() - start) + "ms");
+
+        start = System.currentTimeMillis();
+        ProcessStarter.run(output, env(), git().addArgument("checkout").addArgument("--force").addArgument("--detach").addArgument("FETCH_HEAD"), workTree, TIMEOUT);
+        output.consumeLine("Checked out the latest commit in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * JGit accepts URLs such as <code>file:/some/path</code> as produced by {@link File#toURI()} but git does not
+     */
+    static String toNativeUrl(String gitUrl) {
+        if (gitUrl.startsWith("file:/") && !gitUrl.startsWith("file://")) {
+            return "file://" + gitUrl.substring("file:".length());
+        }
+        return gitUrl;
+    }
+
+    private static CommandLine git() {
+        return new CommandLine("git");
+    }
+
+    private static Map<String, String> env() {
+        Map<String, String> env = new HashMap<>(System.getenv());
+        // fail rather than hang if credentials are needed
+        env.put("GIT_TERMINAL_PROMPT", "0");
+        return env;
+    }
+}
@@ -0,0 +1,93 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.runners.ProcStats;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The most recent resource usage samples of an app's processes, oldest first. Once full, each new sample replaces
+ * the oldest one, so the memory used per app is fixed.
+ */
+public class ProcessHistory {
+    public static final int CAPACITY = 360;
+
+    private final Supplier<List<Long>> pids;
+    private final ProcessSample[] samples = new ProcessSample[CAPACITY];
+    private int next = 0;
+    private int size = 0;
+    private Map<Long, ProcStats> previous;
+    private long previousNanos;
+
+    /**
+     * @param pids Gets the IDs of the app's currently running processes
+     */
+    public ProcessHistory(Supplier<List<Long>> pids) {
+        this.pids = pids;
+    }
+
+    /**
+     * Reads the current usage of the app's processes and records a sample. CPU percent and IO bytes are worked out
+     * from the previous reading of each process, so processes that were not running at the previous reading, such
+     * as those of a new deploy, only count from the next sample. The first reading only sets the baseline and is
+     * not recorded.
+     */
+    public void sample(File procRoot) {
+        List<Long> current = pids.get();
+        Map<Long, ProcStats> stats = ProcStats.read(procRoot, current);
+        long now = System.nanoTime();
+        synchronized (this) {
+            Map<Long, ProcStats> before = previous;
+            long elapsedNanos = now - previousNanos;
+            previous = stats;
+            previousNanos = now;
+            if (stats.isEmpty()) {
+                previous = null;
+                return;
+            }
+            if (before == null || elapsedNanos <= 0) {
+                return;
+            }
+            long cpuTicks = 0, rssBytes = 0, threads = 0, openFiles = 0, ioReadBytes = 0, ioWriteBytes = 0;
+            for (ProcStats process : stats.values()) {
+                rssBytes += process.rssBytes;
+                threads += process.threads;
+                openFiles += process.openFiles;
+                ProcStats previousReading = before.get(process.pid);
+                if (process.isSameProcessAs(previousReading)) {
+                    cpuTicks += Math.max(0, process.cpuTicks - previousReading.cpuTicks);
+                    ioReadBytes += Math.max(0, process.ioReadBytes - previousReading.ioReadBytes);
+                    ioWriteBytes += Math.max(0, process.ioWriteBytes - previousReading.ioWriteBytes);
+                }
+            }
+            double cpuPercent = (cpuTicks * 100.0 / ProcStats.CLOCK_TICKS_PER_SECOND) / (elapsedNanos / 1e9);
+            add(new ProcessSample(Instant.now(), stats.size(), cpuPercent, rssBytes, threads, openFiles, ioReadBytes, ioWriteBytes));
+        }
+    }
+
+    synchronized void add(ProcessSample sample) {
+        samples[next] = sample;
+        next = (next + 1) % CAPACITY;
+        size = Math.min(CAPACITY, size + 1);
+    }
+
+    public synchronized List<ProcessSample> samples() {
+        List<ProcessSample> copy = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            copy.add(samples[(next - size + i + CAPACITY) % CAPACITY]);
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * @return The most recent sample, or null if there are none
+     */
+    public synchronized ProcessSample latest() {
+        return size == 0 ? null : samples[(next - 1 + CAPACITY) % CAPACITY];
+    }
+}
@@ -0,0 +1,48 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.json.JSONObject;
+
+import java.time.Instant;
+
+/**
+ * The resources used by the processes of an app over one sampling interval
+ */
+public class ProcessSample {
+    public final Instant time;
+    public final int processes;
+    /**
+     * The CPU time used during the interval as a percentage of one core, so it can be over 100 on multi-core machines
+     */
+    public final double cpuPercent;
+    public final long rssBytes;
+    public final long threads;
+    public final long openFiles;
+    /**
+     * The bytes read from and written to storage during the interval
+     */
+    public final long ioReadBytes;
+    public final long ioWriteBytes;
+
+    public ProcessSample(Instant time, int processes, double cpuPercent, long rssBytes, long threads, long openFiles, long ioReadBytes, long ioWriteBytes) {
+        this.time = time;
+        this.processes = processes;
+        this.cpuPercent = cpuPercent;
+        this.rssBytes = rssBytes;
+        this.threads = threads;
+        this.openFiles = openFiles;
+        this.ioReadBytes = ioReadBytes;
+        this.ioWriteBytes = ioWriteBytes;
+    }
+
+    public JSONObject toJSON() {
+        return new JSONObject()
+            .put("time", time.toString())
+            .put("processes", processes)
+            .put("cpuPercent", Math.round(cpuPercent * 10) / 10.0)
+            .put("rssBytes", rssBytes)
+            .put("threads", threads)
+            .put("openFiles", openFiles)
+            .put("ioReadBytes", ioReadBytes)
+            .put("ioWriteBytes", ioWriteBytes);
+    }
+}
@@ -0,0 +1,66 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.runners.ProcStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * Periodically records the resource usage of each app's processes into the app's {@link ProcessHistory}
+ */
+public class ProcessSampler {
+    private static final Logger log = LoggerFactory.getLogger(ProcessSampler.class);
+
+    private final Supplier<Stream<AppDescription>> apps;
+    private final File procRoot;
+    private final int intervalSeconds;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "process-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProcessSampler(Supplier<Stream<AppDescription>> apps, File procRoot, int intervalSeconds) {
+        this.apps = apps;
+        this.procRoot = procRoot;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Starts sampling, unless the interval is not positive or there is no proc filesystem to read
+     */
+    public void start() {
+        if (intervalSeconds < 1) {
+            log.info("Process sampling is disabled");
+            return;
+        }
+        if (!ProcStats.isAvailable(procRoot)) {
+            log.info("Process sampling is disabled as " + fullPath(procRoot) + " cannot be read");
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::sampleAll, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        log.info("App processes will be sampled every " + intervalSeconds + " seconds");
+    }
+
+    void sampleAll() {
+        apps.get().forEach(app -> {
+            try {
+                app.processHistory().sample(procRoot);
+            } catch (Exception e) {
+                log.debug("Could not sample the processes of " + app.name(), e);
+            }
+        });
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
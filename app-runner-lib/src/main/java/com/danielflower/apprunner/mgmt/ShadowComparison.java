@@ -0,0 +1,49 @@
+package com.danielflower.apprunner.mgmt;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The latencies and error rates of the live version of an app and a candidate version for the same set of mirrored
+ * requests. Latency is the time until the response headers were received.
+ */
+public class ShadowComparison {
+    public final TrafficStats primary;
+    public final TrafficStats candidate;
+    /**
+     * The number of requests that were not mirrored because the mirroring queue was full
+     */
+    public final long dropped;
+
+    public ShadowComparison(TrafficStats primary, TrafficStats candidate, long dropped) {
+        this.primary = primary;
+        this.candidate = candidate;
+        this.dropped = dropped;
+    }
+
+    public List<String> describe() {
+        return Arrays.asList(
+            "Live version:      " + primary,
+            "Candidate version: " + candidate + (dropped > 0 ? " (" + dropped + " requests not mirrored as the queue was full)" : "")
+        );
+    }
+
+    /**
+     * @param maxSlowdownPercent How much slower the candidate's median latency can be than the live version's
+     * @param minRequests The number of requests needed to make a comparison
+     * @return The reason the candidate is worse than the live version, or null if it is not
+     */
+    public String regression(int maxSlowdownPercent, int minRequests) {
+        if (candidate.requests < minRequests || primary.requests < minRequests) {
+            return null;
+        }
+        if (candidate.errorPercent() > primary.errorPercent()) {
+            return "its error rate was " + candidate.errorPercent() + "% compared with " + primary.errorPercent() + "% for the live version";
+        }
+        if (candidate.medianMillis * 100 > primary.medianMillis * (100 + maxSlowdownPercent)) {
+            return "its median latency was " + candidate.medianMillis + "ms compared with " + primary.medianMillis
+                + "ms for the live version, which is more than " + maxSlowdownPercent + "% slower";
+        }
+        return null;
+    }
+}
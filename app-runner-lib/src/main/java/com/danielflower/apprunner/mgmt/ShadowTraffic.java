@@ -0,0 +1,27 @@
+package com.danielflower.apprunner.mgmt;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Copies a share of the live requests to an app onto a new version of the app before it is given any traffic
+ */
+public interface ShadowTraffic {
+
+    /**
+     * Starts mirroring requests. The responses from the candidate instances are discarded.
+     * @param appName The app whose requests are mirrored
+     * @param candidateUrls The URLs of the new instances of the app
+     * @param percent The percentage of requests to mirror
+     * @return A session that must be stopped to stop mirroring
+     */
+    Session start(String appName, List<URL> candidateUrls, int percent);
+
+    interface Session {
+        /**
+         * Stops mirroring requests
+         * @return How the candidate performed compared with the live version for the mirrored requests
+         */
+        ShadowComparison stop();
+    }
+}
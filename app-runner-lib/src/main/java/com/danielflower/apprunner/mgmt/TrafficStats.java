@@ -0,0 +1,47 @@
+package com.danielflower.apprunner.mgmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The number of requests, errors and latency percentiles for requests proxied to one or more instances of an app
+ */
+public class TrafficStats {
+    public final long requests;
+    public final long errors;
+    public final long medianMillis;
+    public final long p95Millis;
+    public final long p99Millis;
+
+    public TrafficStats(long requests, long errors, long medianMillis, long p95Millis, long p99Millis) {
+        this.requests = requests;
+        this.errors = errors;
+        this.medianMillis = medianMillis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+    }
+
+    /**
+     * @param latenciesMillis The latencies of the requests that got a response
+     */
+    public static TrafficStats of(long requests, long errors, List<Long> latenciesMillis) {
+        List<Long> sorted = new ArrayList<>(latenciesMillis);
+        Collections.sort(sorted);
+        return new TrafficStats(requests, errors, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        return sorted.isEmpty() ? 0 : sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+
+    public long errorPercent() {
+        return requests == 0 ? 0 : errors * 100 / requests;
+    }
+
+    @Override
+    public String toString() {
+        return requests + " requests, " + errors + " errors (" + errorPercent() + "%), median " + medianMillis + "ms, p95 "
+            + p95Millis + "ms, p99 " + p99Millis + "ms";
+    }
+}
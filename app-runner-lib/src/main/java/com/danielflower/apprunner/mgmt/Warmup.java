@@ -0,0 +1,198 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.Config;
+import com.danielflower.apprunner.io.LineConsumer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * Sends requests to a new version of an app after it has started but before it is given any traffic, so that the
+ * JIT compiler and caches have warmed up by the time real users reach it. The requests are read from a script of
+ * paths if one is configured, or else are a replay of recent requests made to the app through the proxy.
+ * Requests are sent in batches until the request limit is hit, the median latency of a batch meets the latency
+ * target, or the timeout expires. Paths that cannot be made into a URL are skipped.
+ */
+class Warmup {
+    private static final Logger log = LoggerFactory.getLogger(Warmup.class);
+    static final int BATCH_SIZE = 10;
+    private static final long MAX_REQUEST_TIMEOUT_MILLIS = 10000;
+
+    private static final HttpClient client = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(2))
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .build();
+
+    private final String appName;
+    private final int maxRequests;
+    private final long latencyTargetMillis;
+    private final long timeoutMillis;
+    private final File script;
+    private final Supplier<List<String>> recentRequests;
+
+    Warmup(String appName, int maxRequests, long latencyTargetMillis, long timeoutMillis, File script, Supplier<List<String>> recentRequests) {
+        this.appName = appName;
+        this.maxRequests = maxRequests;
+        this.latencyTargetMillis = latencyTargetMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.script = script;
+        this.recentRequests = recentRequests;
+    }
+
+    /**
+     * @return The warmup configured for the app, or null if warmup is not enabled
+     */
+    static Warmup forApp(String appName, Config config, File workTree, Supplier<List<String>> recentRequests) {
+        int maxRequests = config.getIntForApp(appName, Config.APP_WARMUP_REQUESTS, 0);
+        long latencyTarget = config.getLongForApp(appName, Config.APP_WARMUP_LATENCY_MS, 0);
+        if (maxRequests <= 0 && latencyTarget <= 0) {
+            return null;
+        }
+        String scriptPath = config.getForApp(appName, Config.APP_WARMUP_SCRIPT, null);
+        File script = null;
+        if (StringUtils.isNotBlank(scriptPath)) {
+            script = new File(scriptPath);
+            if (!script.isAbsolute()) {
+                script = new File(workTree, scriptPath);
+            }
+        }
+        return new Warmup(appName, maxRequests <= 0 ? Integer.MAX_VALUE : maxRequests, latencyTarget,
+            config.getLongForApp(appName, Config.APP_WARMUP_TIMEOUT, 30000), script, recentRequests);
+    }
+
+    /**
+     * @param urls The URLs of the new instances of the app
+     */
+    WarmupResult run(LineConsumer output, List<URL> urls) throws InterruptedException {
+        String source = "script";
+        int skippedPaths = 0;
+        List<String> paths = scriptPaths(output);
+        List<String> validPaths = validPaths(paths);
+        if (validPaths.isEmpty()) {
+            skippedPaths += paths.size();
+            source = "recent-requests";
+            paths = recentPaths();
+            validPaths = validPaths(paths);
+        }
+        skippedPaths += paths.size() - validPaths.size();
+        paths = validPaths;
+        if (skippedPaths > 0) {
+            output.consumeLine("Skipping " + skippedPaths + " warmup path(s) that are not valid URL paths");
+        }
+        if (paths.isEmpty()) {
+            source = "root";
+            paths = Collections.singletonList("");
+        }
+        output.consumeLine("Warming up " + appName + " with up to " + (maxRequests == Integer.MAX_VALUE ? "unlimited" : maxRequests)
+            + " requests (" + paths.size() + " distinct paths from " + source + ")");
+
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+        List<Long> curve = new ArrayList<>();
+        int sent = 0;
+        int errors = 0;
+        boolean targetReached = false;
+        while (sent < maxRequests && System.currentTimeMillis() < deadline) {
+            int batchSize = Math.min(BATCH_SIZE, maxRequests - sent);
+            List<Long> latencies = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                // every replica gets each path in turn, even when the number of paths is a multiple of the replicas
+                URL url = urls.get(sent % urls.size());
+                String path = paths.get((sent / urls.size()) % paths.size());
+                URI uri = URI.create(StringUtils.stripEnd(url.toString(), "/") + "/" + path);
+                sent++;
+                long requestStart = System.nanoTime();
+                try {
+                    Duration timeout = Duration.ofMillis(Math.min(MAX_REQUEST_TIMEOUT_MILLIS, remaining));
+                    client.send(HttpRequest.newBuilder(uri).timeout(timeout).GET().build(), HttpResponse.BodyHandlers.discarding());
+                    latencies.add((System.nanoTime() - requestStart) / 1_000_000);
+                } catch (IOException e) {
+                    errors++;
+                }
+            }
+            if (!latencies.isEmpty()) {
+                Collections.sort(latencies);
+                long median = latencies.get(latencies.size() / 2);
+                curve.add(median);
+                if (latencyTargetMillis > 0 && median <= latencyTargetMillis) {
+                    targetReached = true;
+                    break;
+                }
+            }
+        }
+        long duration = System.currentTimeMillis() - start;
+        output.consumeLine("Warmed up " + appName + " with " + sent + " requests (" + errors + " errors) in " + duration
+            + "ms. Median latency per batch in ms: " + curve.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+        return new WarmupResult(source, sent, errors, skippedPaths, duration, targetReached, curve);
+    }
+
+    private static List<String> validPaths(List<String> paths) {
+        List<String> valid = new ArrayList<>();
+        for (String path : paths) {
+            try {
+                URI.create("http://localhost/" + path);
+                valid.add(path);
+            } catch (IllegalArgumentException e) {
+                log.debug("Skipping invalid warmup path " + path);
+            }
+        }
+        return valid;
+    }
+
+    private List<String> scriptPaths(LineConsumer output) {
+        if (script == null) {
+            return Collections.emptyList();
+        }
+        if (!script.isFile()) {
+            output.consumeLine("The warmup script " + fullPath(script) + " does not exist so recent requests will be used instead");
+            return Collections.emptyList();
+        }
+        try {
+            return FileUtils.readLines(script, StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(line -> StringUtils.stripStart(line, "/"))
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("Could not read warmup script " + fullPath(script), e);
+            output.consumeLine("Could not read the warmup script " + fullPath(script) + " so recent requests will be used instead");
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * The recorded requests include the app name, which is removed so the paths are relative to the app URL
+     */
+    private List<String> recentPaths() {
+        String prefix = "/" + appName;
+        List<String> paths = new ArrayList<>();
+        for (String path : recentRequests.get()) {
+            if (StringUtils.startsWithIgnoreCase(path, prefix)) {
+                paths.add(StringUtils.stripStart(path.substring(prefix.length()), "/"));
+            }
+        }
+        return paths;
+    }
+}
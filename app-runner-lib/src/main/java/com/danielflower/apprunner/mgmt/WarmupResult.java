@@ -0,0 +1,47 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What happened when a new version of an app was warmed up before it was given traffic
+ */
+public class WarmupResult {
+    public final String source;
+    public final int requests;
+    public final int errors;
+    /**
+     * The number of paths that were not sent because they could not be made into a valid URL
+     */
+    public final int skippedPaths;
+    public final long durationMillis;
+    public final boolean latencyTargetReached;
+    /**
+     * The median latency in millis of each batch of warmup requests, in the order they were sent
+     */
+    public final List<Long> latencyCurve;
+
+    public WarmupResult(String source, int requests, int errors, int skippedPaths, long durationMillis, boolean latencyTargetReached, List<Long> latencyCurve) {
+        this.source = source;
+        this.requests = requests;
+        this.errors = errors;
+        this.skippedPaths = skippedPaths;
+        this.durationMillis = durationMillis;
+        this.latencyTargetReached = latencyTargetReached;
+        this.latencyCurve = Collections.unmodifiableList(latencyCurve);
+    }
+
+    public JSONObject toJSON() {
+        return new JSONObject()
+            .put("source", source)
+            .put("requests", requests)
+            .put("errors", errors)
+            .put("skippedPaths", skippedPaths)
+            .put("durationMillis", durationMillis)
+            .put("latencyTargetReached", latencyTargetReached)
+            .put("latencyCurve", new JSONArray(latencyCurve));
+    }
+}
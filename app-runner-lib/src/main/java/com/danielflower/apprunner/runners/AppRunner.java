@@ -4,11 +4,64 @@ import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public interface AppRunner {
-    void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException;
 
+    /**
+     * Builds the app and then launches a single instance of it.
+     */
+    default void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+        build(buildLogHandler, envVarsForApp);
+        launch(buildLogHandler, consoleLogHandler, envVarsForApp, startupWaiter);
+    }
+
+    /**
+     * Runs the build (including any tests) in the instance directory.
+     */
+    void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException;
+
+    /**
+     * Starts a process running the already-built app. This can be called multiple times with different
+     * ports in order to run multiple instances of the app.
+     */
+    void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException;
+
+    /**
+     * Returns true if {@link #launch} only needs the files in the instance directory after a build, so that a copy
+     * of a built instance directory can be launched without building it again. This is false for runners that keep
+     * state from the build in memory or whose build output refers to the absolute path of the instance directory.
+     */
+    default boolean canLaunchCopiedBuild() {
+        return false;
+    }
+
+    /**
+     * Gives the runner somewhere to keep the dependencies it installs, so that later deploys of the app can reuse them.
+     * Runners that do not install dependencies into the instance directory ignore this.
+     */
+    default void useDependencySnapshots(DependencySnapshots snapshots) {
+    }
+
+    /**
+     * Gives the runner a directory that its build tools can keep incremental build state in between deploys.
+     * Runners whose tools have nothing to keep ignore this.
+     */
+    default void useToolchainCache(ToolchainCache cache) {
+    }
+
+    /**
+     * @return The IDs of the processes running for this runner's launched instances, including any they started
+     */
+    default List<Long> processIds() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Stops all the processes launched by this runner.
+     */
     void shutdown();
 
     File getInstanceDir();
@@ -0,0 +1,90 @@
+package com.danielflower.apprunner.runners;
+
+import com.danielflower.apprunner.problems.ProjectCannotStartException;
+import org.apache.commons.exec.CommandLine;
+
+/**
+ * Allows a build running on another thread to be cancelled. Build processes started on that thread by
+ * {@link ProcessStarter} are killed, and the thread is interrupted, which also stops Maven builds and any wait for
+ * a place in the build queue.
+ */
+public class BuildCancellation {
+    private static final ThreadLocal<BuildCancellation> current = new ThreadLocal<>();
+
+    private final Thread thread;
+    private volatile boolean cancelled;
+    private boolean cancellable = true; // guarded by this
+    private volatile Killer killer;
+
+    private BuildCancellation(Thread thread) {
+        this.thread = thread;
+    }
+
+    /**
+     * Makes builds on the current thread cancellable until {@link #end()} is called on the same thread
+     */
+    public static BuildCancellation begin() {
+        BuildCancellation cancellation = new BuildCancellation(Thread.currentThread());
+        current.set(cancellation);
+        return cancellation;
+    }
+
+    public void end() {
+        current.remove();
+        Thread.interrupted();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        synchronized (this) {
+            if (!cancellable) {
+                return;
+            }
+            cancelled = true;
+        }
+        thread.interrupt();
+        Killer killer = this.killer;
+        if (killer != null) {
+            killer.destroyProcess();
+        }
+    }
+
+    /**
+     * Makes any later cancellation of the current thread have no effect, for work that must not be stopped part
+     * way through, such as switching over to a new version of an app.
+     * @return False if the current thread had already been cancelled, in which case the work should not be started
+     */
+    public static boolean disableForCurrentThread() {
+        BuildCancellation cancellation = current.get();
+        if (cancellation == null) {
+            return true;
+        }
+        synchronized (cancellation) {
+            cancellation.cancellable = false;
+            return !cancellation.cancelled;
+        }
+    }
+
+    /**
+     * @return True if builds on the current thread have been cancelled
+     */
+    public static boolean currentBuildCancelled() {
+        BuildCancellation cancellation = current.get();
+        return cancellation != null && cancellation.cancelled;
+    }
+
+    static Killer killerFor(long timeout, CommandLine command) {
+        Killer killer = new Killer(timeout, command);
+        BuildCancellation cancellation = current.get();
+        if (cancellation != null) {
+            if (cancellation.cancelled) {
+                throw new ProjectCannotStartException("The build was cancelled");
+            }
+            cancellation.killer = killer;
+        }
+        return killer;
+    }
+}
@@ -0,0 +1,107 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * Runs build processes at a lower CPU and IO priority than the running apps, so that builds do not slow down the
+ * handling of requests. This uses <code>nice</code> and <code>ionice</code>, so has no effect where they are not available.
+ */
+public class BuildPriority {
+    private static final Logger log = LoggerFactory.getLogger(BuildPriority.class);
+    private static volatile List<String> prefix = Collections.emptyList();
+    private static volatile File scriptDir;
+    private static final Map<String, File> mavenWrappers = new ConcurrentHashMap<>();
+
+    /**
+     * @param niceness The niceness to run builds with, from 1 to 19, or 0 to run builds at normal priority
+     * @param scriptDir Where to write the script used to start Maven
+     */
+    public static void lowerBuildPriority(int niceness, File scriptDir) {
+        List<String> command = new ArrayList<>();
+        if (niceness > 0 && !SystemUtils.IS_OS_WINDOWS) {
+            String level = String.valueOf(Math.min(19, niceness));
+            if (ProcessStarter.run(new CommandLine("nice").addArgument("-n").addArgument(level).addArgument("true")).getLeft()) {
+                Collections.addAll(command, "nice", "-n", level);
+            }
+            // best-effort class at its lowest priority, rather than idle, so builds still progress on a busy disk
+            if (ProcessStarter.run(new CommandLine("ionice").addArgument("-c").addArgument("2").addArgument("-n").addArgument("7").addArgument("true")).getLeft()) {
+                Collections.addAll(command, "ionice", "-c", "2", "-n", "7");
+            }
+        }
+        prefix = Collections.unmodifiableList(command);
+        BuildPriority.scriptDir = scriptDir;
+        mavenWrappers.clear();
+        log.info(command.isEmpty() ? "Builds will run at normal priority" : "Builds will run with " + String.join(" ", command));
+    }
+
+    static CommandLine apply(CommandLine command) {
+        List<String> prefix = BuildPriority.prefix;
+        if (prefix.isEmpty()) {
+            return command;
+        }
+        CommandLine wrapped = new CommandLine(prefix.get(0));
+        for (String arg : prefix.subList(1, prefix.size())) {
+            wrapped.addArgument(arg);
+        }
+        wrapped.addArgument(command.getExecutable(), false);
+        for (String arg : command.getArguments()) {
+            wrapped.addArgument(arg, false);
+        }
+        return wrapped;
+    }
+
+    /**
+     * Maven is started by the Maven Invoker rather than from a command line, so it is pointed at a script that
+     * runs mvn with the lower priority, and in the app's build cgroup if the build is using one.
+     */
+    static void apply(InvocationRequest request, File m2Home) {
+        List<String> prefix = BuildPriority.prefix;
+        Cgroup cgroup = Cgroup.current();
+        File mvn = m2Home == null ? null : new File(m2Home, "bin" + File.separator + "mvn");
+        if ((prefix.isEmpty() && cgroup == null) || scriptDir == null || mvn == null || !mvn.isFile()) {
+            return;
+        }
+        String procsFile = cgroup == null ? null : fullPath(cgroup.buildProcsFile());
+        File wrapper = mavenWrappers.computeIfAbsent(fullPath(m2Home) + (procsFile == null ? "" : File.pathSeparator + procsFile), key -> {
+            try {
+                FileUtils.forceMkdir(scriptDir);
+                File script = File.createTempFile("apprunner-mvn-", ".sh", scriptDir);
+                script.deleteOnExit();
+                String moveToCgroup = procsFile == null ? "" : "echo $$ > " + quote(procsFile) + " 2>/dev/null\n";
+                FileUtils.writeStringToFile(script, "#!/bin/sh\n" + moveToCgroup + "exec " + String.join(" ", prefix)
+                    + (prefix.isEmpty() ? "" : " ") + quote(fullPath(mvn)) + " \"$@\"\n", StandardCharsets.UTF_8);
+                if (!script.setExecutable(true)) {
+                    return null;
+                }
+                return script.getAbsoluteFile();
+            } catch (IOException e) {
+                log.warn("Could not create a script to run Maven at a lower priority", e);
+                return null;
+            }
+        });
+        if (wrapper != null) {
+            request.setMavenExecutable(wrapper);
+        }
+    }
+
+    private static String quote(String value) {
+        return "'" + StringUtils.replace(value, "'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,301 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * A cgroup v2 group for a single app, so that the CPU, memory and IO used by the app and its builds can be limited
+ * and measured. The group has a <code>run</code> child for the app's instances and a <code>build</code> child for
+ * its builds and git fetches, each with its own limits, so a build cannot use up the memory or CPU that the live
+ * instances are allowed. Processes started by {@link ProcessStarter} on a thread that is using a cgroup are placed
+ * in the matching child, and so are any processes they start. If cgroups are not available or not writable then
+ * apps are run without limits.
+ */
+public class Cgroup {
+    private static final Logger log = LoggerFactory.getLogger(Cgroup.class);
+    private static final String[] CONTROLLERS = {"cpu", "memory", "io"};
+    /**
+     * The value of each supported limit when there is no limit, which is written when a limit is removed
+     */
+    private static final Map<String, String> UNLIMITED = new LinkedHashMap<>();
+    static {
+        UNLIMITED.put("cpu.max", "max");
+        UNLIMITED.put("cpu.weight", "100");
+        UNLIMITED.put("memory.max", "max");
+        UNLIMITED.put("io.weight", "default 100");
+    }
+    private static final ThreadLocal<Cgroup> current = new ThreadLocal<>();
+    private static volatile File root;
+
+    private final String appName;
+    private final File dir;
+    private final File runDir;
+    private final File buildDir;
+
+    private Cgroup(String appName, File dir) {
+        this.appName = appName;
+        this.dir = dir;
+        this.runDir = new File(dir, "run");
+        this.buildDir = new File(dir, "build");
+    }
+
+    /**
+     * Sets up the cgroup that each app's cgroup is created under.
+     * @param rootDir A directory in a cgroup v2 hierarchy that AppRunner can write to, for example
+     *                <code>/sys/fs/cgroup/apprunner</code>, or null to not use cgroups
+     */
+    public static void useRoot(File rootDir) {
+        root = null;
+        if (rootDir == null) {
+            log.info("Apps will not be placed in cgroups as no cgroup root is configured");
+            return;
+        }
+        if (!SystemUtils.IS_OS_LINUX) {
+            log.warn("Apps will not be placed in cgroups as they are only supported on Linux");
+            return;
+        }
+        File parent = rootDir.getAbsoluteFile().getParentFile();
+        if (!rootDir.isDirectory() && (parent == null || !new File(parent, "cgroup.controllers").isFile())) {
+            log.warn("Apps will not be placed in cgroups as " + fullPath(rootDir) + " is not in a cgroup v2 hierarchy");
+            return;
+        }
+        try {
+            FileUtils.forceMkdir(rootDir);
+        } catch (IOException e) {
+            log.warn("Apps will not be placed in cgroups as " + fullPath(rootDir) + " could not be created", e);
+            return;
+        }
+        if (!new File(rootDir, "cgroup.controllers").isFile() || !new File(rootDir, "cgroup.procs").canWrite()) {
+            log.warn("Apps will not be placed in cgroups as " + fullPath(rootDir) + " is not a writable cgroup v2 group");
+            return;
+        }
+        for (String controller : CONTROLLERS) {
+            // the controller must be enabled in the parent for it to be available to the root, and then in the root for the apps
+            if (!hasController(rootDir, controller)) {
+                tryWrite(new File(parent, "cgroup.subtree_control"), "+" + controller);
+            }
+            if (!tryWrite(new File(rootDir, "cgroup.subtree_control"), "+" + controller)) {
+                log.warn("The " + controller + " cgroup controller could not be enabled in " + fullPath(rootDir) + " so " + controller + " limits will not apply");
+            }
+        }
+        root = rootDir;
+        log.info("Apps will be placed in cgroups under " + fullPath(rootDir));
+    }
+
+    public static boolean isEnabled() {
+        return root != null;
+    }
+
+    /**
+     * Creates or updates the cgroup for an app. Supported limits that are not given are set back to unlimited.
+     * @param runLimits The values to write to the cgroup interface files of the app's instances, such as
+     *                  <code>memory.max</code>, keyed by file name
+     * @param buildLimits The values to write to the cgroup interface files of the app's builds
+     * @return The app's cgroup, or null if cgroups are not being used or the cgroup could not be set up
+     */
+    public static Cgroup forApp(String appName, Map<String, String> runLimits, Map<String, String> buildLimits) {
+        File root = Cgroup.root;
+        if (root == null) {
+            return null;
+        }
+        Cgroup cgroup = new Cgroup(appName, new File(root, appName));
+        try {
+            FileUtils.forceMkdir(cgroup.dir);
+            // processes are only ever in the children, so controllers can be enabled for them
+            for (String controller : CONTROLLERS) {
+                tryWrite(new File(cgroup.dir, "cgroup.subtree_control"), "+" + controller);
+            }
+            FileUtils.forceMkdir(cgroup.runDir);
+            FileUtils.forceMkdir(cgroup.buildDir);
+        } catch (IOException e) {
+            log.warn("Could not create cgroup " + fullPath(cgroup.dir) + " so " + appName + " will run without limits", e);
+            return null;
+        }
+        cgroup.setLimits(cgroup.runDir, runLimits);
+        cgroup.setLimits(cgroup.buildDir, buildLimits);
+        return cgroup;
+    }
+
+    private void setLimits(File dir, Map<String, String> limits) {
+        for (Map.Entry<String, String> limit : limits.entrySet()) {
+            if (!tryWrite(new File(dir, limit.getKey()), limit.getValue())) {
+                log.warn("Could not set " + limit.getKey() + " to " + limit.getValue() + " for " + appName + " " + dir.getName());
+            }
+        }
+        for (Map.Entry<String, String> unlimited : UNLIMITED.entrySet()) {
+            if (!limits.containsKey(unlimited.getKey())) {
+                tryWrite(new File(dir, unlimited.getKey()), unlimited.getValue());
+            }
+        }
+    }
+
+    /**
+     * Places processes started on the current thread in the given cgroup until {@link #leave()} is called
+     */
+    public static void enter(Cgroup cgroup) {
+        current.set(cgroup);
+    }
+
+    public static void leave() {
+        current.remove();
+    }
+
+    static Cgroup current() {
+        return current.get();
+    }
+
+    /**
+     * @param build True to use the build cgroup, or false to use the cgroup of the app's instances
+     * @return A command that moves itself into the current thread's cgroup before running the given command, or the
+     * given command if the thread is not using a cgroup
+     */
+    static CommandLine apply(CommandLine command, boolean build) {
+        Cgroup cgroup = current.get();
+        if (cgroup == null) {
+            return command;
+        }
+        File procsFile = build ? cgroup.buildProcsFile() : cgroup.runProcsFile();
+        // $0 is the cgroup.procs file, and $@ is the original command, so no escaping is needed
+        CommandLine wrapped = new CommandLine("sh")
+            .addArgument("-c")
+            .addArgument("echo $$ > \"$0\" 2>/dev/null; exec \"$@\"", false)
+            .addArgument(fullPath(procsFile), false)
+            .addArgument(command.getExecutable(), false);
+        for (String arg : command.getArguments()) {
+            wrapped.addArgument(arg, false);
+        }
+        return wrapped;
+    }
+
+    /**
+     * @return The file that an app instance writes its PID to in order to move itself into this cgroup
+     */
+    File runProcsFile() {
+        return new File(runDir, "cgroup.procs");
+    }
+
+    /**
+     * @return The file that a build process writes its PID to in order to move itself into this cgroup
+     */
+    File buildProcsFile() {
+        return new File(buildDir, "cgroup.procs");
+    }
+
+    /**
+     * @return Current resource usage of the app's instances read from the cgroup's interface files. Values that
+     * cannot be read are left out.
+     */
+    public Map<String, Long> usage() {
+        Map<String, Long> usage = new LinkedHashMap<>();
+        Map<String, Long> cpu = readKeyValues("cpu.stat");
+        putIfPresent(usage, "cpuUsageMicros", cpu.get("usage_usec"));
+        putIfPresent(usage, "cpuThrottledPeriods", cpu.get("nr_throttled"));
+        putIfPresent(usage, "cpuThrottledMicros", cpu.get("throttled_usec"));
+        putIfPresent(usage, "memoryBytes", readLong("memory.current"));
+        putIfPresent(usage, "memoryPeakBytes", readLong("memory.peak"));
+        putIfPresent(usage, "memoryLimitBytes", readLong("memory.max"));
+        putIfPresent(usage, "oomKills", readKeyValues("memory.events").get("oom_kill"));
+        List<String> io = readLines("io.stat");
+        if (io != null) {
+            long read = 0;
+            long written = 0;
+            for (String line : io) {
+                for (String field : StringUtils.split(line)) {
+                    if (field.startsWith("rbytes=")) {
+                        read += Long.parseLong(field.substring(7));
+                    } else if (field.startsWith("wbytes=")) {
+                        written += Long.parseLong(field.substring(7));
+                    }
+                }
+            }
+            usage.put("ioReadBytes", read);
+            usage.put("ioWriteBytes", written);
+        }
+        return usage;
+    }
+
+    /**
+     * Removes the cgroup, which is only possible once all its processes have stopped
+     */
+    public void delete() {
+        for (File group : new File[] {runDir, buildDir, dir}) {
+            if (group.isDirectory() && !group.delete()) {
+                log.warn("Could not remove cgroup " + fullPath(group) + " for " + appName);
+            }
+        }
+    }
+
+    private static void putIfPresent(Map<String, Long> map, String key, Long value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    private Long readLong(String file) {
+        List<String> lines = readLines(file);
+        if (lines == null || lines.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lines.get(0).trim());
+        } catch (NumberFormatException e) {
+            return null; // for example "max" when there is no limit
+        }
+    }
+
+    private Map<String, Long> readKeyValues(String file) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        List<String> lines = readLines(file);
+        if (lines != null) {
+            for (String line : lines) {
+                String[] parts = StringUtils.split(line);
+                if (parts.length == 2 && StringUtils.isNumeric(parts[1])) {
+                    values.put(parts[0], Long.parseLong(parts[1]));
+                }
+            }
+        }
+        return values;
+    }
+
+    private List<String> readLines(String file) {
+        File f = new File(runDir, file);
+        try {
+            return f.isFile() ? FileUtils.readLines(f, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasController(File dir, String controller) {
+        try {
+            String controllers = FileUtils.readFileToString(new File(dir, "cgroup.controllers"), StandardCharsets.UTF_8);
+            return Arrays.asList(StringUtils.split(controllers)).contains(controller);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean tryWrite(File file, String value) {
+        try {
+            FileUtils.writeStringToFile(file, value, StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException e) {
+            log.debug("Could not write " + value + " to " + fullPath(file), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.danielflower.apprunner.runners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The long-running processes started by a runner, one for each launched instance of an app.
+ */
+public class Daemons {
+    private final List<Killer> killers = new CopyOnWriteArrayList<>();
+
+    public void add(Killer killer) {
+        killers.add(killer);
+    }
+
+    public List<Killer> all() {
+        return killers;
+    }
+
+    /**
+     * @return The IDs of the running processes, and of any processes they have started
+     */
+    public List<Long> pids() {
+        List<Long> pids = new ArrayList<>();
+        for (Killer killer : killers) {
+            Process process = killer.process();
+            if (process != null && process.isAlive()) {
+                pids.add(process.pid());
+                process.descendants().forEach(child -> pids.add(child.pid()));
+            }
+        }
+        return pids;
+    }
+
+    public boolean isEmpty() {
+        return killers.isEmpty();
+    }
+
+    public void shutdown() {
+        for (Killer killer : killers) {
+            killer.destroyProcess();
+            killer.stop();
+        }
+        killers.clear();
+    }
+}
@@ -0,0 +1,123 @@
+package com.danielflower.apprunner.runners;
+
+import com.danielflower.apprunner.io.LruDirectoryCache;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Installed dependencies of an app (such as <code>node_modules</code> or a virtualenv), keyed by a hash of the files
+ * that list the dependencies, so that a deploy that does not change the dependencies does not need to download them again.
+ * <p>
+ * When the total size goes over the budget, the least recently used snapshots are deleted, apart from the two most
+ * recently used as the older of those may still be in use by the running version of the app.
+ */
+public class DependencySnapshots {
+    private static final Logger log = LoggerFactory.getLogger(DependencySnapshots.class);
+
+    private final LruDirectoryCache cache;
+
+    public DependencySnapshots(File root, long maxBytes) {
+        this.cache = new LruDirectoryCache(root, maxBytes, 2, "dependency snapshot");
+    }
+
+    public boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    /**
+     * @param environment A description of the tools that install the dependencies, such as their versions
+     * @param dependencyFiles The files that list the dependencies. Files that do not exist are treated as empty.
+     * @return A key that changes when the environment or any of the files change
+     */
+    public static String key(String environment, File... dependencyFiles) throws IOException {
+        List<byte[]> parts = new ArrayList<>();
+        parts.add(environment.getBytes(StandardCharsets.UTF_8));
+        for (File file : dependencyFiles) {
+            parts.add(("\n" + file.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            if (file.isFile()) {
+                parts.add(Files.readAllBytes(file.toPath()));
+            }
+        }
+        return LruDirectoryCache.sha256Hex(parts.toArray(new byte[0][]));
+    }
+
+    /**
+     * @return The snapshot for the given key, or null if there is no complete snapshot
+     */
+    public File lookup(String key) {
+        return cache.lookup(key);
+    }
+
+    /**
+     * Copies a directory of installed dependencies into a new snapshot
+     */
+    public void store(String key, File installed) throws IOException {
+        copyTree(installed.toPath(), cache.newEntry(key).toPath());
+        cache.complete(key);
+    }
+
+    /**
+     * Gets an empty directory to install dependencies into, for tools that record the absolute path that they were
+     * installed at. Once installed, call {@link #complete(String)}.
+     */
+    public File emptyEntry(String key) throws IOException {
+        File entry = cache.newEntry(key);
+        FileUtils.forceMkdir(entry);
+        return entry;
+    }
+
+    /**
+     * Marks the snapshot as complete, and then removes the least recently used snapshots if over budget
+     */
+    public void complete(String key) throws IOException {
+        cache.complete(key);
+    }
+
+    /**
+     * Copies a snapshot into an instance directory. The files are copied rather than linked because package
+     * managers update installed files in place, which would otherwise change the snapshot and any running
+     * version of the app that was restored from it. Symbolic links are recreated rather than followed.
+     */
+    public static void restore(File snapshot, File dest) throws IOException {
+        copyTree(snapshot.toPath(), dest.toPath());
+    }
+
+    private static void copyTree(Path source, Path dest) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dest.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = dest.resolve(source.relativize(file).toString());
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(target, Files.readSymbolicLink(file));
+                } else {
+                    Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Forgets every snapshot so that dependencies are installed from scratch next time. The most recently used
+     * snapshots may be in use by the running app, so their files are left until AppRunner next restarts.
+     */
+    public void clear() throws IOException {
+        log.info("Clearing dependency snapshots");
+        cache.clear();
+    }
+}
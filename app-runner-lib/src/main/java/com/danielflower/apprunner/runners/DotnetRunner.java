@@ -8,7 +8,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class DotnetRunner implements AppRunner {
     public static final Logger log = LoggerFactory.getLogger(PythonRunner.class);
@@ -16,8 +18,8 @@ public class DotnetRunner implements AppRunner {
     private final File projectRoot;
     private final File projectFile;
     private final String executable;
-    private Killer watchDog;
-    public static final String[] startCommands = new String[] { "dotnet run" };
+    private final Daemons daemons = new Daemons();
+    public static final String[] startCommands = new String[] { "dotnet build", "dotnet run --no-build" };
 
     public DotnetRunner(File projectRoot, File projectFile, String executable) {
         this.projectRoot = projectRoot;
@@ -31,25 +33,37 @@ public class DotnetRunner implements AppRunner {
     }
 
     @Override
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
+        CommandLine command = new CommandLine(executable)
+            .addArgument("build")
+            .addArgument(projectFile.getName());
+
+        buildLogHandler.consumeLine("Building Dotnet app: " + StringUtils.join(command.toStrings(), " "));
+        ProcessStarter.run(buildLogHandler, envVarsForApp, command, projectRoot, TimeUnit.MINUTES.toMillis(30));
+    }
 
+    @Override
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
         CommandLine command = new CommandLine(executable)
             .addArgument("run")
+            .addArgument("--no-build")
             .addArgument("-p")
             .addArgument(projectFile.getName());
 
         buildLogHandler.consumeLine("Starting Dotnet app: " + StringUtils.join(command.toStrings(), " "));
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
 
         buildLogHandler.consumeLine("Dotnet app started.");
     }
 
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
+    }
+
     @Override
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 }
@@ -3,7 +3,6 @@ package com.danielflower.apprunner.runners;
 import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -11,6 +10,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -21,7 +21,8 @@ public class GoRunner implements AppRunner {
     private final File projectRoot;
     private final File instanceDir;
     private final CommandLineProvider goCmd;
-    private ExecuteWatchdog watchDog;
+    private final Daemons daemons = new Daemons();
+    private ToolchainCache toolchainCache;
 
     /*
      * Go project need special folder layout to build and run
@@ -59,15 +60,23 @@ public class GoRunner implements AppRunner {
         return instanceDir;
     }
 
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
         envVarsForApp.put("GOPATH", instanceDir.getAbsolutePath());
+        if (toolchainCache != null && toolchainCache.isEnabled()) {
+            envVarsForApp.put("GOCACHE", toolchainCache.dir("go-build").getAbsolutePath());
+            envVarsForApp.put("GOMODCACHE", toolchainCache.dir("go-mod").getAbsolutePath());
+            envVarsForApp.put("GOFLAGS", StringUtils.trim(StringUtils.defaultString(envVarsForApp.get("GOFLAGS")) + " -modcacherw"));
+        }
         rungo(buildLogHandler, envVarsForApp, "get", "-v");
         rungo(buildLogHandler, envVarsForApp, "build", "-v", "-o", instanceDir.getName());
         rungo(buildLogHandler, envVarsForApp, "test");
+    }
 
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+        envVarsForApp.put("GOPATH", instanceDir.getAbsolutePath());
         CommandLine command = new CommandLine("." + File.separator + projectRoot.getName());
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
     }
 
     private void rungo(LineConsumer buildLogHandler, Map<String, String> envVarsForApp, String... arguments) {
@@ -79,10 +88,17 @@ public class GoRunner implements AppRunner {
         ProcessStarter.run(buildLogHandler, envVarsForApp, command, projectRoot, TimeUnit.MINUTES.toMillis(20));
     }
 
+    @Override
+    public void useToolchainCache(ToolchainCache cache) {
+        this.toolchainCache = cache;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
+    }
+
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 }
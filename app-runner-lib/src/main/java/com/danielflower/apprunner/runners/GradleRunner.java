@@ -3,13 +3,16 @@ package com.danielflower.apprunner.runners;
 import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -29,7 +32,8 @@ public class GradleRunner implements AppRunner {
     private File projectRoot;
     private String gradleExec;
     private HomeProvider javaHomeProvider;
-    private ExecuteWatchdog watchDog;
+    private final Daemons daemons = new Daemons();
+    private ToolchainCache toolchainCache;
 
     public GradleRunner(File projectRoot, String gradleExec, HomeProvider javaHomeProvider) {
         this.projectRoot = projectRoot;
@@ -38,18 +42,34 @@ public class GradleRunner implements AppRunner {
     }
 
     @Override
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
         gradleClean(buildLogHandler, envVarsForApp);
         gradleBuild(buildLogHandler, envVarsForApp);
-        watchDog = runJar(buildLogHandler, consoleLogHandler, envVarsForApp, startupWaiter);
+    }
+
+    @Override
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+        daemons.add(runJar(buildLogHandler, consoleLogHandler, envVarsForApp, startupWaiter));
+    }
+
+    @Override
+    public boolean canLaunchCopiedBuild() {
+        return true;
+    }
+
+    @Override
+    public void useToolchainCache(ToolchainCache cache) {
+        this.toolchainCache = cache;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
     }
 
     @Override
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 
     private void gradleClean(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) {
@@ -59,12 +79,39 @@ public class GradleRunner implements AppRunner {
     }
 
     private void gradleBuild(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) {
-        CommandLine command = new CommandLine(gradleExec).addArgument("shadowJar");
+        CommandLine command = new CommandLine(gradleExec);
+        if (toolchainCache != null && toolchainCache.isEnabled()) {
+            command.addArgument("--init-script").addArgument(fullPath(buildCacheInitScript())).addArgument("--build-cache");
+        }
+        command.addArgument("shadowJar");
         buildLogHandler.consumeLine("Running gradle shadowJar");
         ProcessStarter.run(buildLogHandler, envVarsForApp, command, projectRoot, DEFAULT_GRADLE_CLEAN_TIMEOUT);
     }
 
-    private ExecuteWatchdog runJar(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) {
+    /**
+     * Creates a script that points the local Gradle build cache at the app's toolchain cache, so that the
+     * outputs of tasks whose inputs have not changed are reused from earlier deploys.
+     */
+    private File buildCacheInitScript() {
+        File dir = toolchainCache.dir("gradle");
+        File script = new File(dir, "build-cache.init.gradle");
+        String cacheDir = fullPath(new File(dir, "build-cache")).replace('\\', '/');
+        String contents = "gradle.settingsEvaluated { settings ->\n" +
+            "    settings.buildCache {\n" +
+            "        local {\n" +
+            "            directory = new File('" + cacheDir.replace("'", "\\'") + "')\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+        try {
+            FileUtils.writeStringToFile(script, contents, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ProjectCannotStartException("Could not write " + fullPath(script), e);
+        }
+        return script;
+    }
+
+    private Killer runJar(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) {
         Path libsPath = Paths.get(projectRoot.getPath(), "build", "libs");
         File libsFolder = libsPath.toFile();
 
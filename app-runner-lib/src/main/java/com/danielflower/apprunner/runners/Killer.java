@@ -11,6 +11,7 @@ public class Killer extends ExecuteWatchdog {
     private static final Logger log = LoggerFactory.getLogger(Killer.class);
     private final CommandLine command;
     private Process process;
+    private boolean destroyRequested;
 
     public Killer(long timeout, CommandLine command) {
         super(timeout);
@@ -21,10 +22,25 @@ public class Killer extends ExecuteWatchdog {
     public synchronized void start(Process processToMonitor) {
         this.process = processToMonitor;
         super.start(processToMonitor);
+        if (destroyRequested) {
+            destroyProcess();
+        }
+    }
+
+    /**
+     * @return The process being watched, or null if it has not started yet
+     */
+    public synchronized Process process() {
+        return process;
     }
 
     @Override
     public synchronized void destroyProcess() {
+        if (process == null) {
+            // asked to stop before the process started, e.g. when a build is cancelled
+            destroyRequested = true;
+            return;
+        }
         long start = System.currentTimeMillis();
         log.info("Killing " + command);
         if (process != null && process.isAlive()) {
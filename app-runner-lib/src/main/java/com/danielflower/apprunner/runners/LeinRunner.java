@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -21,7 +22,7 @@ public class LeinRunner implements AppRunner {
     private final File projectRoot;
     private final CommandLineProvider javaCmd;
     private final CommandLineProvider leinCmd;
-    private Killer watchDog;
+    private final Daemons daemons = new Daemons();
 
     public LeinRunner(File projectRoot, CommandLineProvider javaCmd, CommandLineProvider leinCmd) {
         this.projectRoot = projectRoot;
@@ -34,17 +35,18 @@ public class LeinRunner implements AppRunner {
         return projectRoot;
     }
 
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
-
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
         runLein(buildLogHandler, envVarsForApp, "do", "test,", "uberjar,", "pom");
+    }
 
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
         Model model = loadPomModel(new File(projectRoot, "pom.xml"));
         String jarName = model.getArtifactId() + "-" + model.getVersion() + "-standalone.jar";
 
         CommandLine command = javaCmd.commandLine(envVarsForApp);
         command.addArgument("-jar").addArgument("target" + File.separator + jarName);
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
     }
 
     private void runLein(LineConsumer buildLogHandler, Map<String, String> envVarsForApp, String... arguments) {
@@ -56,10 +58,17 @@ public class LeinRunner implements AppRunner {
         ProcessStarter.run(buildLogHandler, envVarsForApp, command, projectRoot, TimeUnit.MINUTES.toMillis(20));
     }
 
+    @Override
+    public boolean canLaunchCopiedBuild() {
+        return true;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
+    }
+
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 }
@@ -3,7 +3,6 @@ package com.danielflower.apprunner.runners;
 import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.shared.invoker.*;
@@ -39,7 +38,7 @@ public class MavenRunner implements AppRunner {
     private final File uberjarRoot;
     private final HomeProvider javaHomeProvider;
     private final List<String> goals;
-    private ExecuteWatchdog watchDog;
+    private final Daemons daemons = new Daemons();
 
     public MavenRunner(File m2Home, File projectRoot, File uberjarRoot, HomeProvider javaHomeProvider, List<String> goals) {
         this.m2Home = m2Home;
@@ -49,9 +48,8 @@ public class MavenRunner implements AppRunner {
         this.goals = goals;
     }
 
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
         File projectPomFile = new File(projectRoot, "pom.xml");
-        File uberJarPomFile = new File(uberjarRoot, "pom.xml");
 
         if (goals.isEmpty()) {
             log.info("No goals. Skipping maven build");
@@ -71,7 +69,10 @@ public class MavenRunner implements AppRunner {
             runRequest(request, javaHomeProvider, m2Home);
             log.info("Build successful. Going to start app.");
         }
+    }
 
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+        File uberJarPomFile = new File(uberjarRoot, "pom.xml");
         Model model = loadPomModel(uberJarPomFile);
         String jarName = model.getArtifactId() + "-" + model.getVersion() + ".jar";
 
@@ -85,11 +86,12 @@ public class MavenRunner implements AppRunner {
             .addArgument("-jar")
             .addArgument("target" + File.separator + jarName);
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, uberjarRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, uberjarRoot, startupWaiter));
     }
 
     static void runRequest(InvocationRequest request, HomeProvider javaHomeProvider, File m2Home1) {
         request = javaHomeProvider.mungeMavenInvocationRequest(request);
+        BuildPriority.apply(request, m2Home1);
         request.setBatchMode(true);
         Invoker invoker = new DefaultInvoker();
         invoker.setMavenHome(m2Home1);
@@ -103,13 +105,21 @@ public class MavenRunner implements AppRunner {
         }
     }
 
+    @Override
+    public boolean canLaunchCopiedBuild() {
+        return true;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
+    }
+
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        } else {
-            log.info("Shutdown requested but watchdog is null");
+        if (daemons.isEmpty()) {
+            log.info("Shutdown requested but no processes are running");
         }
+        daemons.shutdown();
     }
 
     @Override
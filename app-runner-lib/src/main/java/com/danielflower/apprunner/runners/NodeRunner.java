@@ -3,12 +3,14 @@ package com.danielflower.apprunner.runners;
 import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -19,12 +21,15 @@ public class NodeRunner implements AppRunner {
     private final File projectRoot;
     private final String nodeExec;
     private final String npmExec;
-    private ExecuteWatchdog watchDog;
+    private final String versionInfo;
+    private final Daemons daemons = new Daemons();
+    private DependencySnapshots snapshots;
 
-    public NodeRunner(File projectRoot, String nodeExec, String npmExec) {
+    public NodeRunner(File projectRoot, String nodeExec, String npmExec, String versionInfo) {
         this.projectRoot = projectRoot;
         this.nodeExec = nodeExec;
         this.npmExec = npmExec;
+        this.versionInfo = versionInfo;
     }
 
     @Override
@@ -32,22 +37,64 @@ public class NodeRunner implements AppRunner {
         return projectRoot;
     }
 
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
+        File lockFile = new File(projectRoot, "package-lock.json");
+        File nodeModules = new File(projectRoot, "node_modules");
+        String snapshotKey = null;
+        if (snapshots != null && snapshots.isEnabled() && lockFile.isFile() && !nodeModules.exists()) {
+            try {
+                snapshotKey = DependencySnapshots.key(versionInfo, new File(projectRoot, "package.json"), lockFile);
+            } catch (IOException e) {
+                log.warn("Could not read " + lockFile, e);
+            }
+        }
+        File snapshot = snapshotKey == null ? null : snapshots.lookup(snapshotKey);
+        if (snapshot != null) {
+            long start = System.currentTimeMillis();
+            try {
+                DependencySnapshots.restore(snapshot, nodeModules);
+                buildLogHandler.consumeLine("package-lock.json is unchanged so node_modules was restored from a snapshot in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (IOException e) {
+                buildLogHandler.consumeLine("Could not restore node_modules from a snapshot so it will be installed from scratch: " + e.getMessage());
+                FileUtils.deleteQuietly(nodeModules);
+            }
+        }
         runNPM(buildLogHandler, envVarsForApp, "install");
+        if (snapshotKey != null && snapshot == null && nodeModules.isDirectory()) {
+            try {
+                snapshots.store(snapshotKey, nodeModules);
+            } catch (IOException e) {
+                log.warn("Could not snapshot " + nodeModules, e);
+            }
+        }
         runNPM(buildLogHandler, envVarsForApp, "test");
+    }
 
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
         CommandLine command = new CommandLine(nodeExec)
             .addArgument("server.js")
             .addArgument("--app-name=" + envVarsForApp.get("APP_NAME"));
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
+    }
+
+    @Override
+    public boolean canLaunchCopiedBuild() {
+        return true;
+    }
+
+    @Override
+    public void useDependencySnapshots(DependencySnapshots snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
     }
 
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 
     private void runNPM(LineConsumer buildLogHandler, Map<String, String> envVarsForApp, String argument) {
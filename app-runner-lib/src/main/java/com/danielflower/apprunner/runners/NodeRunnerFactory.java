@@ -40,7 +40,7 @@ class NodeRunnerFactory implements AppRunnerFactory {
 
     @Override
     public AppRunner appRunner(File folder) {
-        return new NodeRunner(folder, nodeExecutable, npmExecutable);
+        return new NodeRunner(folder, nodeExecutable, npmExecutable, versionInfo);
     }
 
     @Override
@@ -0,0 +1,109 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resource usage of a single process, read from <code>/proc/{pid}/stat</code>, <code>status</code>, <code>io</code>
+ * and <code>fd</code>. Counters such as CPU time and IO bytes are totals since the process started, so usage over a
+ * period is found by comparing two readings of the same process.
+ */
+public class ProcStats {
+    /**
+     * The unit of the CPU times in <code>/proc/{pid}/stat</code>. The kernel always reports these in USER_HZ,
+     * which is 100 on all the architectures Linux runs on, regardless of the kernel's internal tick rate.
+     */
+    public static final int CLOCK_TICKS_PER_SECOND = 100;
+
+    public final long pid;
+    /**
+     * When the process started, in clock ticks since boot, which tells a process apart from a later one that was
+     * given the same PID
+     */
+    public final long startTicks;
+    public final long cpuTicks;
+    public final long rssBytes;
+    public final long threads;
+    public final long openFiles;
+    public final long ioReadBytes;
+    public final long ioWriteBytes;
+
+    private ProcStats(long pid, long startTicks, long cpuTicks, long rssBytes, long threads, long openFiles, long ioReadBytes, long ioWriteBytes) {
+        this.pid = pid;
+        this.startTicks = startTicks;
+        this.cpuTicks = cpuTicks;
+        this.rssBytes = rssBytes;
+        this.threads = threads;
+        this.openFiles = openFiles;
+        this.ioReadBytes = ioReadBytes;
+        this.ioWriteBytes = ioWriteBytes;
+    }
+
+    /**
+     * @return True if the given directory looks like a proc filesystem that can be read
+     */
+    public static boolean isAvailable(File procRoot) {
+        return new File(procRoot, "self/stat").canRead();
+    }
+
+    /**
+     * @return True if this and the given reading are of the same process
+     */
+    public boolean isSameProcessAs(ProcStats other) {
+        return other != null && pid == other.pid && startTicks == other.startTicks;
+    }
+
+    /**
+     * Reads the usage of each of the given processes. Processes that exit while being read are left out.
+     * @param procRoot The proc filesystem, normally <code>/proc</code>
+     * @return The usage of each process, keyed by PID
+     */
+    public static Map<Long, ProcStats> read(File procRoot, Collection<Long> pids) {
+        Map<Long, ProcStats> stats = new LinkedHashMap<>();
+        for (Long pid : pids) {
+            File dir = new File(procRoot, String.valueOf(pid));
+            try {
+                String stat = FileUtils.readFileToString(new File(dir, "stat"), StandardCharsets.US_ASCII);
+                // the command name is in brackets and may contain spaces, so the fields are counted from after it
+                String[] fields = StringUtils.split(stat.substring(stat.lastIndexOf(')') + 1));
+                long utime = Long.parseLong(fields[11]);
+                long stime = Long.parseLong(fields[12]);
+                long startTicks = Long.parseLong(fields[19]);
+                List<String> status = FileUtils.readLines(new File(dir, "status"), StandardCharsets.US_ASCII);
+                long rssKb = valueOf(status, "VmRSS:");
+                long threads = valueOf(status, "Threads:");
+                String[] fds = new File(dir, "fd").list();
+                long read = 0, written = 0;
+                File io = new File(dir, "io");
+                if (io.canRead()) {
+                    List<String> ioLines = FileUtils.readLines(io, StandardCharsets.US_ASCII);
+                    read = valueOf(ioLines, "read_bytes:");
+                    written = valueOf(ioLines, "write_bytes:");
+                }
+                stats.put(pid, new ProcStats(pid, startTicks, utime + stime, rssKb * 1024, threads, fds == null ? 0 : fds.length, read, written));
+            } catch (IOException | RuntimeException e) {
+                // the process exited, or is not ours to read
+            }
+        }
+        return stats;
+    }
+
+    private static long valueOf(List<String> lines, String key) {
+        for (String line : lines) {
+            if (line.startsWith(key)) {
+                // values such as "VmRSS:	  123456 kB"
+                String[] parts = StringUtils.split(line.substring(key.length()));
+                return parts.length == 0 ? 0 : Long.parseLong(parts[0]);
+            }
+        }
+        return 0;
+    }
+}
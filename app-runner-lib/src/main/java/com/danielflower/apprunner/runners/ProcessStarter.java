@@ -20,13 +20,29 @@ public class ProcessStarter {
     public static final Logger log = LoggerFactory.getLogger(ProcessStarter.class);
 
     public static Killer startDaemon(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, CommandLine command, File projectRoot, Waiter startupWaiter) {
+        command = Cgroup.apply(command, false);
         long startTime = logStartInfo(command, projectRoot);
         Killer watchDog = new Killer(ExecuteWatchdog.INFINITE_TIMEOUT, command);
-        Executor executor = createExecutor(consoleLogHandler, command, projectRoot, watchDog);
+        Executor executor = createExecutor(line -> {
+            startupWaiter.consoleLine(line);
+            consoleLogHandler.consumeLine(line);
+        }, command, projectRoot, watchDog);
         boolean started = false;
 
         try {
-            DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler();
+            DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler() {
+                @Override
+                public void onProcessComplete(int exitValue) {
+                    super.onProcessComplete(exitValue);
+                    startupWaiter.wake();
+                }
+
+                @Override
+                public void onProcessFailed(ExecuteException e) {
+                    super.onProcessFailed(e);
+                    startupWaiter.wake();
+                }
+            };
             executor.execute(command, envVarsForApp, handler);
 
             startupWaiter.or(c -> handler.hasResult()); // stop waiting if the process exits
@@ -62,15 +78,21 @@ public class ProcessStarter {
     }
 
     public static void run(LineConsumer outputHandler, Map<String, String> envVarsForApp, CommandLine command, File projectRoot, long timeout) throws ProjectCannotStartException {
+        command = Cgroup.apply(BuildPriority.apply(command), true);
         long startTime = logStartInfo(command, projectRoot);
-        ExecuteWatchdog watchDog = new ExecuteWatchdog(timeout);
+        Killer watchDog = BuildCancellation.killerFor(timeout, command);
         Executor executor = createExecutor(outputHandler, command, projectRoot, watchDog);
         try {
             int exitValue = executor.execute(command, envVarsForApp);
             if (executor.isFailure(exitValue)) {
-                String message = watchDog.killedProcess()
-                    ? "Timed out waiting for " + command
-                    : "Exit code " + exitValue + " returned from " + command;
+                String message;
+                if (BuildCancellation.currentBuildCancelled()) {
+                    message = "The build was cancelled while running " + command;
+                } else if (watchDog.killedProcess()) {
+                    message = "Timed out waiting for " + command;
+                } else {
+                    message = "Exit code " + exitValue + " returned from " + command;
+                }
                 throw new ProjectCannotStartException(message);
             }
         } catch (Exception e) {
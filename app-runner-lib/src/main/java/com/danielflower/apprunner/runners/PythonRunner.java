@@ -3,13 +3,15 @@ package com.danielflower.apprunner.runners;
 import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -19,13 +21,16 @@ public class PythonRunner implements AppRunner {
     private final File projectRoot;
     private final String pythonExec;
     private final String virtualenvExec;
+    private final String versionInfo;
     private final String scriptName;
-    private ExecuteWatchdog watchDog;
+    private final Daemons daemons = new Daemons();
+    private DependencySnapshots snapshots;
 
-    public PythonRunner(File projectRoot, String virtualenvExec, String pythonExec, String scriptName) {
+    public PythonRunner(File projectRoot, String virtualenvExec, String pythonExec, String versionInfo, String scriptName) {
         this.projectRoot = projectRoot;
         this.virtualenvExec = virtualenvExec;
         this.pythonExec = pythonExec;
+        this.versionInfo = versionInfo;
         this.scriptName = scriptName;
     }
 
@@ -34,28 +39,43 @@ public class PythonRunner implements AppRunner {
         return projectRoot;
     }
 
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
-
-        final String virtPythonExec;
-        final String virtPipExec;
-
-        if (SystemUtils.IS_OS_WINDOWS) {
-            virtPythonExec = projectRoot.getAbsolutePath() + "\\server\\Scripts\\pythonw.exe";
-            virtPipExec = projectRoot.getAbsolutePath() + "\\server\\Scripts\\pip.exe";
-        }
-        else{
-            virtPythonExec = projectRoot.getAbsolutePath() + "/server/bin/python";
-            virtPipExec = projectRoot.getAbsolutePath() + "/server/bin/pip";
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
+        File requirements = new File(projectRoot.getAbsolutePath() + File.separator + "requirements.txt");
+        File server = new File(projectRoot, "server");
+        if (snapshots != null && snapshots.isEnabled()) {
+            try {
+                // virtualenvs contain their own absolute path, so rather than being copied into the instance the
+                // snapshot is created where it is kept and the instance links to it
+                String key = DependencySnapshots.key(versionInfo + "\n" + virtualenvExec, requirements);
+                File virtualenv = snapshots.lookup(key);
+                if (virtualenv == null) {
+                    virtualenv = snapshots.emptyEntry(key);
+                    createVirtualenv(buildLogHandler, envVarsForApp, virtualenv, requirements);
+                    snapshots.complete(key);
+                } else {
+                    buildLogHandler.consumeLine("requirements.txt is unchanged so the virtualenv at " + virtualenv.getAbsolutePath() + " will be used");
+                }
+                Files.createSymbolicLink(server.toPath(), virtualenv.getAbsoluteFile().toPath());
+                return;
+            } catch (IOException e) {
+                buildLogHandler.consumeLine("Could not use a virtualenv snapshot so one will be created in the instance: " + e.getMessage());
+            }
         }
+        createVirtualenv(buildLogHandler, envVarsForApp, server, requirements);
+    }
+
+    private void createVirtualenv(LineConsumer buildLogHandler, Map<String, String> envVarsForApp, File dir, File requirements) {
+        final String virtPipExec = SystemUtils.IS_OS_WINDOWS
+            ? dir.getAbsolutePath() + "\\Scripts\\pip.exe"
+            : dir.getAbsolutePath() + "/bin/pip";
 
         CommandLine virtualenvCmd = new CommandLine(virtualenvExec)
             .addArgument("--python=" + pythonExec)
-            .addArgument("server");
+            .addArgument(dir.getAbsolutePath());
 
         buildLogHandler.consumeLine("Creating virtualenv: " + StringUtils.join(virtualenvCmd.toStrings(), " "));
         ProcessStarter.run(buildLogHandler, envVarsForApp, virtualenvCmd, projectRoot, TimeUnit.MINUTES.toMillis(30));
 
-        File requirements = new File(projectRoot.getAbsolutePath() + File.separator + "requirements.txt");
         if (requirements.exists()) {
             CommandLine pipCmd = new CommandLine(virtPipExec)
                 .addArgument("install")
@@ -65,6 +85,12 @@ public class PythonRunner implements AppRunner {
             buildLogHandler.consumeLine("Installing dependencies: " + StringUtils.join(pipCmd.toStrings(), " "));
             ProcessStarter.run(buildLogHandler, envVarsForApp, pipCmd, projectRoot, TimeUnit.MINUTES.toMillis(30));
         }
+    }
+
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+        final String virtPythonExec = SystemUtils.IS_OS_WINDOWS
+            ? projectRoot.getAbsolutePath() + "\\server\\Scripts\\pythonw.exe"
+            : projectRoot.getAbsolutePath() + "/server/bin/python";
 
         CommandLine command = new CommandLine(virtPythonExec)
             .addArgument(scriptName)
@@ -72,15 +98,22 @@ public class PythonRunner implements AppRunner {
 
         buildLogHandler.consumeLine("Starting python app: " + StringUtils.join(command.toStrings(), " "));
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
 
         buildLogHandler.consumeLine("Python app started.");
     }
 
+    @Override
+    public void useDependencySnapshots(DependencySnapshots snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
+    }
+
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 }
@@ -52,7 +52,7 @@ public class PythonRunnerFactory implements AppRunnerFactory {
 
         @Override
         public AppRunner appRunner(File folder) {
-            return new PythonRunner(folder, virtualenvExecutable, pythonExecutable, scriptName);
+            return new PythonRunner(folder, virtualenvExecutable, pythonExecutable, versionString, scriptName);
         }
 
         @Override
@@ -4,7 +4,6 @@ import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import com.moandjiezana.toml.Toml;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
@@ -15,6 +14,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -24,7 +26,8 @@ public class RustRunner implements AppRunner {
 
     private final File projectRoot;
     private final String cargoExec;
-    private ExecuteWatchdog watchDog;
+    private final Daemons daemons = new Daemons();
+    private ToolchainCache toolchainCache;
 
     public RustRunner(File projectRoot, String cargoExec) {
         this.projectRoot = projectRoot;
@@ -36,38 +39,72 @@ public class RustRunner implements AppRunner {
         return projectRoot;
     }
 
-    public void start(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
-        Toml toml = new Toml().read(new File(projectRoot, "Cargo.toml"));
-        String rustPackageName = toml.getString("package.name");
+    public void build(LineConsumer buildLogHandler, Map<String, String> envVarsForApp) throws ProjectCannotStartException {
+        String rustPackageName = rustPackageName();
+
+        // a shared target dir means dependencies that have already been compiled are not compiled again
+        File targetDir = toolchainCache != null && toolchainCache.isEnabled() ? toolchainCache.dir("cargo-target") : null;
+        Map<String, String> buildEnv = new HashMap<>(envVarsForApp);
+        if (targetDir != null) {
+            buildEnv.put("CARGO_TARGET_DIR", targetDir.getAbsolutePath());
+        }
 
-        runCargo(buildLogHandler, envVarsForApp, "build");
-        runCargo(buildLogHandler, envVarsForApp, "test");
+        runCargo(buildLogHandler, buildEnv, "build");
+        runCargo(buildLogHandler, buildEnv, "test");
 
         //Move built executable so that we can clean up the rest of the build files
-        final String compiledExe = "target/debug/" + rustPackageName + (SystemUtils.IS_OS_WINDOWS ? ".exe" : ""); //Stick to debug builds until someone has a performance issue
-        final String exeToRun = "./" + rustPackageName + (SystemUtils.IS_OS_WINDOWS ? ".exe" : "");
+        final String compiledExe = "debug/" + rustPackageName + (SystemUtils.IS_OS_WINDOWS ? ".exe" : ""); //Stick to debug builds until someone has a performance issue
+        final String exeToRun = exeToRun(rustPackageName);
 
-        Path sourcePath = Paths.get(projectRoot + "/" + compiledExe).toAbsolutePath();
+        Path sourcePath = new File(targetDir == null ? new File(projectRoot, "target") : targetDir, compiledExe).toPath().toAbsolutePath();
         Path targetPath = Paths.get(projectRoot + "/" + exeToRun).toAbsolutePath();
 
         try {
-            Files.move(sourcePath, targetPath);
+            if (targetDir == null) {
+                Files.move(sourcePath, targetPath);
+            } else {
+                Files.copy(sourcePath, targetPath, StandardCopyOption.COPY_ATTRIBUTES);
+            }
         }
         catch(IOException ioe){
             throw new ProjectCannotStartException("Couldn't move compiled binary from " + sourcePath.toString() + " to " + targetPath.toString(), ioe);
         }
-        runCargo(buildLogHandler, envVarsForApp, "clean");
+        if (targetDir == null) {
+            runCargo(buildLogHandler, buildEnv, "clean");
+        }
+    }
+
+    public void launch(LineConsumer buildLogHandler, LineConsumer consoleLogHandler, Map<String, String> envVarsForApp, Waiter startupWaiter) throws ProjectCannotStartException {
+        CommandLine command = new CommandLine(exeToRun(rustPackageName()));
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
+    }
+
+    private String rustPackageName() {
+        Toml toml = new Toml().read(new File(projectRoot, "Cargo.toml"));
+        return toml.getString("package.name");
+    }
 
-        //Run the app
-        CommandLine command = new CommandLine(exeToRun);
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+    private static String exeToRun(String rustPackageName) {
+        return "./" + rustPackageName + (SystemUtils.IS_OS_WINDOWS ? ".exe" : "");
+    }
+
+    @Override
+    public boolean canLaunchCopiedBuild() {
+        return true;
+    }
+
+    @Override
+    public void useToolchainCache(ToolchainCache cache) {
+        this.toolchainCache = cache;
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
     }
 
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 
     private void runCargo(LineConsumer buildLogHandler, Map<String, String> envVarsForApp, String argument) {
@@ -4,7 +4,6 @@ import com.danielflower.apprunner.io.LineConsumer;
 import com.danielflower.apprunner.problems.ProjectCannotStartException;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
@@ -28,7 +27,8 @@ public class SbtRunner implements AppRunner {
     private final CommandLineProvider javaCmd;
     private final CommandLineProvider sbtCmd;
 
-    private ExecuteWatchdog watchDog;
+    private final Daemons daemons = new Daemons();
+    private volatile String artifactPath;
 
     public SbtRunner(final File projectRoot,
                      final CommandLineProvider javaCmd,
@@ -44,27 +44,36 @@ public class SbtRunner implements AppRunner {
     }
 
     @Override
-    public void start(final LineConsumer buildLogHandler,
-                      final LineConsumer consoleLogHandler,
-                      final Map<String, String> envVarsForApp,
-                      final Waiter startupWaiter) throws ProjectCannotStartException {
+    public void build(final LineConsumer buildLogHandler,
+                      final Map<String, String> envVarsForApp) throws ProjectCannotStartException {
+        artifactPath = runSbt(buildLogHandler, envVarsForApp, CLEAN_AND_PACKAGE);
+    }
 
-        final String artifactPath = runSbt(buildLogHandler, envVarsForApp, CLEAN_AND_PACKAGE);
+    @Override
+    public void launch(final LineConsumer buildLogHandler,
+                       final LineConsumer consoleLogHandler,
+                       final Map<String, String> envVarsForApp,
+                       final Waiter startupWaiter) throws ProjectCannotStartException {
+        if (artifactPath == null) {
+            throw new ProjectCannotStartException("The sbt project at " + projectRoot + " must be built before it can be launched");
+        }
 
         final CommandLine command = javaCmd
             .commandLine(envVarsForApp)
             .addArgument("-jar")
             .addArgument(artifactPath);
 
-        watchDog = ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter);
+        daemons.add(ProcessStarter.startDaemon(buildLogHandler, consoleLogHandler, envVarsForApp, command, projectRoot, startupWaiter));
+    }
+
+    @Override
+    public List<Long> processIds() {
+        return daemons.pids();
     }
 
     @Override
     public void shutdown() {
-        if (watchDog != null) {
-            watchDog.destroyProcess();
-            watchDog.stop();
-        }
+        daemons.shutdown();
     }
 
     private String runSbt(final LineConsumer  buildLogHandler,
@@ -0,0 +1,70 @@
+package com.danielflower.apprunner.runners;
+
+import com.danielflower.apprunner.io.LineConsumer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.file.PathUtils;
+import org.apache.commons.io.file.StandardDeleteOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.danielflower.apprunner.FileSandbox.fullPath;
+
+/**
+ * A directory per app where build tools keep their incremental state between deploys, such as the cargo target
+ * dir or the Go build cache. Each tool gets its own sub-directory. The whole cache is cleared if a build leaves it
+ * over its budget.
+ */
+public class ToolchainCache {
+    private final File root;
+    private final long maxBytes;
+
+    public ToolchainCache(File root, long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return The directory for the given tool, which is created if needed
+     */
+    public File dir(String tool) {
+        File dir = new File(root, tool);
+        try {
+            FileUtils.forceMkdir(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return dir;
+    }
+
+    public long size() {
+        return root.isDirectory() ? FileUtils.sizeOfDirectory(root) : 0;
+    }
+
+    /**
+     * Clears the cache if it is over budget
+     */
+    public void enforceBudget(LineConsumer buildLogHandler) throws IOException {
+        long size = size();
+        if (size > maxBytes) {
+            buildLogHandler.consumeLine("The build cache at " + fullPath(root) + " is " + (size / (1024 * 1024))
+                + "MB which is over its budget of " + (maxBytes / (1024 * 1024)) + "MB, so it will be cleared");
+            clear();
+        }
+    }
+
+    public void clear() throws IOException {
+        File[] children = root.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                // files in the Go module cache can be read-only
+                PathUtils.delete(child.toPath(), StandardDeleteOption.OVERRIDE_READ_ONLY);
+            }
+        }
+    }
+}
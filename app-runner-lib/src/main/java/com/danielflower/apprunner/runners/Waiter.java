@@ -1,23 +1,43 @@
 package com.danielflower.apprunner.runners;
 
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.URI;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 
+/**
+ * Waits for an app to start. The check is run straight away and then with an exponential backoff starting at a few
+ * milliseconds, so apps that start quickly are not held back. Waiting also ends early when {@link #wake()} is called,
+ * for example when the process exits, or when a line containing the readiness marker is written to the console.
+ */
 public class Waiter implements AutoCloseable {
     public static final Logger log = LoggerFactory.getLogger(Waiter.class);
 
-    private static final long POLL_INTERVAL = 500;
+    private static final long FIRST_POLL_INTERVAL = 5;
+    private static final long MAX_POLL_INTERVAL = 500;
+    private static final long LOG_INTERVAL = 5000;
+    private static HttpClient sharedClient;
+
     private Predicate<HttpClient> predicate;
     private final String name;
     private final long timeout;
     private final TimeUnit unit;
-    private final HttpClient client = new HttpClient();
+    private final Object lock = new Object();
+    private boolean woken;
+    private volatile String readyMarker;
+    private volatile boolean readyMarkerSeen;
 
     public Waiter(String name, Predicate<HttpClient> predicate, long timeout, TimeUnit unit) {
         this.predicate = predicate;
@@ -30,35 +50,115 @@ public class Waiter implements AutoCloseable {
         predicate = predicate.or(other);
     }
 
+    /**
+     * Considers the app started as soon as a console line contains the given text
+     */
+    public void readyWhenConsoleContains(String marker) {
+        this.readyMarker = marker;
+    }
+
+    /**
+     * Called with each line the app writes to the console
+     */
+    public void consoleLine(String line) {
+        String marker = readyMarker;
+        if (marker != null && !readyMarkerSeen && line.contains(marker)) {
+            readyMarkerSeen = true;
+            wake();
+        }
+    }
+
+    /**
+     * Runs the check again straight away, rather than waiting for the next poll
+     */
+    public void wake() {
+        synchronized (lock) {
+            woken = true;
+            lock.notifyAll();
+        }
+    }
+
     public void blockUntilReady() throws Exception {
-        client.setFollowRedirects(false);
-        client.start();
+        HttpClient client = sharedClient();
         long start = System.currentTimeMillis();
-        while ((System.currentTimeMillis() - start) < unit.toMillis(timeout)) {
-            Thread.sleep(POLL_INTERVAL);
-            if (predicate.test(client)) {
+        long deadline = start + unit.toMillis(timeout);
+        long interval = FIRST_POLL_INTERVAL;
+        long lastLogged = start;
+        while (true) {
+            if (readyMarkerSeen || predicate.test(client)) {
+                log.info(name + " started after " + (System.currentTimeMillis() - start) + "ms");
                 return;
             }
-            log.info("Waiting for start up of " + name);
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                throw new TimeoutException();
+            }
+            if (now - lastLogged >= LOG_INTERVAL) {
+                log.info("Waiting for start up of " + name);
+                lastLogged = now;
+            }
+            synchronized (lock) {
+                if (!woken) {
+                    lock.wait(Math.max(1, Math.min(interval, deadline - now)));
+                }
+                woken = false;
+            }
+            interval = Math.min(MAX_POLL_INTERVAL, interval * 2);
         }
+    }
 
-        throw new TimeoutException();
+    public void close() {
+        // the HTTP client is shared by all waiters, so is not stopped here
     }
 
-    public void close() throws Exception {
-        client.stop();
+    private static synchronized HttpClient sharedClient() throws Exception {
+        if (sharedClient == null) {
+            QueuedThreadPool threadPool = new QueuedThreadPool(8, 1);
+            threadPool.setName("startup-waiter");
+            threadPool.setDaemon(true);
+            HttpClient client = new HttpClient();
+            client.setExecutor(threadPool);
+            client.setScheduler(new ScheduledExecutorScheduler("startup-waiter-scheduler", true));
+            client.setFollowRedirects(false);
+            client.setConnectTimeout(2000);
+            client.start();
+            sharedClient = client;
+        }
+        return sharedClient;
     }
 
     public static Waiter waitForApp(String name, int port) {
-        URI url = URI.create("http://localhost:" + port + "/" + name + "/");
-        return waitFor(name, url, 30, TimeUnit.SECONDS);
+        return waitForApp(name, port, null, TimeUnit.SECONDS.toMillis(30), null);
+    }
+
+    /**
+     * @param healthPath A path relative to the app's URL that must return a 2xx response once the app has started,
+     *                   or blank to accept any response from the app's root URL
+     * @param readyMarker Text that the app writes to its console once it has started, or blank to make HTTP requests
+     *                    to see if it has started
+     */
+    public static Waiter waitForApp(String name, int port, String healthPath, long timeoutMillis, String readyMarker) {
+        if (StringUtils.isNotBlank(readyMarker)) {
+            Waiter waiter = new Waiter(name, client -> false, timeoutMillis, TimeUnit.MILLISECONDS);
+            waiter.readyWhenConsoleContains(readyMarker);
+            return waiter;
+        }
+        URI url = URI.create("http://localhost:" + port + "/" + name + "/" + StringUtils.stripStart(StringUtils.trimToEmpty(healthPath), "/"));
+        return waitFor(name, url, StringUtils.isNotBlank(healthPath), timeoutMillis, TimeUnit.MILLISECONDS);
     }
 
     public static Waiter waitFor(String name, URI url, long timeout, TimeUnit unit) {
+        return waitFor(name, url, false, timeout, unit);
+    }
+
+    private static Waiter waitFor(String name, URI url, boolean requireSuccess, long timeout, TimeUnit unit) {
         return new Waiter(name, client -> {
+            if (!isListening(url)) {
+                return false;
+            }
             try {
-                client.GET(url);
-                return true;
+                ContentResponse response = client.newRequest(url).timeout(10, TimeUnit.SECONDS).send();
+                return !requireSuccess || (response.getStatus() >= 200 && response.getStatus() < 300);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 return true;
@@ -67,4 +167,24 @@ public class Waiter implements AutoCloseable {
             }
         }, timeout, unit);
     }
+
+    /**
+     * A cheap check that something is accepting connections on the port before making an HTTP request
+     */
+    private static boolean isListening(URI url) {
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(url.getHost());
+        } catch (IOException e) {
+            return true; // let the HTTP client report the problem
+        }
+        for (InetAddress address : addresses) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(address, url.getPort()), 200);
+                return true;
+            } catch (IOException ignored) {
+            }
+        }
+        return false;
+    }
 }
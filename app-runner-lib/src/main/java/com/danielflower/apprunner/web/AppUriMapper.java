@@ -1,13 +1,16 @@
 package com.danielflower.apprunner.web;
 
+import io.muserver.Method;
 import io.muserver.MuRequest;
+import io.muserver.MuResponse;
+import io.muserver.murp.ProxyCompleteListener;
 import io.muserver.murp.UriMapper;
 
 import java.net.URI;
-import java.net.URL;
 
-public class AppUriMapper implements UriMapper {
+public class AppUriMapper implements UriMapper, ProxyCompleteListener {
 
+    private static final String UPSTREAM_ATTRIBUTE = "apprunner.upstream";
     private final ProxyMap proxyMap;
 
     public AppUriMapper(ProxyMap proxyMap) {
@@ -16,15 +19,45 @@ public class AppUriMapper implements UriMapper {
 
     @Override
     public URI mapFrom(MuRequest request) throws Exception {
-        String[] segments = request.uri().getPath().split("/", 3);
-        if (segments.length > 1 && !segments[1].isEmpty()) {
-            URL url = proxyMap.get(segments[1]);
-            if (url == null) {
+        URI requestUri = request.uri();
+        String path = requestUri.getRawPath();
+        UpstreamGroup group;
+        Upstream upstream;
+        while (true) {
+            group = proxyMap.route(path);
+            if (group == null) {
                 return null;
             }
-            String qs = request.uri().getRawQuery() == null ? "" : "?" + request.uri().getRawQuery();
-            return url.toURI().resolve(request.uri().getRawPath() + qs);
+            upstream = group.choose();
+            upstream.requestStarted();
+            // If the group is still current after counting the request then anything draining the group will see
+            // the request, otherwise the app was redeployed in between so the request goes to the new instances.
+            if (proxyMap.isCurrent(group)) {
+                break;
+            }
+            upstream.requestCompleted();
+        }
+        request.attribute(UPSTREAM_ATTRIBUTE, upstream);
+
+        String query = requestUri.getRawQuery();
+        if (request.method() == Method.GET) {
+            proxyMap.recordRequest(group.name(), query == null ? path : path + "?" + query);
+        }
+
+        String base = upstream.base();
+        int length = base.length() + path.length() + (query == null ? 0 : query.length() + 1);
+        StringBuilder target = new StringBuilder(length).append(base).append(path);
+        if (query != null) {
+            target.append('?').append(query);
+        }
+        return URI.create(target.toString());
+    }
+
+    @Override
+    public void onComplete(MuRequest request, MuResponse response, URI target, long durationMillis) {
+        Upstream upstream = (Upstream) request.attribute(UPSTREAM_ATTRIBUTE);
+        if (upstream != null) {
+            upstream.requestCompleted(durationMillis, response.status());
         }
-        return null;
     }
 }
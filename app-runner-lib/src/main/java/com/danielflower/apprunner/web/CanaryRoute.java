@@ -0,0 +1,106 @@
+package com.danielflower.apprunner.web;
+
+import com.danielflower.apprunner.mgmt.CanaryRouting;
+import com.danielflower.apprunner.mgmt.TrafficStats;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A canary rollout of a new version of an app, where a percentage of the requests to the app are sent to the new
+ * instances. The proxy records the latency and status of each request to each instance while the rollout runs.
+ */
+public class CanaryRoute implements CanaryRouting.Canary {
+    private final ProxyMap proxyMap;
+    private final UpstreamGroup live;
+    private final Upstream[] canaries;
+    private final LoadBalancer canaryLoadBalancer;
+    private UpstreamGroup installed;
+
+    CanaryRoute(ProxyMap proxyMap, UpstreamGroup live, Upstream[] canaries, LoadBalancer canaryLoadBalancer) {
+        this.proxyMap = proxyMap;
+        this.live = live;
+        this.canaries = canaries;
+        this.canaryLoadBalancer = canaryLoadBalancer;
+        this.installed = live;
+    }
+
+    @Override
+    public synchronized void shift(int percent) {
+        for (Upstream upstream : allUpstreams()) {
+            upstream.startRecording();
+        }
+        UpstreamGroup group = live.withCanaries(canaries, canaryLoadBalancer, percent);
+        if (!proxyMap.replace(live.name(), installed, group)) {
+            throw new IllegalStateException("The routing for " + live.name() + " was changed during the canary rollout");
+        }
+        installed = group;
+    }
+
+    @Override
+    public TrafficStats liveStats() {
+        return combinedStats(live.upstreams());
+    }
+
+    @Override
+    public TrafficStats candidateStats() {
+        return combinedStats(Arrays.asList(canaries));
+    }
+
+    @Override
+    public Map<URL, TrafficStats> instanceStats() {
+        Map<URL, TrafficStats> stats = new LinkedHashMap<>();
+        for (Upstream upstream : allUpstreams()) {
+            LatencyRecorder recorder = upstream.recorder();
+            if (recorder != null) {
+                stats.put(upstream.url(), recorder.stats());
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public int candidateActiveRequests() {
+        int total = 0;
+        for (Upstream canary : canaries) {
+            total += canary.activeRequests();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void rollBack() {
+        if (installed != live && proxyMap.replace(live.name(), installed, live)) {
+            installed = live;
+        }
+        end();
+    }
+
+    @Override
+    public void end() {
+        for (Upstream upstream : allUpstreams()) {
+            upstream.stopRecording();
+        }
+    }
+
+    private List<Upstream> allUpstreams() {
+        List<Upstream> all = new ArrayList<>(live.upstreams());
+        all.addAll(Arrays.asList(canaries));
+        return all;
+    }
+
+    private static TrafficStats combinedStats(List<Upstream> upstreams) {
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        for (Upstream upstream : upstreams) {
+            LatencyRecorder recorder = upstream.recorder();
+            if (recorder != null) {
+                recorders.add(recorder);
+            }
+        }
+        return LatencyRecorder.combine(recorders);
+    }
+}
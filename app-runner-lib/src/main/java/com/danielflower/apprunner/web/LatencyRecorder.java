@@ -0,0 +1,51 @@
+package com.danielflower.apprunner.web;
+
+import com.danielflower.apprunner.mgmt.TrafficStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the latencies and errors of proxied requests. Only the first latencies up to a limit are kept, which is
+ * plenty for the percentiles of a short comparison.
+ */
+class LatencyRecorder {
+    private static final int MAX_SAMPLES = 10000;
+    private final List<Long> latencies = new ArrayList<>();
+    private long requests;
+    private long errors;
+
+    synchronized void record(long latencyMillis, boolean error) {
+        requests++;
+        if (error) {
+            errors++;
+        }
+        if (latencies.size() < MAX_SAMPLES) {
+            latencies.add(latencyMillis);
+        }
+    }
+
+    /**
+     * Records a request that failed without getting a response
+     */
+    synchronized void recordFailure() {
+        requests++;
+        errors++;
+    }
+
+    synchronized TrafficStats stats() {
+        return TrafficStats.of(requests, errors, latencies);
+    }
+
+    static TrafficStats combine(List<LatencyRecorder> recorders) {
+        LatencyRecorder combined = new LatencyRecorder();
+        for (LatencyRecorder recorder : recorders) {
+            synchronized (recorder) {
+                combined.requests += recorder.requests;
+                combined.errors += recorder.errors;
+                combined.latencies.addAll(recorder.latencies);
+            }
+        }
+        return combined.stats();
+    }
+}
@@ -0,0 +1,86 @@
+package com.danielflower.apprunner.web;
+
+import com.danielflower.apprunner.problems.InvalidConfigException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks which instance of an app a request goes to. Implementations may be stateful, so there
+ * is one instance per app.
+ */
+public interface LoadBalancer {
+
+    /**
+     * @param upstreams A non-empty array of upstreams
+     * @return The upstream to send the request to
+     */
+    Upstream choose(Upstream[] upstreams);
+
+    static LoadBalancer fromName(String name) {
+        switch (name) {
+            case "round-robin":
+                return new RoundRobin();
+            case "least-outstanding":
+                return new LeastOutstanding();
+            case "power-of-two":
+                return new PowerOfTwoChoices();
+            default:
+                throw new InvalidConfigException("Unsupported load balancer '" + name + "'. Valid values are round-robin, least-outstanding and power-of-two");
+        }
+    }
+
+    class RoundRobin implements LoadBalancer {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Upstream choose(Upstream[] upstreams) {
+            return upstreams[Math.floorMod(counter.getAndIncrement(), upstreams.length)];
+        }
+    }
+
+    /**
+     * Picks the instance with the fewest in-flight requests. Ties are broken by starting the scan from a
+     * rotating position so that idle instances share the load.
+     */
+    class LeastOutstanding implements LoadBalancer {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Upstream choose(Upstream[] upstreams) {
+            int start = Math.floorMod(counter.getAndIncrement(), upstreams.length);
+            Upstream best = upstreams[start];
+            int bestActive = best.activeRequests();
+            for (int i = 1; i < upstreams.length && bestActive > 0; i++) {
+                Upstream candidate = upstreams[(start + i) % upstreams.length];
+                int active = candidate.activeRequests();
+                if (active < bestActive) {
+                    best = candidate;
+                    bestActive = active;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Picks two instances at random and uses the one with fewer in-flight requests.
+     */
+    class PowerOfTwoChoices implements LoadBalancer {
+        @Override
+        public Upstream choose(Upstream[] upstreams) {
+            if (upstreams.length == 1) {
+                return upstreams[0];
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(upstreams.length);
+            int second = random.nextInt(upstreams.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            Upstream a = upstreams[first];
+            Upstream b = upstreams[second];
+            return b.activeRequests() < a.activeRequests() ? b : a;
+        }
+    }
+}
@@ -4,29 +4,160 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
 
 public class ProxyMap {
     public static final Logger log = LoggerFactory.getLogger(ProxyMap.class);
-    private final ConcurrentHashMap<String, URL> mapping = new ConcurrentHashMap<>();
+    private static final int RECENT_REQUESTS_PER_APP = 200;
+    private final ConcurrentHashMap<String, UpstreamGroup> mapping = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RecentRequests> recentRequests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ShadowMirror> shadows = new ConcurrentHashMap<>();
+    private final Function<String, LoadBalancer> loadBalancerForApp;
+    private volatile RoutingTable routes = RoutingTable.EMPTY;
 
-    public void add(String prefix, URL url) {
-        URL old = mapping.put(prefix, url);
+    public ProxyMap() {
+        this(appName -> new LoadBalancer.RoundRobin());
+    }
+
+    public ProxyMap(Function<String, LoadBalancer> loadBalancerForApp) {
+        this.loadBalancerForApp = loadBalancerForApp;
+    }
+
+    public IntSupplier add(String prefix, URL url) {
+        return add(prefix, Collections.singletonList(url));
+    }
+
+    /**
+     * Routes all new requests for the app to the given instances
+     * @return The number of requests still in progress against the instances that were replaced
+     */
+    public synchronized IntSupplier add(String prefix, List<URL> urls) {
+        Upstream[] upstreams = urls.stream().map(Upstream::new).toArray(Upstream[]::new);
+        UpstreamGroup group = new UpstreamGroup(prefix, upstreams, loadBalancerForApp.apply(prefix));
+        UpstreamGroup old = mapping.put(prefix, group);
+        routes = new RoutingTable(mapping);
         if (old == null) {
-            log.info(prefix + " maps to " + url);
+            log.info(prefix + " maps to " + group);
+            return () -> 0;
         } else {
-            log.info(prefix + " maps to " + url + " (previously " + old + ")");
+            log.info(prefix + " maps to " + group + " (previously " + old + ")");
+            return old::activeRequests;
         }
     }
 
-    public void remove(String prefix) {
-        URL remove = mapping.remove(prefix);
-        if (remove == null) {
+    public synchronized void remove(String prefix) {
+        UpstreamGroup remove = mapping.remove(prefix);
+        recentRequests.remove(prefix);
+        ShadowMirror shadow = shadows.get(prefix);
+        if (shadow != null) {
+            shadow.stop();
+        }
+        if (remove != null) {
+            routes = new RoutingTable(mapping);
             log.info("Removed " + prefix + " mapping to " + remove);
         }
     }
 
+    /**
+     * Picks one of the instances of the given app
+     * @param prefix The app name
+     * @return An upstream, or null if there is no app with that name running
+     */
+    public Upstream choose(String prefix) {
+        UpstreamGroup group = mapping.get(prefix);
+        return group == null ? null : group.choose();
+    }
+
+    /**
+     * Finds the app that serves the given request path
+     * @param rawPath A request path where the first segment is the app name
+     * @return The instances of the app, or null if no running app matches
+     */
+    public UpstreamGroup route(String rawPath) {
+        return routes.lookup(rawPath);
+    }
+
+    /**
+     * @return True if the given group has not been replaced or removed
+     */
+    boolean isCurrent(UpstreamGroup group) {
+        return mapping.get(group.name()) == group;
+    }
+
+    /**
+     * Remembers a GET request made to an app, so that new versions of the app can be warmed up with similar requests
+     */
+    public void recordRequest(String prefix, String pathAndQuery) {
+        RecentRequests recent = recentRequests.get(prefix);
+        if (recent == null) {
+            recent = recentRequests.computeIfAbsent(prefix, p -> new RecentRequests(RECENT_REQUESTS_PER_APP));
+        }
+        recent.record(pathAndQuery);
+    }
+
+    /**
+     * @return The paths (including the app name and any query string) of the most recent GET requests to the app
+     */
+    public List<String> recentRequests(String prefix) {
+        RecentRequests recent = recentRequests.get(prefix);
+        return recent == null ? Collections.emptyList() : recent.paths();
+    }
+
+    /**
+     * Prepares a canary rollout of new instances of an app, which are given a share of its requests once
+     * {@link CanaryRoute#shift(int)} is called. The app must already be running.
+     */
+    public synchronized CanaryRoute startCanary(String prefix, List<URL> candidates) {
+        UpstreamGroup live = mapping.get(prefix);
+        if (live == null) {
+            throw new IllegalStateException("There is no running version of " + prefix + " to compare a canary with");
+        }
+        Upstream[] canaries = candidates.stream().map(Upstream::new).toArray(Upstream[]::new);
+        return new CanaryRoute(this, live, canaries, loadBalancerForApp.apply(prefix));
+    }
+
+    /**
+     * Changes the instances for an app, as long as they have not been changed by something else
+     * @return True if the instances were replaced
+     */
+    synchronized boolean replace(String prefix, UpstreamGroup expected, UpstreamGroup replacement) {
+        if (mapping.get(prefix) != expected) {
+            return false;
+        }
+        mapping.put(prefix, replacement);
+        routes = new RoutingTable(mapping);
+        log.info(prefix + " maps to " + replacement);
+        return true;
+    }
+
+    /**
+     * Starts copying a percentage of the requests to an app onto the given candidate instances, until the returned
+     * mirror is stopped. Any previous mirror for the app is stopped.
+     */
+    public ShadowMirror startShadowing(String prefix, List<URL> candidates, int percent) {
+        ShadowMirror mirror = new ShadowMirror(prefix, candidates, percent, m -> shadows.remove(prefix, m));
+        ShadowMirror old = shadows.put(prefix, mirror);
+        if (old != null) {
+            old.stop();
+        }
+        log.info("Mirroring " + percent + "% of requests to " + prefix + " to " + candidates);
+        return mirror;
+    }
+
+    ShadowMirror shadow(String prefix) {
+        return shadows.get(prefix);
+    }
+
     public URL get(String prefix) {
-        return mapping.getOrDefault(prefix, null);
+        Upstream upstream = choose(prefix);
+        return upstream == null ? null : upstream.url();
+    }
+
+    public UpstreamGroup upstreams(String prefix) {
+        return mapping.get(prefix);
     }
 }
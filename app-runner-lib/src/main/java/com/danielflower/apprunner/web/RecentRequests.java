@@ -0,0 +1,42 @@
+package com.danielflower.apprunner.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size record of the most recent GET request paths to an app, which new instances of the app can be warmed
+ * up with. Recording a request does not take a lock, so this is cheap enough to be on the proxy path.
+ */
+public class RecentRequests {
+    private final AtomicReferenceArray<String> paths;
+    private final AtomicLong count = new AtomicLong();
+
+    public RecentRequests(int capacity) {
+        this.paths = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @param pathAndQuery The raw path, including the app name, and the query string if there is one
+     */
+    public void record(String pathAndQuery) {
+        paths.set((int) (count.getAndIncrement() % paths.length()), pathAndQuery);
+    }
+
+    /**
+     * @return The recorded paths, oldest first
+     */
+    public List<String> paths() {
+        long end = count.get();
+        long start = Math.max(0, end - paths.length());
+        List<String> result = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            String path = paths.get((int) (i % paths.length()));
+            if (path != null) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package com.danielflower.apprunner.web;
+
+import java.util.Map;
+
+/**
+ * An immutable lookup from the first segment of a request path to the app that serves it.
+ * <p>Lookups hash the segment straight out of the request path, so no substrings are allocated
+ * on the request path. A new table is built whenever an app is added or removed.</p>
+ */
+class RoutingTable {
+    static final RoutingTable EMPTY = new RoutingTable(Map.of());
+
+    private final String[] keys;
+    private final UpstreamGroup[] groups;
+    private final int mask;
+
+    RoutingTable(Map<String, UpstreamGroup> routes) {
+        int capacity = 2;
+        while (capacity < routes.size() * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new String[capacity];
+        this.groups = new UpstreamGroup[capacity];
+        this.mask = capacity - 1;
+        for (Map.Entry<String, UpstreamGroup> route : routes.entrySet()) {
+            String key = route.getKey();
+            int i = spread(key.hashCode()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            groups[i] = route.getValue();
+        }
+    }
+
+    /**
+     * @param rawPath A request path such as <code>/app-name/some/path</code>
+     * @return The app that the first segment of the path refers to, or null if there is none
+     */
+    UpstreamGroup lookup(String rawPath) {
+        int length = rawPath.length();
+        if (length < 2 || rawPath.charAt(0) != '/') {
+            return null;
+        }
+        int hash = 0;
+        int end = 1;
+        for (; end < length; end++) {
+            char c = rawPath.charAt(end);
+            if (c == '/') {
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+        int segmentLength = end - 1;
+        if (segmentLength == 0) {
+            return null;
+        }
+        int i = spread(hash) & mask;
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.length() == segmentLength && rawPath.regionMatches(1, key, 0, segmentLength)) {
+                return groups[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
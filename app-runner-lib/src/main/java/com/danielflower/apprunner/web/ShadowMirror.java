@@ -0,0 +1,131 @@
+package com.danielflower.apprunner.web;
+
+import com.danielflower.apprunner.mgmt.ShadowComparison;
+import com.danielflower.apprunner.mgmt.ShadowTraffic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Copies a percentage of the GET and HEAD requests to an app onto candidate instances, and times the responses from
+ * both the live and candidate instances for those requests. Copies are sent from a small bounded queue, and are
+ * dropped if the queue is full, so mirroring does not hold up the live request.
+ */
+public class ShadowMirror implements ShadowTraffic.Session {
+    private static final Logger log = LoggerFactory.getLogger(ShadowMirror.class);
+    private static final int QUEUE_SIZE = 100;
+    private static final int MAX_IN_FLIGHT = 20;
+
+    private final String appName;
+    private final List<URL> candidates;
+    private final int percent;
+    private final Consumer<ShadowMirror> onStop;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final LatencyRecorder primary = new LatencyRecorder();
+    private final LatencyRecorder candidate = new LatencyRecorder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong mirrored = new AtomicLong();
+    private volatile boolean stopped;
+
+    ShadowMirror(String appName, List<URL> candidates, int percent, Consumer<ShadowMirror> onStop) {
+        this.appName = appName;
+        this.candidates = candidates;
+        this.percent = percent;
+        this.onStop = onStop;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "shadow-" + appName);
+            thread.setDaemon(true);
+            return thread;
+        }, (r, e) -> dropped.increment());
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> send(UpstreamClient client, HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        if (stopped || !shouldMirror(request)) {
+            return client.sendAsync(request, responseBodyHandler);
+        }
+        executor.execute(() -> mirror(client.httpClient(), request));
+        long start = System.nanoTime();
+        AtomicBoolean responded = new AtomicBoolean();
+        HttpResponse.BodyHandler<T> timingHandler = responseInfo -> {
+            responded.set(true);
+            primary.record(millisSince(start), responseInfo.statusCode() >= 500);
+            return responseBodyHandler.apply(responseInfo);
+        };
+        return client.sendAsync(request, timingHandler).whenComplete((response, error) -> {
+            if (error != null && !responded.get()) {
+                primary.recordFailure();
+            }
+        });
+    }
+
+    private boolean shouldMirror(HttpRequest request) {
+        String method = request.method();
+        return ("GET".equals(method) || "HEAD".equals(method)) && ThreadLocalRandom.current().nextInt(100) < percent;
+    }
+
+    private void mirror(HttpClient client, HttpRequest original) {
+        if (stopped) {
+            return;
+        }
+        if (!inFlight.tryAcquire()) {
+            dropped.increment();
+            return;
+        }
+        URL target = candidates.get((int) (mirrored.getAndIncrement() % candidates.size()));
+        String query = original.uri().getRawQuery();
+        URI uri = URI.create(target.getProtocol() + "://" + target.getAuthority() + original.uri().getRawPath() + (query == null ? "" : "?" + query));
+        HttpRequest.Builder copy = HttpRequest.newBuilder(uri).method(original.method(), HttpRequest.BodyPublishers.noBody());
+        original.timeout().ifPresent(copy::timeout);
+        original.headers().map().forEach((name, values) -> {
+            for (String value : values) {
+                try {
+                    copy.header(name, value);
+                } catch (IllegalArgumentException ignored) {
+                    // a header that the HTTP client sets itself
+                }
+            }
+        });
+        long start = System.nanoTime();
+        AtomicBoolean responded = new AtomicBoolean();
+        try {
+            client.sendAsync(copy.build(), responseInfo -> {
+                responded.set(true);
+                candidate.record(millisSince(start), responseInfo.statusCode() >= 500);
+                return HttpResponse.BodySubscribers.discarding();
+            }).whenComplete((response, error) -> {
+                inFlight.release();
+                if (error != null && !responded.get()) {
+                    candidate.recordFailure();
+                }
+            });
+        } catch (Exception e) {
+            inFlight.release();
+            candidate.recordFailure();
+            log.debug("Could not mirror " + uri + " for " + appName, e);
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public ShadowComparison stop() {
+        stopped = true;
+        onStop.accept(this);
+        executor.shutdownNow();
+        return new ShadowComparison(primary.stats(), candidate.stats(), dropped.sum());
+    }
+}
@@ -0,0 +1,85 @@
+package com.danielflower.apprunner.web;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single running instance of an app that requests can be proxied to.
+ */
+public class Upstream {
+    private final URL url;
+    private final URI uri;
+    private final String base;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private volatile LatencyRecorder recorder;
+
+    public Upstream(URL url) {
+        this.url = url;
+        try {
+            this.uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid upstream URL " + url, e);
+        }
+        this.base = uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    public URL url() {
+        return url;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    /**
+     * @return The scheme and authority of the upstream, e.g. <code>http://localhost:12345</code>
+     */
+    public String base() {
+        return base;
+    }
+
+    public int activeRequests() {
+        return activeRequests.get();
+    }
+
+    void requestStarted() {
+        activeRequests.incrementAndGet();
+    }
+
+    void requestCompleted() {
+        activeRequests.decrementAndGet();
+    }
+
+    void requestCompleted(long durationMillis, int status) {
+        requestCompleted();
+        LatencyRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.record(durationMillis, status >= 500);
+        }
+    }
+
+    /**
+     * Starts recording the latency and status of requests to this instance, discarding anything recorded before
+     */
+    void startRecording() {
+        recorder = new LatencyRecorder();
+    }
+
+    void stopRecording() {
+        recorder = null;
+    }
+
+    /**
+     * @return The recorder of requests since {@link #startRecording()} was last called, or null if not recording
+     */
+    LatencyRecorder recorder() {
+        return recorder;
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+}
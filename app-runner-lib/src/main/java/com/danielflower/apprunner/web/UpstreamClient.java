@@ -0,0 +1,193 @@
+package com.danielflower.apprunner.web;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The HTTP client used to proxy requests to a single app, which has its own connection pool.
+ */
+public class UpstreamClient {
+    private final String appName;
+    private final UpstreamClientSettings settings;
+    private final HttpClient client;
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger peakActiveRequests = new AtomicInteger();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder http1Responses = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder waitedForConnection = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    UpstreamClient(String appName, UpstreamClientSettings settings, HttpClient client) {
+        this.appName = appName;
+        this.settings = settings;
+        this.client = client;
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        HttpResponse.BodyHandler<T> countingHandler = countingHandler(responseBodyHandler);
+        return enqueue(() -> client.sendAsync(request, countingHandler));
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        HttpResponse.BodyHandler<T> countingHandler = countingHandler(responseBodyHandler);
+        return enqueue(() -> client.sendAsync(request, countingHandler, pushPromiseHandler));
+    }
+
+    <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> result = sendAsync(request, responseBodyHandler);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private <T> HttpResponse.BodyHandler<T> countingHandler(HttpResponse.BodyHandler<T> responseBodyHandler) {
+        return responseInfo -> {
+            if (responseInfo.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            } else {
+                http1Responses.increment();
+            }
+            return responseBodyHandler.apply(responseInfo);
+        };
+    }
+
+    /**
+     * Sends the request once there is a free connection slot. If the returned future is completed or cancelled
+     * before then, for example because the caller timed out or disconnected, the request is not sent at all, and
+     * cancelling it after it is sent cancels the upstream request.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> enqueue(Supplier<CompletableFuture<HttpResponse<T>>> sender) {
+        requests.increment();
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        Runnable send = () -> {
+            if (result.isDone()) {
+                release();
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> sent;
+            try {
+                sent = sender.get();
+            } catch (RuntimeException e) {
+                // The slot was taken for this request, so it must be given back. The error goes to this request's
+                // caller, because this may be running on the thread of a different request that freed up a slot.
+                release();
+                failures.increment();
+                result.completeExceptionally(e);
+                return;
+            }
+            sent.whenComplete((response, error) -> {
+                release();
+                if (error == null) {
+                    result.complete(response);
+                } else {
+                    failures.increment();
+                    result.completeExceptionally(error);
+                }
+            });
+            result.whenComplete((response, error) -> {
+                if (result.isCancelled()) {
+                    sent.cancel(true);
+                }
+            });
+        };
+        if (settings.maxConnections > 0 && activeRequests.get() >= settings.maxConnections) {
+            waitedForConnection.increment();
+        }
+        waiting.add(send);
+        sendWaitingRequests();
+        return result;
+    }
+
+    private void release() {
+        activeRequests.decrementAndGet();
+        sendWaitingRequests();
+    }
+
+    private void sendWaitingRequests() {
+        // Every enqueue and every release is followed by this, so a request cannot be left waiting while there is a free slot
+        int max = settings.maxConnections > 0 ? settings.maxConnections : Integer.MAX_VALUE;
+        while (!waiting.isEmpty()) {
+            int current = activeRequests.get();
+            if (current >= max) {
+                return;
+            }
+            if (activeRequests.compareAndSet(current, current + 1)) {
+                Runnable next = waiting.poll();
+                if (next == null) {
+                    activeRequests.decrementAndGet();
+                } else {
+                    peakActiveRequests.accumulateAndGet(current + 1, Math::max);
+                    next.run();
+                }
+            }
+        }
+    }
+
+    HttpClient httpClient() {
+        return client;
+    }
+
+    public String appName() {
+        return appName;
+    }
+
+    public UpstreamClientSettings settings() {
+        return settings;
+    }
+
+    public int activeRequests() {
+        return activeRequests.get();
+    }
+
+    public int peakActiveRequests() {
+        return peakActiveRequests.get();
+    }
+
+    public int waitingRequests() {
+        return waiting.size();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long http1Responses() {
+        return http1Responses.sum();
+    }
+
+    public long http2Responses() {
+        return http2Responses.sum();
+    }
+
+    public long waitedForConnection() {
+        return waitedForConnection.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+}
@@ -0,0 +1,48 @@
+package com.danielflower.apprunner.web;
+
+import com.danielflower.apprunner.problems.InvalidConfigException;
+
+import java.net.http.HttpClient;
+
+/**
+ * How the reverse proxy connects to the instances of a single app.
+ */
+public class UpstreamClientSettings {
+    public static final UpstreamClientSettings DEFAULT = new UpstreamClientSettings(HttpClient.Version.HTTP_2, 0);
+
+    /**
+     * HTTP_2 means requests to apps are sent as HTTP/1.1 with an h2c upgrade, with subsequent requests being
+     * multiplexed over the upgraded connection. If the app does not support h2c then HTTP/1.1 is used.
+     */
+    public final HttpClient.Version version;
+
+    /**
+     * The maximum number of concurrent requests (and therefore HTTP/1.1 connections) to the app, or 0 for no limit.
+     * Requests beyond this wait for a connection to become free.
+     */
+    public final int maxConnections;
+
+    public UpstreamClientSettings(HttpClient.Version version, int maxConnections) {
+        this.version = version;
+        this.maxConnections = maxConnections;
+    }
+
+    public static HttpClient.Version parseProtocol(String protocol) {
+        switch (protocol) {
+            case "h2c":
+                return HttpClient.Version.HTTP_2;
+            case "http/1.1":
+                return HttpClient.Version.HTTP_1_1;
+            default:
+                throw new InvalidConfigException("Unsupported proxy protocol '" + protocol + "'. Valid values are h2c and http/1.1");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UpstreamClientSettings{" +
+            "version=" + version +
+            ", maxConnections=" + maxConnections +
+            '}';
+    }
+}
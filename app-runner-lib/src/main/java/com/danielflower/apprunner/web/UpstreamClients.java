@@ -0,0 +1,129 @@
+package com.danielflower.apprunner.web;
+
+import io.muserver.murp.ReverseProxyBuilder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * The HTTP client given to the reverse proxy. It sends each request with the {@link UpstreamClient} of the
+ * app that the request is for, so each app gets its own connection pool, protocol and statistics.
+ */
+public class UpstreamClients extends HttpClient {
+
+    private final ProxyMap proxyMap;
+    private final Function<String, UpstreamClientSettings> settingsForApp;
+    private final HttpClient defaultClient;
+    private final ConcurrentHashMap<String, UpstreamClient> clients = new ConcurrentHashMap<>();
+
+    public UpstreamClients(ProxyMap proxyMap, Function<String, UpstreamClientSettings> settingsForApp) {
+        this.proxyMap = proxyMap;
+        this.settingsForApp = settingsForApp;
+        this.defaultClient = ReverseProxyBuilder.createHttpClientBuilder(true).build();
+    }
+
+    /**
+     * @return The clients for each app that has had at least one request proxied to it
+     */
+    public Collection<UpstreamClient> clients() {
+        return clients.values();
+    }
+
+    private UpstreamClient clientFor(HttpRequest request) {
+        UpstreamGroup group = proxyMap.route(request.uri().getRawPath());
+        if (group == null) {
+            return null;
+        }
+        UpstreamClient client = clients.get(group.name());
+        return client != null ? client : clients.computeIfAbsent(group.name(), this::createClient);
+    }
+
+    private UpstreamClient createClient(String appName) {
+        UpstreamClientSettings settings = settingsForApp.apply(appName);
+        HttpClient client = ReverseProxyBuilder.createHttpClientBuilder(true)
+            .version(settings.version)
+            .build();
+        return new UpstreamClient(appName, settings, client);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        UpstreamClient client = clientFor(request);
+        if (client == null) {
+            return defaultClient.sendAsync(request, responseBodyHandler);
+        }
+        ShadowMirror shadow = proxyMap.shadow(client.appName());
+        return shadow == null ? client.sendAsync(request, responseBodyHandler) : shadow.send(client, request, responseBodyHandler);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        UpstreamClient client = clientFor(request);
+        return client == null ? defaultClient.sendAsync(request, responseBodyHandler, pushPromiseHandler) : client.sendAsync(request, responseBodyHandler, pushPromiseHandler);
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException, InterruptedException {
+        UpstreamClient client = clientFor(request);
+        return client == null ? defaultClient.send(request, responseBodyHandler) : client.send(request, responseBodyHandler);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return defaultClient.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return defaultClient.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return defaultClient.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return defaultClient.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return defaultClient.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return defaultClient.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return defaultClient.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return defaultClient.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return defaultClient.executor();
+    }
+}
@@ -0,0 +1,79 @@
+package com.danielflower.apprunner.web;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * All the running instances of a single app, along with the policy used to pick between them. During a canary
+ * rollout, the group also has the instances of the new version, which are given a percentage of the requests.
+ */
+public class UpstreamGroup {
+    private final String name;
+    private final Upstream[] upstreams;
+    private final LoadBalancer loadBalancer;
+    private final Upstream[] canaries;
+    private final LoadBalancer canaryLoadBalancer;
+    private final int canaryPercent;
+
+    UpstreamGroup(String name, Upstream[] upstreams, LoadBalancer loadBalancer) {
+        this(name, upstreams, loadBalancer, new Upstream[0], null, 0);
+    }
+
+    private UpstreamGroup(String name, Upstream[] upstreams, LoadBalancer loadBalancer, Upstream[] canaries, LoadBalancer canaryLoadBalancer, int canaryPercent) {
+        if (upstreams.length == 0) {
+            throw new IllegalArgumentException("At least one upstream is required");
+        }
+        this.name = name;
+        this.upstreams = upstreams;
+        this.loadBalancer = loadBalancer;
+        this.canaries = canaries;
+        this.canaryLoadBalancer = canaryLoadBalancer;
+        this.canaryPercent = canaryPercent;
+    }
+
+    /**
+     * @return A copy of this group that sends the given percentage of requests to the canary instances
+     */
+    UpstreamGroup withCanaries(Upstream[] canaries, LoadBalancer canaryLoadBalancer, int canaryPercent) {
+        return new UpstreamGroup(name, upstreams, loadBalancer, canaries, canaryLoadBalancer, canaryPercent);
+    }
+
+    /**
+     * @return The name of the app
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return The number of requests currently being proxied to any non-canary instance in this group
+     */
+    public int activeRequests() {
+        int total = 0;
+        for (Upstream upstream : upstreams) {
+            total += upstream.activeRequests();
+        }
+        return total;
+    }
+
+    public Upstream choose() {
+        if (canaryPercent > 0 && ThreadLocalRandom.current().nextInt(100) < canaryPercent) {
+            return canaries.length == 1 ? canaries[0] : canaryLoadBalancer.choose(canaries);
+        }
+        return upstreams.length == 1 ? upstreams[0] : loadBalancer.choose(upstreams);
+    }
+
+    public List<Upstream> upstreams() {
+        return Arrays.asList(upstreams);
+    }
+
+    public List<Upstream> canaries() {
+        return Arrays.asList(canaries);
+    }
+
+    @Override
+    public String toString() {
+        return canaryPercent > 0 ? Arrays.toString(upstreams) + " with " + canaryPercent + "% to " + Arrays.toString(canaries) : Arrays.toString(upstreams);
+    }
+}
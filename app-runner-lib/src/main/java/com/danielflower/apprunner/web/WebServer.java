@@ -8,7 +8,6 @@ import com.danielflower.apprunner.web.v1.SystemResource;
 import io.muserver.*;
 import io.muserver.acme.AcmeCertManager;
 import io.muserver.handlers.HttpsRedirectorBuilder;
-import io.muserver.murp.ReverseProxyBuilder;
 import io.muserver.openapi.OpenAPIObjectBuilder;
 import io.muserver.rest.RestHandlerBuilder;
 import org.apache.commons.lang3.StringUtils;
@@ -19,7 +18,6 @@ import org.slf4j.LoggerFactory;
 import jakarta.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.net.http.HttpClient;
 import java.util.concurrent.TimeUnit;
 
 import static io.muserver.ContextHandlerBuilder.context;
@@ -32,6 +30,7 @@ public class WebServer implements AutoCloseable {
     private final AcmeCertManager acmeCertManager;
     private final int redirectToHttps;
     private final ProxyMap proxyMap;
+    private final UpstreamClients upstreamClients;
     private final int httpPort;
     private final int httpsPort;
     private final HttpsConfigBuilder sslContext;
@@ -44,13 +43,14 @@ public class WebServer implements AutoCloseable {
     private final String viaName;
     private final long maxRequestSize;
 
-    public WebServer(int httpPort, int httpsPort, HttpsConfigBuilder sslContext, AcmeCertManager acmeCertManager, int redirectToHttps, ProxyMap proxyMap, String defaultAppName, SystemResource systemResource, AppResource appResource, int idleTimeout, int totalTimeout, String viaName, long maxRequestSize) {
+    public WebServer(int httpPort, int httpsPort, HttpsConfigBuilder sslContext, AcmeCertManager acmeCertManager, int redirectToHttps, ProxyMap proxyMap, UpstreamClients upstreamClients, String defaultAppName, SystemResource systemResource, AppResource appResource, int idleTimeout, int totalTimeout, String viaName, long maxRequestSize) {
         this.httpPort = httpPort;
         this.httpsPort = httpsPort;
         this.sslContext = sslContext;
         this.acmeCertManager = acmeCertManager;
         this.redirectToHttps = redirectToHttps;
         this.proxyMap = proxyMap;
+        this.upstreamClients = upstreamClients;
         this.defaultAppName = defaultAppName;
         this.systemResource = systemResource;
         this.appResource = appResource;
@@ -74,7 +74,7 @@ public class WebServer implements AutoCloseable {
 
         int maxRequestHeadersSize = 24 * 1024;
 
-        HttpClient rpClient = ReverseProxyBuilder.createHttpClientBuilder(true).build();
+        AppUriMapper uriMapper = new AppUriMapper(proxyMap);
 
         muServer = MuServerBuilder.muServer()
             .withHttpPort(httpPort)
@@ -102,7 +102,7 @@ public class WebServer implements AutoCloseable {
                                 .withAllowedOriginRegex(".*")
                                 .withAllowedHeaders("content-type")
                                 .withAllowCredentials(true)
-                                .withExposedHeaders("content-type", "accept", "authorization")
+                                .withExposedHeaders("content-type", "accept", "authorization", AppResource.SINCE_HEADER, AppResource.NEXT_SINCE_HEADER)
                             )
                             .addExceptionMapper(ValidationException.class, exception -> Response.status(400)
                                 .type("application/json")
@@ -121,12 +121,13 @@ public class WebServer implements AutoCloseable {
                     )
                 ))
             .addHandler(reverseProxy()
-                .withUriMapper(new AppUriMapper(proxyMap))
+                .withUriMapper(uriMapper)
+                .addProxyCompleteListener(uriMapper)
                 .withTotalTimeout(totalTimeout)
                 .withViaName(viaName)
                 .sendLegacyForwardedHeaders(true)
                 .discardClientForwardedHeaders(false)
-                .withHttpClient(rpClient)
+                .withHttpClient(upstreamClients)
             )
             .start();
 
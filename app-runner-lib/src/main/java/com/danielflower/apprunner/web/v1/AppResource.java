@@ -3,11 +3,15 @@ package com.danielflower.apprunner.web.v1;
 import com.danielflower.apprunner.AppEstate;
 import com.danielflower.apprunner.AppRunnerHooks;
 import com.danielflower.apprunner.FileSandbox;
+import com.danielflower.apprunner.io.ChunkedLog;
 import com.danielflower.apprunner.io.OutputToWriterBridge;
+import com.danielflower.apprunner.io.RingBuffer;
 import com.danielflower.apprunner.io.Zippy;
 import com.danielflower.apprunner.mgmt.*;
 import com.danielflower.apprunner.problems.AppNotFoundException;
 import com.danielflower.apprunner.runners.UnsupportedProjectTypeException;
+import io.muserver.MuRequest;
+import io.muserver.MuResponse;
 import io.muserver.Mutils;
 import io.muserver.rest.ApiResponse;
 import io.muserver.rest.Description;
@@ -27,7 +31,14 @@ import jakarta.ws.rs.core.*;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -37,17 +48,23 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 @Path("/apps")
 public class AppResource {
     public static final Logger log = LoggerFactory.getLogger(AppResource.class);
+    public static final String SINCE_HEADER = "X-Since";
+    public static final String NEXT_SINCE_HEADER = "X-Next-Since";
+    public static final String JOB_STATUS_HEADER = "X-Job-Status";
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
 
     private final AppEstate estate;
     private final SystemInfo systemInfo;
     private final FileSandbox fileSandbox;
     private final AppRunnerHooks hooks;
+    private final DeployJobs deployJobs;
 
     public AppResource(AppEstate estate, SystemInfo systemInfo, FileSandbox fileSandbox, AppRunnerHooks hooks) {
         this.estate = estate;
         this.systemInfo = systemInfo;
         this.fileSandbox = fileSandbox;
         this.hooks = hooks;
+        this.deployJobs = new DeployJobs(estate::update, 50, 256 * 1024);
     }
 
     @GET
@@ -81,23 +98,149 @@ public class AppResource {
     @GET
     @Produces("text/plain;charset=utf-8")
     @Path("/{name}/build.log")
-    @Description(value = "Gets the latest build log as plain text for the given app")
-    public String buildLogs(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name) {
+    @Description(value = "Gets the latest build log as plain text for the given app", details = "A single byte range can be requested " +
+        "with a Range header, for example to get only the output written since the last request while a build is in progress.")
+    public Response buildLogs(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                              @HeaderParam("Range") String range) {
         Optional<AppDescription> namedApp = estate.app(name);
-        if (namedApp.isPresent())
-            return namedApp.get().latestBuildLog();
-        throw new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames());
+        if (!namedApp.isPresent())
+            throw new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames());
+        ChunkedLog buildLog = namedApp.get().buildLog();
+        long length = buildLog.length();
+        Matcher matcher = range == null ? null : SINGLE_BYTE_RANGE.matcher(range.trim());
+        if (matcher == null || !matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            StreamingOutput output = out -> buildLog.writeTo(0, length, out);
+            return Response.ok(output).header("Accept-Ranges", "bytes").build();
+        }
+        long from, to;
+        if (matcher.group(1).isEmpty()) {
+            from = Math.max(0, length - rangeValue(matcher.group(2)));
+            to = length;
+        } else {
+            from = rangeValue(matcher.group(1));
+            to = matcher.group(2).isEmpty() ? length : Math.min(length - 1, rangeValue(matcher.group(2))) + 1;
+        }
+        if (from >= length || from >= to) {
+            return Response.status(416).header("Content-Range", "bytes */" + length).build();
+        }
+        StreamingOutput output = out -> buildLog.writeTo(from, to, out);
+        return Response.status(206)
+            .entity(output)
+            .header("Accept-Ranges", "bytes")
+            .header("Content-Range", "bytes " + from + "-" + (to - 1) + "/" + length)
+            .build();
+    }
+
+    /**
+     * Parses a byte position from a Range header, treating numbers too large for a long as {@link Long#MAX_VALUE}
+     * so that they are past the end of any log.
+     */
+    private static long rangeValue(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @GET
+    @Path("/{name}/builds")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Description(value = "Lists the past deployments of the given app that still have build logs, newest first")
+    public String builds(@Context UriInfo uriInfo, @Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name) {
+        AppDescription app = estate.app(name)
+            .orElseThrow(() -> new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames()));
+        URI restURI = uriInfo.getRequestUri().resolve("/api/v1/");
+        List<JSONObject> builds = new ArrayList<>();
+        for (BuildHistory.BuildRecord build : app.buildHistory().builds()) {
+            builds.add(new JSONObject(build.status.toMap())
+                .put("id", build.id)
+                .put("compressedLogSize", build.logFile.length())
+                .put("buildLogUrl", appUrl(app, restURI, "builds/" + build.id + "/build.log")));
+        }
+        return new JSONObject().put("builds", builds).toString(4);
+    }
+
+    @GET
+    @Path("/{name}/processes")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Description(value = "Gets recent samples of the CPU, memory, threads, open files and IO used by the app's processes, oldest first",
+        details = "Samples are taken periodically from /proc on Linux and include any processes started by the app. The list is empty " +
+            "when sampling is disabled or unavailable.")
+    public String processes(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name) {
+        AppDescription app = estate.app(name)
+            .orElseThrow(() -> new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames()));
+        List<JSONObject> samples = new ArrayList<>();
+        for (ProcessSample sample : app.processHistory().samples()) {
+            samples.add(sample.toJSON());
+        }
+        return new JSONObject().put("samples", samples).toString(4);
+    }
+
+    @GET
+    @Produces("text/plain;charset=utf-8")
+    @Path("/{name}/builds/{id}/build.log")
+    @Description(value = "Gets the build log of a past deployment", details = "Logs are stored gzipped, so clients that accept gzip " +
+        "encoding are sent the stored file as-is.")
+    public Response pastBuildLog(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                                 @Required @Description(value = "The ID of the build, from the builds list", example = "1") @PathParam("id") long id,
+                                 @HeaderParam("Accept-Encoding") String acceptEncoding) {
+        AppDescription app = estate.app(name)
+            .orElseThrow(() -> new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames()));
+        BuildHistory.BuildRecord build = app.buildHistory().build(id)
+            .orElseThrow(() -> new NotFoundException("No build " + id + " found for " + name));
+        File logFile = build.logFile;
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            StreamingOutput output = out -> {
+                try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long size = channel.size();
+                    for (long position = 0; position < size; ) {
+                        position += channel.transferTo(position, size - position, target);
+                    }
+                }
+            };
+            return Response.ok(output)
+                .header("Content-Encoding", "gzip")
+                .header("Content-Length", logFile.length())
+                .header("Vary", "Accept-Encoding")
+                .build();
+        }
+        StreamingOutput output = out -> {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(logFile))) {
+                IOUtils.copy(in, out);
+            }
+        };
+        return Response.ok(output).header("Vary", "Accept-Encoding").build();
     }
 
     @GET
     @Produces("text/plain;charset=utf-8")
     @Path("/{name}/console.log")
-    @Description(value = "Gets the latest console log as plain text for the given app")
-    public String consoleLogs(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name) {
+    @Description(value = "Gets the latest console log as plain text for the given app", details = "The " + NEXT_SINCE_HEADER + " response header " +
+        "gives the value to use as the since parameter to get only newer output on the next request.")
+    public Response consoleLogs(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                                @Description(value = "Only returns output after this byte offset", example = "0") @QueryParam("since") @DefaultValue("0") long since,
+                                @Description(value = "If true, the response stays open and new output is streamed as it is written") @QueryParam("follow") @DefaultValue("false") boolean follow,
+                                @Context MuRequest request, @Context MuResponse response) {
         Optional<AppDescription> namedApp = estate.app(name);
-        if (namedApp.isPresent())
-            return namedApp.get().latestConsoleLog();
-        throw new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames());
+        if (!namedApp.isPresent())
+            throw new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames());
+        RingBuffer consoleLog = namedApp.get().consoleLog();
+        long from = Math.max(since, consoleLog.start());
+        if (follow) {
+            response.contentType("text/plain;charset=utf-8");
+            response.headers().set(SINCE_HEADER, from);
+            response.headers().set("X-Content-Type-Options", "nosniff");
+            new ConsoleLogFollower(consoleLog, request.handleAsync(), from).start();
+            return null;
+        }
+        long end = consoleLog.end();
+        StreamingOutput output = out -> consoleLog.writeTo(from, end, out);
+        return Response.ok(output)
+            .header(SINCE_HEADER, from)
+            .header(NEXT_SINCE_HEADER, Math.max(from, end))
+            .build();
     }
 
     @GET
@@ -141,6 +284,15 @@ public class AppResource {
         return Response.noContent().build();
     }
 
+    @DELETE
+    @Path("/{name}/build-cache")
+    @Description(value = "Deletes the app's cached builds, dependencies and incremental build state, so that the next deploy builds from scratch")
+    @ApiResponse(code = "204", message = "Build caches cleared")
+    public Response clearBuildCaches(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name) throws IOException {
+        getAppDescription(name).clearBuildCaches();
+        return Response.noContent().build();
+    }
+
     @POST
     @Consumes({"application/octet-stream", "application/zip"})
     @Path("/{name}/data")
@@ -202,11 +354,15 @@ public class AppResource {
         Availability availability = app.currentAvailability();
         BuildStatus lastBuildStatus = app.lastBuildStatus();
         BuildStatus lastSuccessfulBuild = app.lastSuccessfulBuild();
+        Map<String, Long> resourceUsage = app.resourceUsage();
+        ProcessSample latestProcessSample = app.processHistory().latest();
         return new JSONObject()
             .put("name", app.name())
             .put("contributors", getContributorsList(app))
             .put("buildLogUrl", appUrl(app, restURI, "build.log"))
             .put("consoleLogUrl", appUrl(app, restURI, "console.log"))
+            .put("buildsUrl", appUrl(app, restURI, "builds"))
+            .put("processesUrl", appUrl(app, restURI, "processes"))
             .put("url", uri.resolve("/" + app.name() + "/"))
             .put("deployUrl", appUrl(app, restURI, "deploy"))
             .put("available", availability.isAvailable)
@@ -214,13 +370,13 @@ public class AppResource {
             .put("lastBuild", lastBuildStatus.toJSON())
             .put("lastSuccessfulBuild", lastSuccessfulBuild == null ? null : lastSuccessfulBuild.toJSON())
             .put("gitUrl", app.gitUrl())
-            .put("host", systemInfo.hostName);
+            .put("host", systemInfo.hostName)
+            .putOpt("resources", resourceUsage.isEmpty() ? null : new JSONObject(resourceUsage))
+            .putOpt("processes", latestProcessSample == null ? null : latestProcessSample.toJSON());
     }
 
     private static String getContributorsList(AppDescription app) {
-        String[] contributorsArray = app.contributors().toArray(new String[0]);
-        Arrays.sort(contributorsArray);
-        return String.join(", ", contributorsArray);
+        return String.join(", ", app.contributors());
     }
 
     private static URI appUrl(AppDescription app, URI restURI, String path) {
@@ -362,9 +518,23 @@ public class AppResource {
     @ApiResponse(code = "200", message = "Returns 200 if the command was received successfully. Whether the build " +
         "actually succeeds or fails is ignored. Returns streamed plain text of the build log and console startup, unless the Accept" +
         " header includes 'application/json'.")
+    @ApiResponse(code = "202", message = "When async is true, the deploy job was started. The JSON response and the Location header " +
+        "give the URL of the job, which has its status and build log.")
     public Response deploy(@Context UriInfo uriInfo,
                            @Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                           @Description(value = "If true, the deploy runs in the background and the response is returned straight away") @QueryParam("async") @DefaultValue("false") boolean async,
                            @Context Request jaxRequest) throws IOException {
+        if (async) {
+            AppDescription app = estate.app(name)
+                .orElseThrow(() -> new AppNotFoundException("No app found with name '" + name + "'. Valid names: " + estate.allAppNames()));
+            DeployJobs.Job job = deployJobs.submit(app.name());
+            URI jobUri = appUrl(app, uriInfo.getRequestUri().resolve("/api/v1/"), "deploys/" + job.id);
+            return Response.status(202)
+                .location(jobUri)
+                .entity(deployJobJson(jobUri, job).toString(4))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+        }
         MediaType json = MediaType.valueOf("application/json; qs=0.5");
         Variant variant = jaxRequest.selectVariant(
             Variant.mediaTypes(json, MediaType.TEXT_PLAIN_TYPE).build()
@@ -381,6 +551,65 @@ public class AppResource {
         }
     }
 
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{name}/deploys/{id}")
+    @Description(value = "Gets the status of a deploy that was started with async=true", details = "The status is one of queued, running, " +
+        "succeeded, failed or cancelled. Finished jobs are only kept for a limited time.")
+    public Response deployJob(@Context UriInfo uriInfo,
+                              @Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                              @Required @Description(value = "The ID of the deploy job") @PathParam("id") String id) {
+        DeployJobs.Job job = deployJob(name, id);
+        return Response.ok(deployJobJson(uriInfo.getRequestUri(), job).toString(4)).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    @GET
+    @Produces("text/plain;charset=utf-8")
+    @Path("/{name}/deploys/{id}/log")
+    @Description(value = "Gets the build log of a deploy that was started with async=true", details = "The " + NEXT_SINCE_HEADER + " response header " +
+        "gives the value to use as the since parameter to get only newer output on the next request.")
+    public Response deployJobLog(@Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                                 @Required @Description(value = "The ID of the deploy job") @PathParam("id") String id,
+                                 @Description(value = "Only returns output after this byte offset", example = "0") @QueryParam("since") @DefaultValue("0") long since) {
+        DeployJobs.Job job = deployJob(name, id);
+        // read the status before the length, so that a finished job never has output after the returned offset
+        String status = job.status().name().toLowerCase();
+        ChunkedLog jobLog = job.log();
+        long from = Math.max(0, since);
+        long end = jobLog.length();
+        StreamingOutput output = out -> jobLog.writeTo(from, end, out);
+        return Response.ok(output)
+            .header(SINCE_HEADER, from)
+            .header(NEXT_SINCE_HEADER, Math.max(from, end))
+            .header(JOB_STATUS_HEADER, status)
+            .build();
+    }
+
+    @DELETE
+    @Path("/{name}/deploys/{id}")
+    @Description(value = "Cancels a deploy that was started with async=true", details = "Any build process that is running is killed, and " +
+        "the previous version of the app keeps running. This has no effect on jobs that have finished.")
+    @ApiResponse(code = "202", message = "Cancellation was requested. Get the job to see when it has stopped.")
+    public Response cancelDeployJob(@Context UriInfo uriInfo,
+                                    @Required @Description(value = "The name of the app", example = "app-runner-home") @PathParam("name") String name,
+                                    @Required @Description(value = "The ID of the deploy job") @PathParam("id") String id) {
+        DeployJobs.Job job = deployJob(name, id);
+        job.cancel();
+        return Response.status(202).entity(deployJobJson(uriInfo.getRequestUri(), job).toString(4)).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    private DeployJobs.Job deployJob(String name, String id) {
+        return deployJobs.job(id)
+            .filter(job -> job.appName.equalsIgnoreCase(name))
+            .orElseThrow(() -> new NotFoundException("No deploy job with ID " + id + " for " + name));
+    }
+
+    private static JSONObject deployJobJson(URI jobUri, DeployJobs.Job job) {
+        return job.toJSON()
+            .put("url", jobUri)
+            .put("logUrl", URI.create(jobUri + "/log"));
+    }
+
     private class UpdateStreamer implements StreamingOutput {
         private final String name;
 
@@ -0,0 +1,72 @@
+package com.danielflower.apprunner.web.v1;
+
+import com.danielflower.apprunner.io.RingBuffer;
+import io.muserver.AsyncHandle;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends console output to a single client as it is written, using an async response so no thread is held
+ * while waiting for output. All the followers of an app are notified by that app's console buffer, and each
+ * one reads from the buffer at its own pace, so a slow client only holds up itself.
+ */
+class ConsoleLogFollower implements Runnable {
+    private final RingBuffer buffer;
+    private final AsyncHandle handle;
+    private final AtomicInteger pendingNotifications = new AtomicInteger();
+    private volatile boolean stopped = false;
+    private long position;
+
+    ConsoleLogFollower(RingBuffer buffer, AsyncHandle handle, long since) {
+        this.buffer = buffer;
+        this.handle = handle;
+        this.position = since;
+    }
+
+    void start() {
+        handle.addResponseCompleteHandler(info -> stop());
+        buffer.addWriteListener(this);
+        run();
+    }
+
+    @Override
+    public void run() {
+        if (!stopped && pendingNotifications.getAndIncrement() == 0) {
+            sendAvailable();
+        }
+    }
+
+    private void sendAvailable() {
+        // Only one thread gets here at a time. Notifications that arrive while sending are handled afterwards.
+        while (true) {
+            int notifications = pendingNotifications.get();
+            ByteArrayOutputStream available = new ByteArrayOutputStream();
+            try {
+                position = buffer.writeTo(position, available);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot happen with a byte array", e);
+            }
+            if (available.size() > 0) {
+                handle.write(ByteBuffer.wrap(available.toByteArray()), error -> {
+                    if (error != null) {
+                        stop();
+                    } else if (pendingNotifications.addAndGet(-notifications) != 0) {
+                        sendAvailable();
+                    }
+                });
+                return;
+            }
+            if (pendingNotifications.addAndGet(-notifications) == 0) {
+                return;
+            }
+        }
+    }
+
+    private void stop() {
+        stopped = true;
+        buffer.removeWriteListener(this);
+    }
+}
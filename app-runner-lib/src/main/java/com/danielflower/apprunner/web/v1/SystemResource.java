@@ -1,8 +1,12 @@
 package com.danielflower.apprunner.web.v1;
 
+import com.danielflower.apprunner.StartupScheduler;
 import com.danielflower.apprunner.mgmt.BackupService;
+import com.danielflower.apprunner.mgmt.BuildQueue;
 import com.danielflower.apprunner.mgmt.SystemInfo;
 import com.danielflower.apprunner.runners.AppRunnerFactory;
+import com.danielflower.apprunner.web.UpstreamClient;
+import com.danielflower.apprunner.web.UpstreamClients;
 import io.muserver.MuRequest;
 import io.muserver.MuStats;
 import io.muserver.rest.Description;
@@ -23,9 +27,9 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.http.HttpClient;
 import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Description(value = "System")
@@ -34,16 +38,20 @@ public class SystemResource {
     public static final Logger log = LoggerFactory.getLogger(SystemResource.class);
     private final SystemInfo systemInfo;
 
-    private final AtomicBoolean startupComplete;
+    private final StartupScheduler startupScheduler;
+    private final BuildQueue buildQueue;
     private final List<AppRunnerFactory> factories;
     private final BackupService backupService;
+    private final UpstreamClients upstreamClients;
     private final String appRunnerVersion = ObjectUtils.firstNonNull(SystemResource.class.getPackage().getImplementationVersion(), "master");
 
-    public SystemResource(SystemInfo systemInfo, AtomicBoolean startupComplete, List<AppRunnerFactory> factories, BackupService backupService) {
+    public SystemResource(SystemInfo systemInfo, StartupScheduler startupScheduler, BuildQueue buildQueue, List<AppRunnerFactory> factories, BackupService backupService, UpstreamClients upstreamClients) {
         this.systemInfo = systemInfo;
-        this.startupComplete = startupComplete;
+        this.startupScheduler = startupScheduler;
+        this.buildQueue = buildQueue;
         this.factories = factories;
         this.backupService = backupService;
+        this.upstreamClients = upstreamClients;
     }
 
     @GET
@@ -51,7 +59,9 @@ public class SystemResource {
     @Description(value = "Returns information about AppRunner, including information about sample apps")
     public Response systemInfo(@Context UriInfo uri, @Context MuRequest muRequest) {
         JSONObject result = new JSONObject();
-        result.put("appRunnerStarted", startupComplete.get());
+        result.put("appRunnerStarted", startupScheduler.isComplete());
+        result.put("startup", startupScheduler.progressJSON());
+        result.put("builds", buildQueue.toJSON());
         result.put("appRunnerVersion", appRunnerVersion);
         result.put("host", systemInfo.hostName);
         result.put("user", systemInfo.user);
@@ -70,6 +80,23 @@ public class SystemResource {
                 .put("bytesSent", stats.bytesSent())
         );
 
+        JSONObject upstreamJson = new JSONObject();
+        for (UpstreamClient client : upstreamClients.clients()) {
+            upstreamJson.put(client.appName(), new JSONObject()
+                .put("protocol", client.settings().version == HttpClient.Version.HTTP_2 ? "h2c" : "http/1.1")
+                .put("maxConnections", client.settings().maxConnections)
+                .put("activeRequests", client.activeRequests())
+                .put("peakActiveRequests", client.peakActiveRequests())
+                .put("waitingRequests", client.waitingRequests())
+                .put("requests", client.requests())
+                .put("http1Responses", client.http1Responses())
+                .put("http2Responses", client.http2Responses())
+                .put("waitedForConnection", client.waitedForConnection())
+                .put("failures", client.failures())
+            );
+        }
+        result.put("upstreamClients", upstreamJson);
+
         if (backupService != null) {
             JSONObject backupJson = new JSONObject()
                 .put("backupUrl", backupService.remoteUri);
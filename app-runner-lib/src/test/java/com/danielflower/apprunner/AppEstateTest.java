@@ -1,10 +1,12 @@
 package com.danielflower.apprunner;
 
 import com.danielflower.apprunner.mgmt.AppDescription;
+import com.danielflower.apprunner.mgmt.BuildQueue;
 import com.danielflower.apprunner.web.ProxyMap;
 import org.junit.Before;
 import org.junit.Test;
 import scaffolding.MockAppDescription;
+import scaffolding.TestConfig;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -22,7 +24,7 @@ public class AppEstateTest {
 
     @Before
     public void populate() throws IOException {
-        estate = new AppEstate(new ProxyMap(), fileSandbox(), null, new AppRunnerHooks() {});
+        estate = new AppEstate(TestConfig.config, new ProxyMap(), fileSandbox(), null, new AppRunnerHooks() {}, new BuildQueue(1));
         estate.add(app("Y app"));
         estate.add(app("z app"));
         estate.add(app("c app"));
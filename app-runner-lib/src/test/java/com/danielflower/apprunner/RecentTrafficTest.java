@@ -0,0 +1,50 @@
+package com.danielflower.apprunner;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RecentTrafficTest {
+
+    private final File file = new File("target/recent-traffic/" + UUID.randomUUID() + ".properties");
+
+    public RecentTrafficTest() {
+        file.getParentFile().mkdirs();
+    }
+
+    @Test
+    public void onlyTheRequestsSinceTheLastSaveAreAddedAndOlderCountsDecay() {
+        RecentTraffic traffic = new RecentTraffic(file);
+        long now = System.currentTimeMillis();
+        traffic.update(totals(1000L, 10L), now);
+        assertThat(new RecentTraffic(file).requests("busy"), is(1000L));
+
+        traffic.update(totals(1000L, 110L), now + RecentTraffic.HALF_LIFE_MILLIS);
+        RecentTraffic reloaded = new RecentTraffic(file);
+        assertThat(reloaded.requests("busy"), is(500L));
+        assertThat(reloaded.requests("quiet"), is(105L));
+        assertThat(reloaded.requests("unknown"), is(0L));
+    }
+
+    @Test
+    public void aLowerTotalMeansTheCountingRestarted() {
+        RecentTraffic traffic = new RecentTraffic(file);
+        long now = System.currentTimeMillis();
+        traffic.update(totals(100L, 0L), now);
+        traffic.update(totals(20L, 0L), now);
+        assertThat(new RecentTraffic(file).requests("busy"), is(120L));
+    }
+
+    private static Map<String, Long> totals(long busy, long quiet) {
+        Map<String, Long> totals = new HashMap<>();
+        totals.put("busy", busy);
+        totals.put("quiet", quiet);
+        return totals;
+    }
+}
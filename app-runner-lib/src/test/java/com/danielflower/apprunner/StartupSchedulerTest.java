@@ -0,0 +1,88 @@
+package com.danielflower.apprunner;
+
+import com.danielflower.apprunner.mgmt.AppDescription;
+import org.json.JSONObject;
+import org.junit.Test;
+import scaffolding.MockAppDescription;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StartupSchedulerTest {
+
+    private final List<String> startOrder = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void withOneWorkerTheDefaultAppStartsFirstThenTheBusiestApps() throws Exception {
+        Map<String, Long> traffic = new HashMap<>();
+        traffic.put("quiet", 1L);
+        traffic.put("busy", 1000L);
+        StartupScheduler scheduler = new StartupScheduler(1, app -> traffic.getOrDefault(app, 0L));
+        scheduler.start(apps("a-unknown", "busy", "home", "quiet"), "home", app -> Collections.emptySet(), app -> startOrder.add(app.name()));
+        assertThat(scheduler.awaitCompletion(30, TimeUnit.SECONDS), is(true));
+        assertThat(startOrder, contains("home", "busy", "quiet", "a-unknown"));
+    }
+
+    @Test
+    public void appsWaitForTheirDependenciesEvenIfTheyFail() throws Exception {
+        Map<String, Set<String>> deps = new HashMap<>();
+        deps.put("web", new HashSet<>(asList("db", "cache")));
+        deps.put("cache", Collections.singleton("db"));
+        StartupScheduler scheduler = new StartupScheduler(4, app -> 0);
+        scheduler.start(apps("web", "cache", "db"), null, app -> deps.getOrDefault(app, Collections.emptySet()), app -> {
+            startOrder.add(app.name());
+            if (app.name().equals("db")) {
+                throw new RuntimeException("db failed");
+            }
+        });
+        assertThat(scheduler.awaitCompletion(30, TimeUnit.SECONDS), is(true));
+        assertThat(startOrder, contains("db", "cache", "web"));
+        JSONObject progress = scheduler.progressJSON();
+        assertThat(progress.getBoolean("complete"), is(true));
+        assertThat(progress.getInt("startedApps"), is(2));
+        assertThat(progress.getJSONArray("failedApps").toList(), contains("db"));
+    }
+
+    @Test
+    public void circularAndUnknownDependenciesDoNotBlockStartup() throws Exception {
+        Map<String, Set<String>> deps = new HashMap<>();
+        deps.put("a", Collections.singleton("b"));
+        deps.put("b", Collections.singleton("a"));
+        deps.put("c", Collections.singleton("not-an-app"));
+        StartupScheduler scheduler = new StartupScheduler(2, app -> 0);
+        scheduler.start(apps("a", "b", "c"), null, deps::get, app -> startOrder.add(app.name()));
+        assertThat(scheduler.awaitCompletion(30, TimeUnit.SECONDS), is(true));
+        assertThat(startOrder, containsInAnyOrder("a", "b", "c"));
+    }
+
+    @Test
+    public void noMoreThanTheConcurrencyLimitStartAtOnce() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        Map<String, Integer> maxActive = new ConcurrentHashMap<>();
+        StartupScheduler scheduler = new StartupScheduler(3, app -> 0);
+        scheduler.start(apps("a", "b", "c", "d", "e", "f", "g", "h"), null, app -> Collections.emptySet(), app -> {
+            int now = active.incrementAndGet();
+            maxActive.merge("max", now, Math::max);
+            Thread.sleep(20);
+            active.decrementAndGet();
+        });
+        assertThat(scheduler.awaitCompletion(30, TimeUnit.SECONDS), is(true));
+        assertThat(maxActive.get("max"), lessThanOrEqualTo(3));
+        assertThat(scheduler.progressJSON().getInt("startedApps"), is(8));
+    }
+
+    private static List<AppDescription> apps(String... names) {
+        List<AppDescription> apps = new ArrayList<>();
+        for (String name : names) {
+            apps.add(new MockAppDescription(name, "git://something/" + name + ".git"));
+        }
+        return apps;
+    }
+}
@@ -0,0 +1,65 @@
+package com.danielflower.apprunner.io;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ChunkedLogTest {
+
+    @Test
+    public void linesAreAppendedAcrossChunks() {
+        ChunkedLog log = new ChunkedLog();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            String line = "This is line " + i + " of the build";
+            log.consumeLine(line);
+            expected.append(line).append(System.lineSeparator());
+        }
+        assertThat(log.length() > ChunkedLog.CHUNK_SIZE * 3, is(true));
+        assertThat(log.length(), is((long) expected.length()));
+        assertThat(log.asString(), is(expected.toString()));
+    }
+
+    @Test
+    public void rangesCanBeRead() throws Exception {
+        ChunkedLog log = new ChunkedLog();
+        log.append("0123456789".getBytes(StandardCharsets.UTF_8));
+        assertThat(read(log, 2, 5), is("234"));
+        assertThat(read(log, 8, 100), is("89"));
+        assertThat(read(log, 10, 100), is(""));
+    }
+
+    @Test
+    public void bigLogsAreSpilledToDiskAndStillReadable() throws Exception {
+        File spillFile = new File("target/test-data/chunked-log-" + System.currentTimeMillis() + ".log");
+        byte[] chunk = new byte[ChunkedLog.CHUNK_SIZE];
+        try (ChunkedLog log = new ChunkedLog(spillFile, ChunkedLog.CHUNK_SIZE)) {
+            for (int i = 0; i < 4; i++) {
+                Arrays.fill(chunk, (byte) ('a' + i));
+                log.append(chunk);
+            }
+            log.append("end".getBytes(StandardCharsets.UTF_8));
+            assertThat(spillFile.isFile(), is(true));
+            assertThat(FileUtils.sizeOf(spillFile) >= 2L * ChunkedLog.CHUNK_SIZE, is(true));
+
+            long boundary = ChunkedLog.CHUNK_SIZE;
+            assertThat(read(log, boundary - 2, boundary + 2), is("aabb"));
+            assertThat(read(log, 4L * boundary - 1, 4L * boundary + 3), is("dend"));
+            assertThat(log.length(), is(4L * boundary + 3));
+        }
+        assertThat(spillFile.exists(), is(false));
+    }
+
+    private static String read(ChunkedLog log, long from, long to) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        log.writeTo(from, to, out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,88 @@
+package com.danielflower.apprunner.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RingBufferTest {
+
+    @Test
+    public void theOldestBytesAreOverwrittenWhenFull() {
+        RingBuffer buffer = new RingBuffer(10);
+        buffer.consumeLine("abcdef");
+        assertThat(buffer.snapshotAsString(), is("abcdef"));
+        buffer.consumeLine("ghijkl");
+        assertThat(buffer.snapshotAsString(), is("cdefghijkl"));
+        buffer.consumeLine("0123456789ABC");
+        assertThat(buffer.snapshotAsString(), is("3456789ABC"));
+        assertThat(buffer.end(), is(25L));
+        assertThat(buffer.start(), is(15L));
+    }
+
+    @Test
+    public void clearingHidesExistingBytesButKeepsPositions() {
+        RingBuffer buffer = new RingBuffer(100);
+        buffer.consumeLine("before");
+        buffer.clear();
+        buffer.consumeLine("after");
+        assertThat(buffer.snapshotAsString(), is("after"));
+        assertThat(buffer.start(), is(6L));
+    }
+
+    @Test
+    public void bytesCanBeWrittenFromAGivenPosition() throws Exception {
+        RingBuffer buffer = new RingBuffer(8);
+        buffer.consumeLine("hello ");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long next = buffer.writeTo(0, out);
+        assertThat(out.toString(StandardCharsets.UTF_8), is("hello "));
+        assertThat(next, is(6L));
+
+        buffer.consumeLine("world");
+        out.reset();
+        next = buffer.writeTo(next, out);
+        assertThat(out.toString(StandardCharsets.UTF_8), is("world"));
+        assertThat(next, is(11L));
+
+        out.reset();
+        assertThat(buffer.writeTo(0, out), is(11L));
+        assertThat(out.toString(StandardCharsets.UTF_8), is("lo world"));
+    }
+
+    @Test
+    public void readersSeeWholeLinesWhileManyThreadsWrite() throws Exception {
+        RingBuffer buffer = new RingBuffer(1000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String line = "writer " + i + " says hello\n";
+            Thread writer = new Thread(() -> {
+                while (running.get()) {
+                    buffer.consumeLine(line);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        try {
+            for (int i = 0; i < 2000; i++) {
+                String[] lines = buffer.snapshotAsString().split("\n");
+                for (int j = 1; j < lines.length; j++) { // the first line may have been partly overwritten
+                    assertThat(lines[j], lines[j].matches("writer [0-3] says hello"), is(true));
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+}
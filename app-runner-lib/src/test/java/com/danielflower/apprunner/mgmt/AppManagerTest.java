@@ -1,33 +1,68 @@
 package com.danielflower.apprunner.mgmt;
 
+import com.danielflower.apprunner.Config;
 import com.danielflower.apprunner.FileSandbox;
 import com.danielflower.apprunner.web.WebServerTest;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 import scaffolding.AppRepo;
+import scaffolding.TestConfig;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 
 public class AppManagerTest {
 
     @Test(expected = ValidationException.class)
     public void namesWithSpacesAreInvalid() throws IOException, GitAPIException {
-        AppManager.create(null, null, "some name");
+        AppManager.create(null, null, "some name", TestConfig.config, new BuildQueue(1));
     }
 
     @Test(expected = NullPointerException.class)
     public void namesCanBeLettersNumbersUnderscoresAndHypens() throws IOException, GitAPIException {
-        AppManager.create(null, null, "Some-na_me3");
+        AppManager.create(null, null, "Some-na_me3", TestConfig.config, new BuildQueue(1));
     }
 
     @Test
     public void itCanDeleteAndRecreate() throws Exception {
         AppRepo maven = AppRepo.create("maven");
         FileSandbox sandbox = WebServerTest.fileSandbox();
-        AppManager appManager = AppManager.create(maven.gitUrl(), sandbox, "my-maven-app");
+        AppManager appManager = AppManager.create(maven.gitUrl(), sandbox, "my-maven-app", TestConfig.config, new BuildQueue(1));
         appManager.delete();
-        AppManager appManager2 = AppManager.create(maven.gitUrl(), sandbox, "my-maven-app");
+        AppManager appManager2 = AppManager.create(maven.gitUrl(), sandbox, "my-maven-app", TestConfig.config, new BuildQueue(1));
         appManager2.delete();
     }
 
+    @Test
+    public void theNativeGitClientCanMakeShallowClones() throws Exception {
+        AppRepo maven = AppRepo.create("maven");
+        FileSandbox sandbox = WebServerTest.fileSandbox();
+        Config config = new Config(new HashMap<String, String>() {{
+            put("apprunner.app." + Config.APP_GIT_CLIENT, "native");
+            put("apprunner.app." + Config.APP_GIT_DEPTH, "1");
+        }});
+        AppManager appManager = AppManager.create(maven.gitUrl(), sandbox, "shallow-app", config, new BuildQueue(1));
+        File repoDir = sandbox.repoDir("shallow-app");
+        assertThat(new File(repoDir, ".git/shallow").isFile(), is(true));
+
+        FileUtils.writeStringToFile(new File(maven.originDir, "new-file.txt"), "Hello", StandardCharsets.UTF_8);
+        maven.origin.add().addFilepattern(".").call();
+        RevCommit latest = maven.origin.commit().setMessage("Added a file").setAuthor("Author", "author@example.org").call();
+
+        AppManager.create(maven.gitUrl(), sandbox, "shallow-app", config, new BuildQueue(1));
+        try (Git git = Git.open(repoDir)) {
+            assertThat(git.getRepository().resolve("HEAD"), is(latest.getId()));
+        }
+        assertThat(new File(repoDir, "new-file.txt").isFile(), is(true));
+        appManager.delete();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BuildArtifactCacheTest {
+    private final File root = new File("target/build-cache/" + UUID.randomUUID());
+
+    @Test
+    public void keysDependOnTheCommitAndRunnerVersion() {
+        String key = BuildArtifactCache.key("abc123", "maven", "Maven 3.9");
+        assertThat(BuildArtifactCache.key("abc123", "maven", "Maven 3.9"), is(key));
+        assertThat(BuildArtifactCache.key("abc124", "maven", "Maven 3.9"), not(key));
+        assertThat(BuildArtifactCache.key("abc123", "maven", "Maven 3.8"), not(key));
+    }
+
+    @Test
+    public void storedBuildsCanBeLookedUp() throws Exception {
+        BuildArtifactCache cache = new BuildArtifactCache(root, 1024 * 1024);
+        assertThat(cache.lookup("one"), is(nullValue()));
+        assertThat(cache.store("one", builtDir("one", 100)), is(true));
+        File cached = cache.lookup("one");
+        assertThat(FileUtils.readFileToString(new File(cached, "target/app.jar"), StandardCharsets.UTF_8).length(), is(100));
+    }
+
+    @Test
+    public void leastRecentlyUsedBuildsAreEvictedWhenOverBudget() throws Exception {
+        BuildArtifactCache cache = new BuildArtifactCache(root, 250);
+        cache.store("one", builtDir("one", 100));
+        new File(root, "one.size").setLastModified(System.currentTimeMillis() - 20000);
+        cache.store("two", builtDir("two", 100));
+        new File(root, "two.size").setLastModified(System.currentTimeMillis() - 10000);
+        cache.lookup("one"); // now two is the least recently used
+
+        cache.store("three", builtDir("three", 100));
+        assertThat(cache.lookup("one"), is(notNullValue()));
+        assertThat(cache.lookup("two"), is(nullValue()));
+        assertThat(cache.lookup("three"), is(notNullValue()));
+    }
+
+    @Test
+    public void buildsBiggerThanTheBudgetAreNotStored() throws Exception {
+        BuildArtifactCache cache = new BuildArtifactCache(root, 50);
+        assertThat(cache.store("one", builtDir("one", 100)), is(false));
+        assertThat(cache.lookup("one"), is(nullValue()));
+    }
+
+    private File builtDir(String name, int size) throws Exception {
+        File dir = new File("target/build-cache-sources/" + UUID.randomUUID() + "/" + name);
+        FileUtils.writeStringToFile(new File(dir, "target/app.jar"), "x".repeat(size), StandardCharsets.UTF_8);
+        return dir;
+    }
+}
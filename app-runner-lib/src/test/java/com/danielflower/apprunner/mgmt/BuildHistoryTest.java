@@ -0,0 +1,75 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class BuildHistoryTest {
+    private final File dir = new File("target/build-history/" + UUID.randomUUID());
+
+    @Test
+    public void finishedBuildsAreStoredCompressedNewestFirst() throws Exception {
+        BuildHistory history = new BuildHistory(dir, 10, Long.MAX_VALUE);
+        record(history, "first build");
+        record(history, "second build");
+
+        List<BuildHistory.BuildRecord> builds = history.builds();
+        assertThat(ids(builds), contains(2L, 1L));
+        assertThat(builds.get(0).status.getString("status"), is("success"));
+        try (InputStream in = new GZIPInputStream(new FileInputStream(builds.get(0).logFile))) {
+            assertThat(IOUtils.toString(in, StandardCharsets.UTF_8), is("second build" + System.lineSeparator()));
+        }
+    }
+
+    @Test
+    public void oldBuildsAreDeletedWhenOverTheCountLimit() throws Exception {
+        BuildHistory history = new BuildHistory(dir, 2, Long.MAX_VALUE);
+        for (int i = 0; i < 4; i++) {
+            record(history, "build " + i);
+        }
+        assertThat(ids(history.builds()), contains(4L, 3L));
+    }
+
+    @Test
+    public void theLatestBuildIsKeptEvenIfOverTheSizeLimit() throws Exception {
+        BuildHistory history = new BuildHistory(dir, 10, 1);
+        record(history, "build 1");
+        record(history, "build 2");
+        assertThat(ids(history.builds()), contains(2L));
+    }
+
+    @Test
+    public void unfinishedBuildsAreNotListedAndAreCleanedUpOnRestart() throws Exception {
+        BuildHistory history = new BuildHistory(dir, 10, Long.MAX_VALUE);
+        record(history, "build 1");
+        history.start().consumeLine("this build never finishes");
+        assertThat(ids(history.builds()), contains(1L));
+
+        BuildHistory restarted = new BuildHistory(dir, 10, Long.MAX_VALUE);
+        assertThat(dir.list((d, name) -> name.endsWith(".partial")).length, is(0));
+        assertThat(ids(restarted.builds()), contains(1L));
+    }
+
+    private static void record(BuildHistory history, String line) throws Exception {
+        BuildHistory.Recording recording = history.start();
+        recording.consumeLine(line);
+        recording.finish(BuildStatus.success(Instant.now(), Instant.now(), "git://something/.git", null, "maven"));
+    }
+
+    private static List<Long> ids(List<BuildHistory.BuildRecord> builds) {
+        return builds.stream().map(b -> b.id).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,76 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BuildQueueTest {
+
+    @Test
+    public void buildsStartStraightAwayWhileThereIsCapacity() throws Exception {
+        BuildQueue queue = new BuildQueue(2);
+        List<Integer> positions = new CopyOnWriteArrayList<>();
+        try (BuildQueue.Slot one = queue.join("one"); BuildQueue.Slot two = queue.join("two")) {
+            one.await(positions::add);
+            two.await(positions::add);
+            assertThat(positions, is(empty()));
+            assertThat(queue.toJSON().getJSONArray("running").toList(), contains("one", "two"));
+        }
+        assertThat(queue.toJSON().getJSONArray("running").toList(), is(empty()));
+    }
+
+    @Test
+    public void waitingBuildsStartInOrderAndAreToldTheirPosition() throws Exception {
+        BuildQueue queue = new BuildQueue(1);
+        BuildQueue.Slot first = queue.join("first");
+        first.await(p -> {});
+
+        List<Integer> secondPositions = new CopyOnWriteArrayList<>();
+        List<String> started = new CopyOnWriteArrayList<>();
+        CountDownLatch bothQueued = new CountDownLatch(2);
+        CountDownLatch bothFinished = new CountDownLatch(2);
+        BuildQueue.Slot second = queue.join("second");
+        BuildQueue.Slot third = queue.join("third");
+        startWaiting("second", second, p -> { secondPositions.add(p); bothQueued.countDown(); }, started, bothFinished);
+        startWaiting("third", third, p -> bothQueued.countDown(), started, bothFinished);
+
+        assertThat(bothQueued.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(secondPositions, contains(1));
+        assertThat(queue.toJSON().getJSONArray("waiting").toList(), contains("second", "third"));
+
+        first.close();
+        assertThat(bothFinished.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(started, contains("second", "third"));
+    }
+
+    @Test
+    public void closingAWaitingSlotTakesItOutOfTheQueue() throws Exception {
+        BuildQueue queue = new BuildQueue(1);
+        BuildQueue.Slot running = queue.join("running");
+        running.await(p -> {});
+        BuildQueue.Slot waiting = queue.join("waiting");
+        waiting.close();
+        assertThat(queue.toJSON().getJSONArray("waiting").toList(), is(empty()));
+        running.close();
+    }
+
+    private static void startWaiting(String name, BuildQueue.Slot slot, IntConsumer positionListener, List<String> started, CountDownLatch finished) {
+        new Thread(() -> {
+            try (slot) {
+                slot.await(positionListener);
+                started.add(name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+        }).start();
+    }
+}
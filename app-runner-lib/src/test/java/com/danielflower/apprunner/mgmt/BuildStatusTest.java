@@ -6,6 +6,7 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Date;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -31,6 +32,15 @@ public class BuildStatusTest {
             "status: 'fetching', startTime: '" + startTime.toString() + "', description: 'Fetching changes from git'" +
             ", gitUrl: " + GIT_URL + "}", s, JSONCompareMode.STRICT);
     }
+    @Test
+    public void queuedWorks() {
+        Instant startTime = Instant.now();
+        JSONObject s = BuildStatus.queued(startTime, GIT_URL, aCommit(), "maven", 3).toJSON();
+        JSONAssert.assertEquals("{" +
+            "runnerId: 'maven', status: 'queued', startTime: '" + startTime.toString() + "', queuePosition: 3, commit: {}" +
+            "}", s, JSONCompareMode.LENIENT);
+    }
+
     @Test
     public void inProgressWorks() {
         Instant now = Instant.now();
@@ -51,6 +61,18 @@ public class BuildStatusTest {
             "}", s, JSONCompareMode.LENIENT);
     }
 
+    @Test
+    public void warmupResultsAreIncludedInSuccessfulBuilds() {
+        Instant start = Instant.now();
+        WarmupResult warmup = new WarmupResult("script", 20, 1, 0, 1500, true, Arrays.asList(120L, 8L));
+        JSONObject s = BuildStatus.success(start, start.plusMillis(10000), GIT_URL, aCommit(), "maven", warmup).toJSON();
+        JSONAssert.assertEquals("{" +
+            "status: 'success', warmup: {source: 'script', requests: 20, errors: 1, skippedPaths: 0, durationMillis: 1500, " +
+            "latencyTargetReached: true}" +
+            "}", s, JSONCompareMode.LENIENT);
+        assertThat(s.getJSONObject("warmup").getJSONArray("latencyCurve").toList(), is(Arrays.asList(120L, 8L)));
+    }
+
     @Test
     public void failureWorks() {
         Instant start = Instant.now();
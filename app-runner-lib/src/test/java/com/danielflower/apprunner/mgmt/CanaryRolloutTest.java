@@ -0,0 +1,108 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.problems.InvalidConfigException;
+import com.danielflower.apprunner.problems.ProjectCannotStartException;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class CanaryRolloutTest {
+
+    private static final TrafficStats LIVE = new TrafficStats(100, 1, 10, 20, 40);
+
+    @Test
+    public void stepsAreIncreasingPercentagesWithoutTheFinal100() {
+        assertThat(CanaryRollout.parseSteps("5, 25,100"), contains(5, 25));
+        assertThat(CanaryRollout.parseSteps("10%,50%"), contains(10, 50));
+        assertThat(CanaryRollout.parseSteps(""), is(empty()));
+        for (String invalid : new String[]{"25,5", "5,5", "0", "120", "five"}) {
+            try {
+                CanaryRollout.parseSteps(invalid);
+                fail("Should not have parsed " + invalid);
+            } catch (InvalidConfigException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void regressionsInP99LatencyOrErrorRateAreDetected() {
+        CanaryRollout rollout = new CanaryRollout(Collections.singletonList(5), 1, 50, 1, 20);
+        assertThat(rollout.regression(LIVE, new TrafficStats(50, 1, 12, 25, 60)), is(nullValue()));
+        assertThat(rollout.regression(LIVE, new TrafficStats(50, 0, 12, 25, 61)), containsString("p99 latency was 61ms compared with 40ms"));
+        assertThat(rollout.regression(LIVE, new TrafficStats(50, 2, 10, 20, 40)), containsString("5xx rate was 4% compared with 1%"));
+        assertThat(rollout.regression(LIVE, new TrafficStats(10, 10, 500, 500, 500)), is(nullValue()));
+    }
+
+    @Test
+    public void eachStepIsRunAndTheCanaryIsLeftInPlaceIfThereIsNoRegression() throws Exception {
+        FakeCanary canary = new FakeCanary(new TrafficStats(50, 0, 10, 20, 40), new TrafficStats(50, 0, 10, 20, 40));
+        new CanaryRollout(Arrays.asList(5, 25), 1, 50, 1, 20).run(line -> {}, canary);
+        assertThat(canary.shifts, contains(5, 25));
+        assertThat(canary.rolledBack, is(false));
+        assertThat(canary.ended, is(true));
+    }
+
+    @Test
+    public void slowCanariesAreRolledBack() throws Exception {
+        FakeCanary canary = new FakeCanary(LIVE, new TrafficStats(50, 0, 100, 200, 400));
+        try {
+            new CanaryRollout(Arrays.asList(5, 25), 1, 50, 1, 20).run(line -> {}, canary);
+            fail("Should have rolled back");
+        } catch (ProjectCannotStartException e) {
+            assertThat(e.getMessage(), containsString("rolled back at 5% of traffic"));
+        }
+        assertThat(canary.shifts, contains(5));
+        assertThat(canary.rolledBack, is(true));
+    }
+
+    private static class FakeCanary implements CanaryRouting.Canary {
+        private final TrafficStats live;
+        private final TrafficStats candidate;
+        final List<Integer> shifts = new ArrayList<>();
+        boolean rolledBack;
+        boolean ended;
+
+        FakeCanary(TrafficStats live, TrafficStats candidate) {
+            this.live = live;
+            this.candidate = candidate;
+        }
+
+        public void shift(int percent) {
+            shifts.add(percent);
+        }
+
+        public TrafficStats liveStats() {
+            return live;
+        }
+
+        public TrafficStats candidateStats() {
+            return candidate;
+        }
+
+        public Map<URL, TrafficStats> instanceStats() {
+            return Collections.emptyMap();
+        }
+
+        public int candidateActiveRequests() {
+            return 0;
+        }
+
+        public void rollBack() {
+            rolledBack = true;
+        }
+
+        public void end() {
+            ended = true;
+        }
+    }
+}
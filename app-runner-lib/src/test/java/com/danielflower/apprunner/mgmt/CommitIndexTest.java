@@ -0,0 +1,82 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+import scaffolding.Photocopier;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CommitIndexTest {
+
+    private final File indexFile = new File("target/commit-index/" + UUID.randomUUID() + ".json");
+
+    @Test
+    public void onlyNewCommitsAreReadAfterTheFirstUpdate() throws Exception {
+        Git git = Git.init().setDirectory(Photocopier.folderForSampleProject("commit-index")).call();
+        commit(git, "Zed", "First");
+        commit(git, "Alice", "Second");
+        commit(git, "Zed", "Third");
+
+        CommitIndex index = new CommitIndex(indexFile);
+        assertThat(index.update(git.getRepository()), is(3));
+        assertThat(index.contributors(), contains("Alice", "Zed"));
+        assertThat(index.update(git.getRepository()), is(0));
+
+        RevCommit latest = commit(git, "Bob", "Fourth");
+        assertThat(index.update(git.getRepository()), is(1));
+        assertThat(index.contributors(), contains("Alice", "Bob", "Zed"));
+        assertThat(index.head(git.getRepository()).id, is(latest.getId().name()));
+    }
+
+    @Test
+    public void theIndexIsReloadedFromDisk() throws Exception {
+        Git git = Git.init().setDirectory(Photocopier.folderForSampleProject("commit-index")).call();
+        RevCommit first = commit(git, "Alice", "First");
+        new CommitIndex(indexFile).update(git.getRepository());
+
+        CommitIndex reloaded = new CommitIndex(indexFile);
+        assertThat(reloaded.contributors(), contains("Alice"));
+        assertThat(reloaded.head(git.getRepository()).message, is(first.getFullMessage()));
+        assertThat(reloaded.update(git.getRepository()), is(0));
+    }
+
+    @Test
+    public void theIndexIsRebuiltWhenTheHistoryIsRewritten() throws Exception {
+        Git git = Git.init().setDirectory(Photocopier.folderForSampleProject("commit-index")).call();
+        RevCommit first = commit(git, "Alice", "First");
+        commit(git, "Mallory", "Second");
+        CommitIndex index = new CommitIndex(indexFile);
+        index.update(git.getRepository());
+        assertThat(index.contributors(), contains("Alice", "Mallory"));
+
+        // like a force push, the rewritten commit is still in the object database but is no longer reachable
+        git.reset().setMode(ResetCommand.ResetType.HARD).setRef(first.name()).call();
+        commit(git, "Bob", "Replacement second");
+        assertThat(index.update(git.getRepository()), is(2));
+        assertThat(index.contributors(), contains("Alice", "Bob"));
+    }
+
+    @Test
+    public void emptyReposHaveNoContributorsOrHead() throws Exception {
+        Git git = Git.init().setDirectory(Photocopier.folderForSampleProject("commit-index")).call();
+        CommitIndex index = new CommitIndex(indexFile);
+        assertThat(index.update(git.getRepository()), is(0));
+        assertThat(index.contributors(), is(empty()));
+        assertThat(index.head(git.getRepository()), is(nullValue()));
+    }
+
+    private static RevCommit commit(Git git, String author, String message) throws Exception {
+        FileUtils.writeStringToFile(new File(git.getRepository().getWorkTree(), "file.txt"), message, StandardCharsets.UTF_8);
+        git.add().addFilepattern(".").call();
+        return git.commit().setMessage(message).setAuthor(new PersonIdent(author, author + "@example.org")).call();
+    }
+}
@@ -0,0 +1,261 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.runners.BuildCancellation;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DeployCoalescerTest {
+
+    private final DeployCoalescer coalescer = new DeployCoalescer();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Test
+    public void requestsMadeDuringADeployShareOneFollowUpDeploy() throws Exception {
+        AtomicInteger deployCount = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        DeployCoalescer.Deploy deploy = output -> {
+            int number = deployCount.incrementAndGet();
+            output.consumeLine("Deploy " + number);
+            if (number == 1) {
+                firstStarted.countDown();
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            }
+        };
+
+        List<String> firstOutput = new CopyOnWriteArrayList<>();
+        Future<?> first = executor.submit(() -> {
+            coalescer.deploy(firstOutput::add, deploy);
+            return null;
+        });
+        assertThat(firstStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        List<String> secondOutput = new CopyOnWriteArrayList<>();
+        List<String> thirdOutput = new CopyOnWriteArrayList<>();
+        Future<?> second = executor.submit(() -> {
+            coalescer.deploy(secondOutput::add, deploy);
+            return null;
+        });
+        waitForLineCount(secondOutput, 1);
+        Future<?> third = executor.submit(() -> {
+            coalescer.deploy(thirdOutput::add, deploy);
+            return null;
+        });
+        waitForLineCount(thirdOutput, 1);
+
+        releaseFirst.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        third.get(10, TimeUnit.SECONDS);
+
+        assertThat(deployCount.get(), is(2));
+        assertThat(firstOutput, contains("Deploy 1"));
+        assertThat(secondOutput, hasItem("Deploy 2"));
+        assertThat(thirdOutput, hasItem("Deploy 2"));
+        executor.shutdown();
+    }
+
+    @Test
+    public void everyCallerSharingADeployGetsItsFailure() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> {
+            coalescer.deploy(line -> {}, output -> {
+                firstStarted.countDown();
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            });
+            return null;
+        });
+        assertThat(firstStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        DeployCoalescer.Deploy failingDeploy = output -> {
+            throw new IllegalStateException("Build failed");
+        };
+        List<String> leaderOutput = new CopyOnWriteArrayList<>();
+        List<String> followerOutput = new CopyOnWriteArrayList<>();
+        Future<?> leader = executor.submit(() -> {
+            coalescer.deploy(leaderOutput::add, failingDeploy);
+            return null;
+        });
+        waitForLineCount(leaderOutput, 1);
+        Future<?> follower = executor.submit(() -> {
+            coalescer.deploy(followerOutput::add, failingDeploy);
+            return null;
+        });
+        waitForLineCount(followerOutput, 1);
+        releaseFirst.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        for (Future<?> future : List.of(leader, follower)) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                throw new AssertionError("Should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause().getMessage(), is("Build failed"));
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void aCallerCancelledWhileWaitingToDeployDoesNotHoldUpTheOthers() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> {
+            coalescer.deploy(line -> {}, output -> {
+                firstStarted.countDown();
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            });
+            return null;
+        });
+        assertThat(firstStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        AtomicInteger deployCount = new AtomicInteger();
+        DeployCoalescer.Deploy deploy = output -> output.consumeLine("Deploy " + deployCount.incrementAndGet());
+        List<String> cancelledOutput = new CopyOnWriteArrayList<>();
+        List<String> followerOutput = new CopyOnWriteArrayList<>();
+        Future<?> cancelled = executor.submit(() -> {
+            coalescer.deploy(cancelledOutput::add, deploy);
+            return null;
+        });
+        waitForLineCount(cancelledOutput, 1);
+        Future<?> follower = executor.submit(() -> {
+            coalescer.deploy(followerOutput::add, deploy);
+            return null;
+        });
+        waitForLineCount(followerOutput, 1);
+
+        cancelled.cancel(true);
+        releaseFirst.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        follower.get(10, TimeUnit.SECONDS);
+        assertThat(followerOutput, hasItem("Deploy 1"));
+
+        coalescer.deploy(line -> {}, deploy);
+        assertThat(deployCount.get(), is(2));
+        executor.shutdown();
+    }
+
+    @Test
+    public void cancellingARunningDeployMakesTheCallersSharingItDeployAgain() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> {
+            coalescer.deploy(line -> {}, output -> {
+                firstStarted.countDown();
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            });
+            return null;
+        });
+        assertThat(firstStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        AtomicInteger deployCount = new AtomicInteger();
+        CountDownLatch cancellableStarted = new CountDownLatch(1);
+        DeployCoalescer.Deploy deploy = output -> {
+            int number = deployCount.incrementAndGet();
+            output.consumeLine("Deploy " + number);
+            if (number == 1) {
+                cancellableStarted.countDown();
+                Thread.sleep(10000);
+            }
+        };
+        AtomicReference<BuildCancellation> cancellation = new AtomicReference<>();
+        List<String> leaderOutput = new CopyOnWriteArrayList<>();
+        List<String> followerOutput = new CopyOnWriteArrayList<>();
+        Future<?> leader = executor.submit(() -> {
+            cancellation.set(BuildCancellation.begin());
+            try {
+                coalescer.deploy(leaderOutput::add, deploy);
+            } finally {
+                cancellation.get().end();
+            }
+            return null;
+        });
+        waitForLineCount(leaderOutput, 1);
+        Future<?> follower = executor.submit(() -> {
+            coalescer.deploy(followerOutput::add, deploy);
+            return null;
+        });
+        waitForLineCount(followerOutput, 1);
+        releaseFirst.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        assertThat(cancellableStarted.await(10, TimeUnit.SECONDS), is(true));
+        cancellation.get().cancel();
+        try {
+            leader.get(10, TimeUnit.SECONDS);
+            throw new AssertionError("Should have failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(InterruptedException.class));
+        }
+        follower.get(10, TimeUnit.SECONDS);
+        assertThat(deployCount.get(), is(2));
+        assertThat(followerOutput, hasItems("Deploy 1", "Deploy 2"));
+        assertThat(leaderOutput, not(hasItem("Deploy 2")));
+        executor.shutdown();
+    }
+
+    @Test
+    public void errorsAreGivenToEveryCallerSharingADeploy() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> {
+            coalescer.deploy(line -> {}, output -> {
+                firstStarted.countDown();
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            });
+            return null;
+        });
+        assertThat(firstStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        DeployCoalescer.Deploy erroringDeploy = output -> {
+            throw new OutOfMemoryError("Out of memory");
+        };
+        List<String> leaderOutput = new CopyOnWriteArrayList<>();
+        List<String> followerOutput = new CopyOnWriteArrayList<>();
+        Future<?> leader = executor.submit(() -> {
+            coalescer.deploy(leaderOutput::add, erroringDeploy);
+            return null;
+        });
+        waitForLineCount(leaderOutput, 1);
+        Future<?> follower = executor.submit(() -> {
+            coalescer.deploy(followerOutput::add, erroringDeploy);
+            return null;
+        });
+        waitForLineCount(followerOutput, 1);
+        releaseFirst.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        for (Future<?> future : List.of(leader, follower)) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                throw new AssertionError("Should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(OutOfMemoryError.class));
+            }
+        }
+        coalescer.deploy(line -> {}, output -> {});
+        executor.shutdown();
+    }
+
+    private static void waitForLineCount(List<String> lines, int count) throws InterruptedException {
+        long giveUpAt = System.currentTimeMillis() + 10000;
+        while (lines.size() < count && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertThat(lines.size(), greaterThanOrEqualTo(count));
+    }
+}
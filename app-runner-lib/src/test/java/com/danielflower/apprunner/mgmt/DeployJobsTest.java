@@ -0,0 +1,111 @@
+package com.danielflower.apprunner.mgmt;
+
+import com.danielflower.apprunner.runners.BuildCancellation;
+import com.danielflower.apprunner.runners.ProcessStarter;
+import org.apache.commons.exec.CommandLine;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DeployJobsTest {
+
+    @Test
+    public void jobsRecordTheirOutputAndResult() throws Exception {
+        DeployJobs jobs = new DeployJobs((appName, output) -> output.consumeLine("Building " + appName), 10, 100000);
+        DeployJobs.Job job = jobs.submit("my-app");
+        waitUntilFinished(job);
+        assertThat(job.status(), is(DeployJobs.Status.SUCCEEDED));
+        assertThat(job.log().asString(), containsString("Building my-app"));
+        assertThat(jobs.job(job.id).isPresent(), is(true));
+    }
+
+    @Test
+    public void failuresAreRecorded() throws Exception {
+        DeployJobs jobs = new DeployJobs((appName, output) -> {
+            throw new RuntimeException("Build broke");
+        }, 10, 100000);
+        DeployJobs.Job job = jobs.submit("my-app");
+        waitUntilFinished(job);
+        assertThat(job.status(), is(DeployJobs.Status.FAILED));
+        assertThat(job.toJSON().getString("error"), is("Build broke"));
+    }
+
+    @Test
+    public void cancellingAJobKillsTheBuildProcess() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        DeployJobs jobs = new DeployJobs((appName, output) -> {
+            started.countDown();
+            ProcessStarter.run(line -> {}, new HashMap<>(System.getenv()), new CommandLine("sleep").addArgument("60"), new File("."), 120000);
+        }, 10, 100000);
+        DeployJobs.Job job = jobs.submit("my-app");
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        Thread.sleep(200);
+        long start = System.currentTimeMillis();
+        job.cancel();
+        waitUntilFinished(job);
+        assertThat(job.status(), is(DeployJobs.Status.CANCELLED));
+        assertThat(System.currentTimeMillis() - start, lessThan(20000L));
+    }
+
+    @Test
+    public void cancellingAJobAfterTheNewVersionIsLiveHasNoEffect() throws Exception {
+        CountDownLatch live = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        DeployJobs jobs = new DeployJobs((appName, output) -> {
+            assertThat(BuildCancellation.disableForCurrentThread(), is(true));
+            live.countDown();
+            assertThat(cancelled.await(10, TimeUnit.SECONDS), is(true));
+            Thread.sleep(100);
+        }, 10, 100000);
+        DeployJobs.Job job = jobs.submit("my-app");
+        assertThat(live.await(10, TimeUnit.SECONDS), is(true));
+        job.cancel();
+        cancelled.countDown();
+        waitUntilFinished(job);
+        assertThat(job.status(), is(DeployJobs.Status.SUCCEEDED));
+        assertThat(job.log().asString(), containsString("so the deploy was not cancelled"));
+    }
+
+    @Test
+    public void outputOverTheLimitIsNotKept() throws Exception {
+        DeployJobs jobs = new DeployJobs((appName, output) -> {
+            for (int i = 0; i < 1000; i++) {
+                output.consumeLine("Line " + i);
+            }
+        }, 10, 1000);
+        DeployJobs.Job job = jobs.submit("my-app");
+        waitUntilFinished(job);
+        String log = job.log().asString();
+        assertThat(log, containsString("Line 1" + System.lineSeparator()));
+        assertThat(log, not(containsString("Line 999")));
+        assertThat(log, containsString("See the build log of my-app for the full output"));
+        assertThat(log, endsWith("Success" + System.lineSeparator()));
+        assertThat(job.log().length(), lessThan(1500L));
+    }
+
+    @Test
+    public void onlyTheLatestFinishedJobsAreKept() throws Exception {
+        DeployJobs jobs = new DeployJobs((appName, output) -> {}, 2, 100000);
+        DeployJobs.Job first = jobs.submit("my-app");
+        waitUntilFinished(first);
+        for (int i = 0; i < 2; i++) {
+            waitUntilFinished(jobs.submit("my-app"));
+        }
+        jobs.submit("my-app");
+        assertThat(jobs.job(first.id).isPresent(), is(false));
+    }
+
+    private static void waitUntilFinished(DeployJobs.Job job) throws InterruptedException {
+        long giveUpAt = System.currentTimeMillis() + 30000;
+        while (!job.status().isFinished() && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertThat(job.status().isFinished(), is(true));
+    }
+}
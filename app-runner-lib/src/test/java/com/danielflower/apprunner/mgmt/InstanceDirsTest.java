@@ -0,0 +1,88 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class InstanceDirsTest {
+    private final File root = new File("target/instance-dirs/" + UUID.randomUUID());
+    private Git git;
+
+    @Before
+    public void createRepo() throws Exception {
+        File workTree = new File(root, "repo");
+        git = Git.init().setDirectory(workTree).setInitialBranch("master").call();
+        FileUtils.writeStringToFile(new File(workTree, "src/main/App.java"), "class App {}", StandardCharsets.UTF_8);
+        File script = new File(workTree, "run.sh");
+        FileUtils.writeStringToFile(script, "#!/bin/sh\necho hi", StandardCharsets.UTF_8);
+        script.setExecutable(true);
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("Initial commit").setAuthor("Tester", "tester@example.org").call();
+    }
+
+    @After
+    public void closeRepo() {
+        git.close();
+    }
+
+    @Test
+    public void checkoutWritesTheFilesAtHead() throws Exception {
+        File dest = dir("checkout");
+        FileUtils.writeStringToFile(new File(git.getRepository().getWorkTree(), "untracked.txt"), "not committed", StandardCharsets.UTF_8);
+
+        assertThat(InstanceDirs.populate(git.getRepository(), dest, InstanceDirs.Mode.CHECKOUT), is(InstanceDirs.Mode.CHECKOUT));
+
+        assertThat(FileUtils.readFileToString(new File(dest, "src/main/App.java"), StandardCharsets.UTF_8), is("class App {}"));
+        assertThat(new File(dest, "run.sh").canExecute(), is(true));
+        assertThat(new File(dest, "untracked.txt").exists(), is(false));
+        assertThat(new File(dest, ".git").exists(), is(false));
+    }
+
+    @Test
+    public void linkedFilesShareTheWorkTreeFiles() throws Exception {
+        File dest = dir("link");
+        assertThat(InstanceDirs.populate(git.getRepository(), dest, InstanceDirs.Mode.LINK), is(InstanceDirs.Mode.LINK));
+        File workTreeFile = new File(git.getRepository().getWorkTree(), "src/main/App.java");
+        assertThat(Files.isSameFile(new File(dest, "src/main/App.java").toPath(), workTreeFile.toPath()), is(true));
+    }
+
+    @Test
+    public void copyingCopiesTheWorkTree() throws Exception {
+        File dest = dir("copy");
+        assertThat(InstanceDirs.populate(git.getRepository(), dest, InstanceDirs.Mode.COPY), is(InstanceDirs.Mode.COPY));
+        assertThat(FileUtils.readFileToString(new File(dest, "src/main/App.java"), StandardCharsets.UTF_8), is("class App {}"));
+        assertThat(new File(dest, ".git").exists(), is(false));
+    }
+
+    @Test
+    public void reapingMovesTheDirectoryOutOfTheWayAndDeletesIt() throws Exception {
+        File instances = dir("instances");
+        File old = new File(instances, "12345");
+        FileUtils.writeStringToFile(new File(old, "target/app.jar"), "jar", StandardCharsets.UTF_8);
+
+        InstanceDirs.reap(old);
+
+        assertThat(old.exists(), is(false));
+        long timeout = System.currentTimeMillis() + 10000;
+        while (instances.list().length > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(instances.list(), emptyArray());
+    }
+
+    private File dir(String name) {
+        File dir = new File(root, name);
+        dir.mkdirs();
+        return dir;
+    }
+}
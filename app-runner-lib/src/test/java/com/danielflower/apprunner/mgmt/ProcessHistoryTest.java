@@ -0,0 +1,78 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ProcessHistoryTest {
+
+    @Test
+    public void onlyTheMostRecentSamplesAreKept() {
+        ProcessHistory history = new ProcessHistory(Collections::emptyList);
+        assertThat(history.latest(), is(nullValue()));
+        for (int i = 0; i < ProcessHistory.CAPACITY + 5; i++) {
+            history.add(new ProcessSample(Instant.ofEpochSecond(i), 1, 0, i, 1, 1, 0, 0));
+        }
+        List<ProcessSample> samples = history.samples();
+        assertThat(samples, hasSize(ProcessHistory.CAPACITY));
+        assertThat(samples.get(0).rssBytes, is(5L));
+        assertThat(samples.get(samples.size() - 1).rssBytes, is((long) ProcessHistory.CAPACITY + 4));
+        assertThat(history.latest().rssBytes, is((long) ProcessHistory.CAPACITY + 4));
+    }
+
+    @Test
+    public void nothingIsRecordedWhenThereAreNoProcesses() {
+        ProcessHistory history = new ProcessHistory(Collections::emptyList);
+        history.sample(new File("/proc"));
+        history.sample(new File("/proc"));
+        assertThat(history.samples(), is(empty()));
+    }
+
+    @Test
+    public void cpuAndIoOnlyCountProcessesThatWereInThePreviousReading() throws Exception {
+        File procRoot = new File("target/proc/" + UUID.randomUUID());
+        List<Long> pids = new CopyOnWriteArrayList<>(Arrays.asList(100L, 101L));
+        ProcessHistory history = new ProcessHistory(() -> pids);
+        fakeProcess(procRoot, 100, 1000, 4096);
+        fakeProcess(procRoot, 101, 1001, 8192);
+        history.sample(procRoot);
+
+        // 100 reads more, 101 exits and 102 starts
+        fakeProcess(procRoot, 100, 1000, 5096);
+        FileUtils.deleteDirectory(new File(procRoot, "101"));
+        fakeProcess(procRoot, 102, 1002, 1000000);
+        pids.remove(101L);
+        pids.add(102L);
+        history.sample(procRoot);
+
+        ProcessSample sample = history.latest();
+        assertThat(sample.processes, is(2));
+        assertThat(sample.ioReadBytes, is(1000L));
+        assertThat(sample.rssBytes, is(2 * 1024L));
+
+        // 100 has exited and its PID has been given to a new process
+        fakeProcess(procRoot, 100, 2000, 100);
+        fakeProcess(procRoot, 102, 1002, 1000500);
+        history.sample(procRoot);
+        assertThat(history.latest().ioReadBytes, is(500L));
+    }
+
+    private static void fakeProcess(File procRoot, long pid, long startTicks, long readBytes) throws Exception {
+        File dir = new File(procRoot, String.valueOf(pid));
+        FileUtils.writeStringToFile(new File(dir, "stat"), pid + " (java) S 1 100 100 0 -1 4194560 5000 0 0 0 250 50 0 0 20 0 31 0 "
+            + startTicks + " 5000000000 30000 18446744073709551615\n", StandardCharsets.US_ASCII);
+        FileUtils.writeStringToFile(new File(dir, "status"), "Name:\tjava\nVmRSS:\t  1 kB\nThreads:\t1\n", StandardCharsets.US_ASCII);
+        FileUtils.writeStringToFile(new File(dir, "io"), "read_bytes: " + readBytes + "\nwrite_bytes: 0\n", StandardCharsets.US_ASCII);
+    }
+}
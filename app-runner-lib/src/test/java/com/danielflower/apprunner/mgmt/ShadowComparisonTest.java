@@ -0,0 +1,40 @@
+package com.danielflower.apprunner.mgmt;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ShadowComparisonTest {
+
+    private final TrafficStats live = TrafficStats.of(40, 0, Arrays.asList(10L, 10L, 12L, 20L));
+
+    @Test
+    public void percentilesAreCalculatedFromTheLatencies() {
+        assertThat(live.medianMillis, is(12L));
+        assertThat(live.p95Millis, is(20L));
+        assertThat(TrafficStats.of(0, 0, Arrays.asList()).medianMillis, is(0L));
+    }
+
+    @Test
+    public void candidatesThatAreSlowerThanAllowedAreRejected() {
+        TrafficStats slower = TrafficStats.of(40, 0, Arrays.asList(15L, 16L, 17L, 30L));
+        ShadowComparison comparison = new ShadowComparison(live, slower, 0);
+        assertThat(comparison.regression(50, 20), is(nullValue()));
+        assertThat(comparison.regression(20, 20), containsString("median latency was 17ms compared with 12ms"));
+    }
+
+    @Test
+    public void candidatesWithMoreErrorsAreRejected() {
+        TrafficStats failing = TrafficStats.of(40, 4, Arrays.asList(10L, 10L, 12L, 20L));
+        assertThat(new ShadowComparison(live, failing, 0).regression(0, 20), containsString("error rate was 10%"));
+    }
+
+    @Test
+    public void nothingIsRejectedWithoutEnoughRequests() {
+        TrafficStats failing = TrafficStats.of(10, 10, Arrays.asList());
+        assertThat(new ShadowComparison(live, failing, 0).regression(0, 20), is(nullValue()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.danielflower.apprunner.mgmt;
+
+import io.muserver.MuServer;
+import io.muserver.MuServerBuilder;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class WarmupTest {
+
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final MuServer server = MuServerBuilder.httpServer()
+        .addHandler((request, response) -> {
+            received.add(request.uri().getRawPath() + (request.uri().getRawQuery() == null ? "" : "?" + request.uri().getRawQuery()));
+            response.write("Warm");
+            return true;
+        })
+        .start();
+    private final List<URL> urls;
+
+    public WarmupTest() throws Exception {
+        urls = Collections.singletonList(server.uri().resolve("/my-app").toURL());
+    }
+
+    @After
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void recentRequestsAreReplayedUntilTheRequestLimitIsReached() throws Exception {
+        Warmup warmup = new Warmup("my-app", 25, 0, 30000, null, () -> Arrays.asList("/my-app/", "/my-app/things?id=1"));
+        WarmupResult result = warmup.run(line -> {}, urls);
+        assertThat(result.source, is("recent-requests"));
+        assertThat(result.requests, is(25));
+        assertThat(result.errors, is(0));
+        assertThat(result.latencyCurve, hasSize(3));
+        assertThat(received, hasSize(25));
+        assertThat(received, hasItems("/my-app/", "/my-app/things?id=1"));
+        assertThat(result.toJSON().getJSONArray("latencyCurve").length(), is(3));
+    }
+
+    @Test
+    public void scriptsAreUsedInPreferenceToRecentRequestsAndWarmupStopsWhenTheLatencyTargetIsMet() throws Exception {
+        File script = new File("target/warmup/" + UUID.randomUUID() + ".txt");
+        FileUtils.writeStringToFile(script, "# paths to warm up\n/scripted\n\nother\n", StandardCharsets.UTF_8);
+        Warmup warmup = new Warmup("my-app", 1000, 10000, 30000, script, () -> Collections.singletonList("/my-app/recent"));
+        WarmupResult result = warmup.run(line -> {}, urls);
+        assertThat(result.source, is("script"));
+        assertThat(result.latencyTargetReached, is(true));
+        assertThat(result.requests, is(Warmup.BATCH_SIZE));
+        assertThat(received, everyItem(oneOf("/my-app/scripted", "/my-app/other")));
+    }
+
+    @Test
+    public void pathsThatAreNotValidUrlsAreSkipped() throws Exception {
+        Warmup warmup = new Warmup("my-app", 4, 0, 30000, null, () -> Arrays.asList("/my-app/bad path", "/my-app/good", "/my-app/{also bad}"));
+        WarmupResult result = warmup.run(line -> {}, urls);
+        assertThat(result.source, is("recent-requests"));
+        assertThat(result.skippedPaths, is(2));
+        assertThat(result.errors, is(0));
+        assertThat(received, contains("/my-app/good", "/my-app/good", "/my-app/good", "/my-app/good"));
+    }
+
+    @Test
+    public void requestsDoNotWaitPastTheWarmupTimeout() throws Exception {
+        MuServer slowServer = MuServerBuilder.httpServer()
+            .addHandler((request, response) -> {
+                Thread.sleep(5000);
+                response.write("Slow");
+                return true;
+            })
+            .start();
+        try {
+            Warmup warmup = new Warmup("my-app", 1, 0, 500, null, Collections::emptyList);
+            long start = System.currentTimeMillis();
+            WarmupResult result = warmup.run(line -> {}, Collections.singletonList(slowServer.uri().resolve("/my-app").toURL()));
+            assertThat(System.currentTimeMillis() - start, lessThan(3000L));
+            assertThat(result.errors, is(1));
+        } finally {
+            slowServer.stop();
+        }
+    }
+
+    @Test
+    public void eachReplicaIsSentEveryPath() throws Exception {
+        MuServer secondReplica = MuServerBuilder.httpServer()
+            .addHandler((request, response) -> {
+                received.add("replica 2 " + request.uri().getRawPath());
+                response.write("Warm");
+                return true;
+            })
+            .start();
+        try {
+            List<URL> replicas = Arrays.asList(urls.get(0), secondReplica.uri().resolve("/my-app").toURL());
+            Warmup warmup = new Warmup("my-app", 8, 0, 30000, null, () -> Arrays.asList("/my-app/one", "/my-app/two"));
+            warmup.run(line -> {}, replicas);
+            assertThat(received, hasSize(8));
+            assertThat(received, hasItems("/my-app/one", "/my-app/two", "replica 2 /my-app/one", "replica 2 /my-app/two"));
+        } finally {
+            secondReplica.stop();
+        }
+    }
+
+    @Test
+    public void theRootPathIsUsedWhenThereIsNothingElseToReplay() throws Exception {
+        Warmup warmup = new Warmup("my-app", 3, 0, 30000, null, Collections::emptyList);
+        WarmupResult result = warmup.run(line -> {}, urls);
+        assertThat(result.source, is("root"));
+        assertThat(received, contains("/my-app/", "/my-app/", "/my-app/"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.assumeTrue;
+
+public class CgroupTest {
+
+    private final File root = new File("target/cgroups/" + UUID.randomUUID());
+
+    @Before
+    public void createFakeCgroupRoot() throws Exception {
+        assumeTrue(SystemUtils.IS_OS_LINUX);
+        FileUtils.writeStringToFile(new File(root, "cgroup.controllers"), "cpu io memory pids\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(root, "cgroup.procs"), "", StandardCharsets.UTF_8);
+        Cgroup.useRoot(root);
+    }
+
+    @After
+    public void stopUsingCgroups() {
+        Cgroup.leave();
+        Cgroup.useRoot(null);
+    }
+
+    @Test
+    public void nothingIsDoneIfTheRootIsNotACgroup() {
+        Cgroup.useRoot(new File("target/cgroups/not-a-cgroup/" + UUID.randomUUID()));
+        assertThat(Cgroup.isEnabled(), is(false));
+        assertThat(Cgroup.forApp("my-app", Collections.emptyMap(), Collections.emptyMap()), is(nullValue()));
+    }
+
+    @Test
+    public void controllersAreEnabledAndLimitsAreWrittenToTheAppsRunAndBuildCgroups() throws Exception {
+        assertThat(Cgroup.isEnabled(), is(true));
+        assertThat(new File(root, "cgroup.subtree_control").isFile(), is(true));
+
+        Map<String, String> runLimits = new LinkedHashMap<>();
+        runLimits.put("cpu.max", "50000 100000");
+        runLimits.put("memory.max", "512M");
+        Cgroup cgroup = Cgroup.forApp("my-app", runLimits, Collections.singletonMap("memory.max", "1G"));
+        assertThat(cgroup, is(notNullValue()));
+        assertThat(new File(root, "my-app/cgroup.subtree_control").isFile(), is(true));
+        assertThat(read(new File(root, "my-app/run/cpu.max")), is("50000 100000"));
+        assertThat(read(new File(root, "my-app/run/memory.max")), is("512M"));
+        assertThat(read(new File(root, "my-app/build/cpu.max")), is("max"));
+        assertThat(read(new File(root, "my-app/build/memory.max")), is("1G"));
+        assertThat(new File(root, "my-app/memory.max").exists(), is(false));
+    }
+
+    @Test
+    public void limitsThatAreRemovedAreSetBackToUnlimited() throws Exception {
+        Map<String, String> limits = new LinkedHashMap<>();
+        limits.put("cpu.max", "50000 100000");
+        limits.put("cpu.weight", "50");
+        limits.put("memory.max", "512M");
+        limits.put("io.weight", "default 50");
+        Cgroup.forApp("my-app", limits, limits);
+        Cgroup.forApp("my-app", Collections.singletonMap("memory.max", "256M"), Collections.emptyMap());
+        for (String group : new String[] {"run", "build"}) {
+            File dir = new File(root, "my-app/" + group);
+            assertThat(read(new File(dir, "cpu.max")), is("max"));
+            assertThat(read(new File(dir, "cpu.weight")), is("100"));
+            assertThat(read(new File(dir, "io.weight")), is("default 100"));
+        }
+        assertThat(read(new File(root, "my-app/run/memory.max")), is("256M"));
+        assertThat(read(new File(root, "my-app/build/memory.max")), is("max"));
+    }
+
+    @Test
+    public void usageIsReadFromTheCgroupFiles() throws Exception {
+        Cgroup cgroup = Cgroup.forApp("my-app", Collections.emptyMap(), Collections.emptyMap());
+        File dir = new File(root, "my-app/run");
+        write(new File(dir, "cpu.stat"), "usage_usec 123456\nuser_usec 100000\nsystem_usec 23456\nnr_periods 10\nnr_throttled 2\nthrottled_usec 5000\n");
+        write(new File(dir, "memory.current"), "1048576\n");
+        write(new File(dir, "memory.events"), "low 0\nhigh 0\nmax 3\noom 1\noom_kill 1\n");
+        write(new File(dir, "io.stat"), "8:0 rbytes=1000 wbytes=200 rios=3 wios=1 dbytes=0 dios=0\n8:16 rbytes=24 wbytes=0 rios=1 wios=0 dbytes=0 dios=0\n");
+
+        Map<String, Long> usage = cgroup.usage();
+        assertThat(usage.get("cpuUsageMicros"), is(123456L));
+        assertThat(usage.get("cpuThrottledPeriods"), is(2L));
+        assertThat(usage.get("cpuThrottledMicros"), is(5000L));
+        assertThat(usage.get("memoryBytes"), is(1048576L));
+        assertThat(usage, not(hasKey("memoryLimitBytes")));
+        assertThat(usage, not(hasKey("memoryPeakBytes")));
+        assertThat(usage.get("oomKills"), is(1L));
+        assertThat(usage.get("ioReadBytes"), is(1024L));
+        assertThat(usage.get("ioWriteBytes"), is(200L));
+    }
+
+    @Test
+    public void buildProcessesStartedWhileInACgroupWriteTheirPidToTheBuildCgroup() throws Exception {
+        Cgroup cgroup = Cgroup.forApp("my-app", Collections.emptyMap(), Collections.emptyMap());
+        StringBuilder output = new StringBuilder();
+        Cgroup.enter(cgroup);
+        try {
+            ProcessStarter.run(output::append, Collections.emptyMap(), new CommandLine("echo").addArgument("hello"), root, 30000);
+        } finally {
+            Cgroup.leave();
+        }
+        assertThat(output.toString(), containsString("hello"));
+        assertThat(read(cgroup.buildProcsFile()), matchesPattern("[0-9]+"));
+        assertThat(cgroup.runProcsFile().exists(), is(false));
+    }
+
+    private static String read(File file) throws Exception {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8).trim();
+    }
+
+    private static void write(File file, String contents) throws Exception {
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DependencySnapshotsTest {
+    private final File root = new File("target/dependency-snapshots/" + UUID.randomUUID());
+
+    @Test
+    public void keysChangeWhenTheDependencyFilesOrEnvironmentChange() throws Exception {
+        File lockFile = file("package-lock.json", "{\"version\":1}");
+        String key = DependencySnapshots.key("Node 20", lockFile);
+        assertThat(DependencySnapshots.key("Node 20", lockFile), is(key));
+        assertThat(DependencySnapshots.key("Node 22", lockFile), not(key));
+        FileUtils.writeStringToFile(lockFile, "{\"version\":2}", StandardCharsets.UTF_8);
+        assertThat(DependencySnapshots.key("Node 20", lockFile), not(key));
+    }
+
+    @Test
+    public void snapshotsCanBeRestoredWithSymbolicLinksIntact() throws Exception {
+        DependencySnapshots snapshots = new DependencySnapshots(dir("snapshots"), 1024 * 1024);
+        File nodeModules = dir("instance1/node_modules");
+        FileUtils.writeStringToFile(new File(nodeModules, "lib/index.js"), "module.exports = 1", StandardCharsets.UTF_8);
+        Files.createDirectories(nodeModules.toPath().resolve(".bin"));
+        Files.createSymbolicLink(nodeModules.toPath().resolve(".bin/lib"), Paths.get("../lib/index.js"));
+
+        assertThat(snapshots.lookup("key"), is(nullValue()));
+        snapshots.store("key", nodeModules);
+        File restored = new File(root, "instance2/node_modules");
+        DependencySnapshots.restore(snapshots.lookup("key"), restored);
+
+        assertThat(FileUtils.readFileToString(new File(restored, "lib/index.js"), StandardCharsets.UTF_8), is("module.exports = 1"));
+        assertThat(Files.readSymbolicLink(restored.toPath().resolve(".bin/lib")), is(Paths.get("../lib/index.js")));
+    }
+
+    @Test
+    public void changesToARestoredSnapshotDoNotChangeTheSnapshot() throws Exception {
+        DependencySnapshots snapshots = new DependencySnapshots(dir("snapshots"), 1024 * 1024);
+        File nodeModules = dir("instance1/node_modules");
+        FileUtils.writeStringToFile(new File(nodeModules, ".package-lock.json"), "original", StandardCharsets.UTF_8);
+        snapshots.store("key", nodeModules);
+
+        File restored = new File(root, "instance2/node_modules");
+        DependencySnapshots.restore(snapshots.lookup("key"), restored);
+        Files.write(restored.toPath().resolve(".package-lock.json"), "changed by npm".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(FileUtils.readFileToString(new File(snapshots.lookup("key"), ".package-lock.json"), StandardCharsets.UTF_8), is("original"));
+    }
+
+    @Test
+    public void incompleteSnapshotsAreDiscarded() throws Exception {
+        File snapshotsDir = dir("snapshots");
+        DependencySnapshots snapshots = new DependencySnapshots(snapshotsDir, 1024 * 1024);
+        FileUtils.writeStringToFile(new File(snapshots.emptyEntry("key"), "bin/pip"), "pip", StandardCharsets.UTF_8);
+        assertThat(snapshots.lookup("key"), is(nullValue()));
+
+        snapshots = new DependencySnapshots(snapshotsDir, 1024 * 1024);
+        assertThat(new File(snapshotsDir, "key").exists(), is(false));
+    }
+
+    @Test
+    public void leastRecentlyUsedSnapshotsAreEvictedButTheTwoLatestAreKept() throws Exception {
+        File snapshotsDir = dir("snapshots");
+        DependencySnapshots snapshots = new DependencySnapshots(snapshotsDir, 150);
+        snapshot(snapshots, "one", 20000);
+        snapshot(snapshots, "two", 10000);
+        snapshot(snapshots, "three", 5000);
+        snapshot(snapshots, "four", 0);
+
+        assertThat(snapshots.lookup("one"), is(nullValue()));
+        assertThat(snapshots.lookup("two"), is(nullValue()));
+        assertThat(snapshots.lookup("three"), is(notNullValue()));
+        assertThat(snapshots.lookup("four"), is(notNullValue()));
+    }
+
+    private void snapshot(DependencySnapshots snapshots, String key, long ageInMillis) throws Exception {
+        FileUtils.writeStringToFile(new File(snapshots.emptyEntry(key), "dep.js"), "x".repeat(100), StandardCharsets.UTF_8);
+        snapshots.complete(key);
+        new File(root, "snapshots/" + key + ".size").setLastModified(System.currentTimeMillis() - ageInMillis);
+    }
+
+    private File dir(String path) {
+        File dir = new File(root, path);
+        dir.mkdirs();
+        return dir;
+    }
+
+    private File file(String name, String content) throws Exception {
+        File file = new File(root, name);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,66 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class ProcStatsTest {
+
+    private final File procRoot = new File("target/proc/" + UUID.randomUUID());
+
+    @Test
+    public void theUsageOfEachProcessThatCanBeReadIsReturned() throws Exception {
+        fakeProcess(100, "100 (java) S 1 100 100 0 -1 4194560 5000 0 0 0 250 50 0 0 20 0 31 0 1000 5000000000 30000 18446744073709551615",
+            "Name:\tjava\nVmRSS:\t  120000 kB\nThreads:\t31\n", "rchar: 5000\nwchar: 300\nread_bytes: 4096\nwrite_bytes: 8192\n", 12);
+        fakeProcess(101, "101 (my (odd) app) R 100 100 100 0 -1 4194560 10 0 0 0 7 3 0 0 20 0 2 0 1001 1000000 500 18446744073709551615",
+            "Name:\tmy (odd) app\nVmRSS:\t  1000 kB\nThreads:\t2\n", "read_bytes: 0\nwrite_bytes: 4096\n", 3);
+
+        Map<Long, ProcStats> stats = ProcStats.read(procRoot, Arrays.asList(100L, 101L, 999L));
+        assertThat(stats.keySet(), contains(100L, 101L));
+        ProcStats java = stats.get(100L);
+        assertThat(java.startTicks, is(1000L));
+        assertThat(java.cpuTicks, is(300L));
+        assertThat(java.rssBytes, is(120000L * 1024));
+        assertThat(java.threads, is(31L));
+        assertThat(java.openFiles, is(12L));
+        assertThat(java.ioReadBytes, is(4096L));
+        assertThat(java.ioWriteBytes, is(8192L));
+        ProcStats odd = stats.get(101L);
+        assertThat(odd.startTicks, is(1001L));
+        assertThat(odd.cpuTicks, is(10L));
+        assertThat(odd.ioWriteBytes, is(4096L));
+        assertThat(odd.isSameProcessAs(java), is(false));
+        assertThat(java.isSameProcessAs(ProcStats.read(procRoot, Arrays.asList(100L)).get(100L)), is(true));
+    }
+
+    @Test
+    public void theRealProcFilesystemCanBeReadOnLinux() {
+        File proc = new File("/proc");
+        if (ProcStats.isAvailable(proc)) {
+            Map<Long, ProcStats> all = ProcStats.read(proc, Arrays.asList(ProcessHandle.current().pid()));
+            assertThat(all.size(), is(1));
+            ProcStats stats = all.get(ProcessHandle.current().pid());
+            assertThat(stats.rssBytes > 0, is(true));
+            assertThat(stats.threads > 1, is(true));
+        }
+    }
+
+    private void fakeProcess(long pid, String stat, String status, String io, int openFiles) throws Exception {
+        File dir = new File(procRoot, String.valueOf(pid));
+        FileUtils.writeStringToFile(new File(dir, "stat"), stat + "\n", StandardCharsets.US_ASCII);
+        FileUtils.writeStringToFile(new File(dir, "status"), status, StandardCharsets.US_ASCII);
+        FileUtils.writeStringToFile(new File(dir, "io"), io, StandardCharsets.US_ASCII);
+        for (int i = 0; i < openFiles; i++) {
+            FileUtils.touch(new File(dir, "fd/" + i));
+        }
+    }
+}
@@ -31,6 +31,7 @@ public class ProcessStarterTest {
                 assertThat(resp.getStatus(), is(200));
                 assertThat(resp.getContentAsString(), getResponseMatcher);
                 assertThat(buildLog.toString(), buildLogMatcher);
+                assertThat(runner.processIds(), not(empty()));
             } finally {
                 runner.shutdown();
             }
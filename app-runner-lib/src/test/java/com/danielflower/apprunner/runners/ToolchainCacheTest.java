@@ -0,0 +1,41 @@
+package com.danielflower.apprunner.runners;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ToolchainCacheTest {
+    private final File root = new File("target/toolchain-cache/" + UUID.randomUUID());
+
+    @Test
+    public void eachToolGetsItsOwnDirectory() {
+        ToolchainCache cache = new ToolchainCache(root, 1024);
+        assertThat(cache.dir("cargo-target").isDirectory(), is(true));
+        assertThat(cache.dir("go-build"), not(cache.dir("cargo-target")));
+    }
+
+    @Test
+    public void itIsClearedWhenOverBudget() throws Exception {
+        ToolchainCache cache = new ToolchainCache(root, 150);
+        List<String> buildLog = new ArrayList<>();
+        FileUtils.writeStringToFile(new File(cache.dir("go-build"), "a"), "x".repeat(100), StandardCharsets.UTF_8);
+        cache.enforceBudget(buildLog::add);
+        assertThat(cache.size(), is(100L));
+        assertThat(buildLog, is(empty()));
+
+        File readOnly = new File(cache.dir("go-mod"), "b");
+        FileUtils.writeStringToFile(readOnly, "x".repeat(100), StandardCharsets.UTF_8);
+        readOnly.setReadOnly();
+        cache.enforceBudget(buildLog::add);
+        assertThat(cache.size(), is(0L));
+        assertThat(buildLog, contains(containsString("over its budget")));
+    }
+}
@@ -6,6 +6,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
 public class WaiterTest {
 
     @Test
@@ -16,6 +19,25 @@ public class WaiterTest {
         }
     }
 
+    @Test
+    public void checksAreRetriedQuicklyAtFirst() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        try (Waiter waiter = new Waiter("mock", httpClient -> (count.getAndIncrement() == 3), 1, TimeUnit.MINUTES)) {
+            waiter.blockUntilReady();
+        }
+        assertThat(System.currentTimeMillis() - start, lessThan(400L));
+    }
+
+    @Test
+    public void appsCanBeConsideredStartedWhenTheyWriteAReadyMarker() throws Exception {
+        try (Waiter waiter = Waiter.waitForApp("mock", 1, null, TimeUnit.MINUTES.toMillis(1), "Server started")) {
+            waiter.consoleLine("Starting server");
+            new Thread(() -> waiter.consoleLine("12:00:00 Server started on port 1")).start();
+            waiter.blockUntilReady();
+        }
+    }
+
     @Test(expected = TimeoutException.class)
     public void timesOutIfPredicateNeverReturnsTrue() throws Exception {
         try (Waiter waiter = new Waiter("mock", httpClient -> false, 1, TimeUnit.MILLISECONDS)) {
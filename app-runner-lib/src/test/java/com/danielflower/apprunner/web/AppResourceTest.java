@@ -2,6 +2,7 @@ package com.danielflower.apprunner.web;
 
 import com.danielflower.apprunner.AppEstate;
 import com.danielflower.apprunner.AppRunnerHooks;
+import com.danielflower.apprunner.mgmt.BuildQueue;
 import com.danielflower.apprunner.mgmt.SystemInfo;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
 import com.danielflower.apprunner.runners.MavenRunnerFactory;
@@ -9,6 +10,8 @@ import com.danielflower.apprunner.web.v1.AppResource;
 import io.muserver.rest.MuRuntimeDelegate;
 import org.apache.commons.lang3.NotImplementedException;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -18,24 +21,31 @@ import scaffolding.AppRepo;
 import scaffolding.MockAppDescription;
 import scaffolding.TestConfig;
 
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static com.danielflower.apprunner.web.WebServerTest.fileSandbox;
 import static org.apache.commons.io.output.NullOutputStream.NULL_OUTPUT_STREAM;
+import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assume.assumeTrue;
 
 public class AppResourceTest {
 
     private final MockAppDescription myApp = new MockAppDescription("my-app", "git://something/.git");
     private final MockAppDescription anApp = new MockAppDescription("an-app", "git://something/.git");
-    private final AppEstate estate = new AppEstate(new ProxyMap(), fileSandbox(), new AppRunnerFactoryProvider(Collections.singletonList(MavenRunnerFactory.createIfAvailable(TestConfig.config).get())), new AppRunnerHooks() {});
+    private final AppEstate estate = new AppEstate(TestConfig.config, new ProxyMap(), fileSandbox(), new AppRunnerFactoryProvider(Collections.singletonList(MavenRunnerFactory.createIfAvailable(TestConfig.config).get())), new AppRunnerHooks() {}, new BuildQueue(1));
     private final SystemInfo systemInfo = SystemInfo.create();
     private final AppResource appResource = new AppResource(estate, systemInfo, fileSandbox(), new AppRunnerHooks() {});
 
@@ -59,6 +69,27 @@ public class AppResourceTest {
             "]}", json, JSONCompareMode.STRICT_ORDER);
     }
 
+    @Test
+    public void processSamplesAreReturnedForEachApp() throws Exception {
+        assumeTrue(new File("/proc/self/stat").canRead());
+        estate.add(myApp);
+        myApp.processIds.add(ProcessHandle.current().pid());
+        myApp.processHistory.sample(new File("/proc"));
+        myApp.processHistory.sample(new File("/proc"));
+
+        JSONArray samples = new JSONObject(appResource.processes("my-app")).getJSONArray("samples");
+        assertThat(samples.length(), is(1));
+        JSONObject sample = samples.getJSONObject(0);
+        assertThat(sample.getInt("processes"), is(1));
+        assertThat(sample.getLong("rssBytes"), greaterThan(0L));
+        assertThat(sample.getLong("threads"), greaterThan(0L));
+        assertThat(sample.getLong("openFiles"), greaterThan(0L));
+
+        JSONObject app = new JSONObject(appResource.apps(new MockUriInfo("http://localhost:1234/api/v1/apps"))).getJSONArray("apps").getJSONObject(0);
+        assertThat(app.getString("processesUrl"), is("http://localhost:1234/api/v1/apps/my-app/processes"));
+        assertThat(app.getJSONObject("processes").getLong("rssBytes"), is(sample.getLong("rssBytes")));
+    }
+
     @Test
     public void appsAreCreatedByPostingAndItImmediatelyBuilds() {
         AppRepo repo = AppRepo.create("maven");
@@ -97,7 +128,7 @@ public class AppResourceTest {
         estate.add(myApp);
         estate.add(anApp);
 
-        Response response = appResource.deploy(new MockUriInfo("http://localhost/blah"), "my-app", jaxRequest());
+        Response response = appResource.deploy(new MockUriInfo("http://localhost/blah"), "my-app", false, jaxRequest());
         StreamingOutput stream = (StreamingOutput) response.getEntity();
         stream.write(NULL_OUTPUT_STREAM);
         assertThat(response.getStatus(), is(200));
@@ -110,7 +141,7 @@ public class AppResourceTest {
         estate.add(myApp);
         estate.add(anApp);
 
-        Response response = appResource.deploy(new MockUriInfo("http://localhost/blah"), "unreal-app", jaxRequest());
+        Response response = appResource.deploy(new MockUriInfo("http://localhost/blah"), "unreal-app", false, jaxRequest());
         StreamingOutput stream = (StreamingOutput) response.getEntity();
         try {
             stream.write(NULL_OUTPUT_STREAM);
@@ -121,6 +152,43 @@ public class AppResourceTest {
         }
     }
 
+    @Test
+    public void asyncDeploysReturnAJobWithAStatusAndLog() throws Exception {
+        estate.add(myApp);
+
+        Response response = appResource.deploy(new MockUriInfo("http://localhost:1234/api/v1/apps/my-app/deploy"), "my-app", true, jaxRequest());
+        assertThat(response.getStatus(), is(202));
+        JSONObject job = new JSONObject((String) response.getEntity());
+        String id = job.getString("id");
+        assertThat(response.getHeaderString("Location"), is("http://localhost:1234/api/v1/apps/my-app/deploys/" + id));
+        assertThat(job.getString("logUrl"), is("http://localhost:1234/api/v1/apps/my-app/deploys/" + id + "/log"));
+
+        UriInfo jobUri = new MockUriInfo(response.getHeaderString("Location"));
+        long giveUpAt = System.currentTimeMillis() + 10000;
+        while (!job.getString("status").equals("succeeded") && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+            job = new JSONObject((String) appResource.deployJob(jobUri, "my-app", id).getEntity());
+        }
+        assertThat(job.getString("status"), is("succeeded"));
+        assertThat(myApp.updateCount, is(1));
+
+        Response log = appResource.deployJobLog("my-app", id, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) log.getEntity()).write(out);
+        assertThat(out.toString(StandardCharsets.UTF_8), endsWith("Success" + System.lineSeparator()));
+        assertThat(log.getHeaderString(AppResource.NEXT_SINCE_HEADER), is(String.valueOf(out.size())));
+        assertThat(log.getHeaderString(AppResource.JOB_STATUS_HEADER), is("succeeded"));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void deployJobsOfOtherAppsAreNotFound() throws Exception {
+        estate.add(myApp);
+        estate.add(anApp);
+        Response response = appResource.deploy(new MockUriInfo("http://localhost:1234/api/v1/apps/my-app/deploy"), "my-app", true, jaxRequest());
+        String id = new JSONObject((String) response.getEntity()).getString("id");
+        appResource.deployJob(new MockUriInfo("http://localhost:1234/api/v1/apps/an-app/deploys/" + id), "an-app", id);
+    }
+
     private static Request jaxRequest() {
         return new Request() {
             @Override
@@ -9,8 +9,10 @@ import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -42,7 +44,50 @@ public class AppUriMapperTest {
         assertThat(mapper.mapFrom(mockRequest("/app-runner-home/home/page?blah=ha")).toString(), is(appUrl + "/home/page?blah=ha"));
     }
 
+    @Test
+    public void appsWithOverlappingNamesAreRoutedSeparately() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            proxyMap.add("app" + i, new URL("http://localhost:" + (40000 + i) + "/app" + i));
+        }
+        proxyMap.add("app", new URL("http://localhost:39999/app"));
+        assertThat(mapper.mapFrom(mockRequest("/app")).toString(), is("http://localhost:39999/app"));
+        assertThat(mapper.mapFrom(mockRequest("/app/1")).toString(), is("http://localhost:39999/app/1"));
+        assertThat(mapper.mapFrom(mockRequest("/app1/")).toString(), is("http://localhost:40001/app1/"));
+        assertThat(mapper.mapFrom(mockRequest("/app99?x=y")).toString(), is("http://localhost:40099/app99?x=y"));
+        assertThat(mapper.mapFrom(mockRequest("/app100")), is(nullValue()));
+        assertThat(mapper.mapFrom(mockRequest("//app")), is(nullValue()));
+
+        proxyMap.remove("app1");
+        assertThat(mapper.mapFrom(mockRequest("/app1/")), is(nullValue()));
+        assertThat(mapper.mapFrom(mockRequest("/app2/")).toString(), is("http://localhost:40002/app2/"));
+    }
+
+    @Test
+    public void requestsAreCountedAgainstTheInstancesTheyAreSentTo() throws Exception {
+        proxyMap.add("my-app", new URL("http://localhost:40000/my-app"));
+        mapper.mapFrom(mockRequest("/my-app/"));
+        mapper.mapFrom(mockRequest("/my-app/"));
+        IntSupplier inFlightOnOldVersion = proxyMap.add("my-app", new URL("http://localhost:40001/my-app"));
+        assertThat(inFlightOnOldVersion.getAsInt(), is(2));
+        assertThat(mapper.mapFrom(mockRequest("/my-app/")).toString(), is("http://localhost:40001/my-app/"));
+        assertThat(inFlightOnOldVersion.getAsInt(), is(2));
+        assertThat(proxyMap.upstreams("my-app").activeRequests(), is(1));
+    }
+
+    @Test
+    public void getRequestsAreRecordedForWarmingUpNewVersions() throws Exception {
+        proxyMap.add("my-app", new URL("http://localhost:40000/my-app"));
+        mapper.mapFrom(mockRequest("/my-app/things?id=1"));
+        mapper.mapFrom(mockRequest(Method.POST, "/my-app/things"));
+        mapper.mapFrom(mockRequest("/other-app/"));
+        assertThat(proxyMap.recentRequests("my-app"), contains("/my-app/things?id=1"));
+    }
+
     private MuRequest mockRequest(String relativeUri) {
+        return mockRequest(Method.GET, relativeUri);
+    }
+
+    private MuRequest mockRequest(Method method, String relativeUri) {
         return new MuRequest() {
             @Override
             public String contentType() {
@@ -56,7 +101,7 @@ public class AppUriMapperTest {
 
             @Override
             public Method method() {
-                return null;
+                return method;
             }
 
             @Override
@@ -0,0 +1,99 @@
+package com.danielflower.apprunner.web;
+
+import com.danielflower.apprunner.problems.InvalidConfigException;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class LoadBalancerTest {
+
+    private final Upstream one = upstream(40001);
+    private final Upstream two = upstream(40002);
+    private final Upstream three = upstream(40003);
+    private final Upstream[] all = {one, two, three};
+
+    @Test
+    public void proxyMapSpreadsRequestsAcrossAllInstancesOfAnApp() throws Exception {
+        ProxyMap proxyMap = new ProxyMap();
+        proxyMap.add("my-app", Arrays.asList(new URL("http://localhost:40001/my-app"), new URL("http://localhost:40002/my-app")));
+        assertThat(proxyMap.get("my-app").toString(), is("http://localhost:40001/my-app"));
+        assertThat(proxyMap.get("my-app").toString(), is("http://localhost:40002/my-app"));
+        assertThat(proxyMap.get("my-app").toString(), is("http://localhost:40001/my-app"));
+        assertThat(proxyMap.get("not-an-app"), is(nullValue()));
+    }
+
+    @Test
+    public void replacingAnAppStopsNewRequestsGoingToTheOldInstancesWhileTrackingTheOnesInFlight() throws Exception {
+        ProxyMap proxyMap = new ProxyMap();
+        assertThat(proxyMap.add("my-app", new URL("http://localhost:40001/my-app")).getAsInt(), is(0));
+        Upstream old = proxyMap.choose("my-app");
+        old.requestStarted();
+
+        IntSupplier inFlight = proxyMap.add("my-app", new URL("http://localhost:40002/my-app"));
+        assertThat(inFlight.getAsInt(), is(1));
+        assertThat(proxyMap.get("my-app").toString(), is("http://localhost:40002/my-app"));
+        old.requestCompleted();
+        assertThat(inFlight.getAsInt(), is(0));
+    }
+
+    @Test
+    public void roundRobinCyclesThroughEachUpstream() {
+        LoadBalancer lb = LoadBalancer.fromName("round-robin");
+        for (int i = 0; i < 2; i++) {
+            assertThat(lb.choose(all), sameInstance(one));
+            assertThat(lb.choose(all), sameInstance(two));
+            assertThat(lb.choose(all), sameInstance(three));
+        }
+    }
+
+    @Test
+    public void leastOutstandingPicksTheLeastBusyUpstream() {
+        LoadBalancer lb = LoadBalancer.fromName("least-outstanding");
+        one.requestStarted();
+        one.requestStarted();
+        two.requestStarted();
+        three.requestStarted();
+        three.requestStarted();
+        for (int i = 0; i < 5; i++) {
+            assertThat(lb.choose(all), sameInstance(two));
+        }
+        two.requestStarted();
+        two.requestStarted();
+        three.requestCompleted();
+        assertThat(lb.choose(all), sameInstance(three));
+    }
+
+    @Test
+    public void powerOfTwoNeverPicksTheBusierOfTwoUpstreams() {
+        LoadBalancer lb = LoadBalancer.fromName("power-of-two");
+        Upstream[] pair = {one, two};
+        two.requestStarted();
+        for (int i = 0; i < 20; i++) {
+            assertThat(lb.choose(pair), sameInstance(one));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertThat(lb.choose(all), not(sameInstance(two)));
+        }
+    }
+
+    @Test(expected = InvalidConfigException.class)
+    public void unknownPoliciesAreRejected() {
+        LoadBalancer.fromName("random-ish");
+    }
+
+    private static Upstream upstream(int port) {
+        try {
+            return new Upstream(new URL("http://localhost:" + port + "/my-app"));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.danielflower.apprunner.web;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class UpstreamClientTest {
+
+    @Test
+    public void requestsThatCannotBeSentDoNotHoldOntoAConnectionSlot() {
+        UpstreamClient client = new UpstreamClient("my-app", new UpstreamClientSettings(HttpClient.Version.HTTP_1_1, 1), new FailingClient());
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:40000/my-app/")).build();
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<HttpResponse<Void>> result = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+            assertThat(result.isCompletedExceptionally(), is(true));
+        }
+        assertThat(client.activeRequests(), is(0));
+        assertThat(client.waitingRequests(), is(0));
+        assertThat(client.failures(), is(3L));
+    }
+
+    @Test
+    public void requestsWhoseCallerHasGivenUpAreNotSent() {
+        PendingClient httpClient = new PendingClient();
+        UpstreamClient client = new UpstreamClient("my-app", new UpstreamClientSettings(HttpClient.Version.HTTP_1_1, 1), httpClient);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:40000/my-app/")).build();
+        CompletableFuture<HttpResponse<Void>> first = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        CompletableFuture<HttpResponse<Void>> second = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        assertThat(httpClient.sent, hasSize(1));
+        assertThat(client.waitingRequests(), is(1));
+
+        second.cancel(true);
+        first.cancel(true);
+        assertThat(httpClient.sent.get(0).isCancelled(), is(true));
+        assertThat(httpClient.sent, hasSize(1));
+        assertThat(client.activeRequests(), is(0));
+        assertThat(client.waitingRequests(), is(0));
+
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        assertThat(httpClient.sent, hasSize(2));
+        assertThat(client.activeRequests(), is(1));
+    }
+
+    @Test
+    public void blockingAndPushPromiseRequestsUseTheConnectionLimit() throws Exception {
+        UpstreamClient client = new UpstreamClient("my-app", new UpstreamClientSettings(HttpClient.Version.HTTP_1_1, 1), new FailingClient());
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:40000/my-app/")).build();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+            throw new AssertionError("Should have failed");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("Unsupported request"));
+        }
+        CompletableFuture<HttpResponse<Void>> result = client.sendAsync(request, HttpResponse.BodyHandlers.discarding(), null);
+        assertThat(result.isCompletedExceptionally(), is(true));
+        assertThat(client.requests(), is(2L));
+        assertThat(client.failures(), is(2L));
+        assertThat(client.activeRequests(), is(0));
+    }
+
+    private static class PendingClient extends FailingClient {
+        private final List<CompletableFuture<?>> sent = new ArrayList<>();
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+            CompletableFuture<HttpResponse<T>> future = new CompletableFuture<>();
+            sent.add(future);
+            return future;
+        }
+    }
+
+    private static class FailingClient extends HttpClient {
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+            throw new IllegalArgumentException("Unsupported request");
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+            throw new IllegalArgumentException("Unsupported request");
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+            throw new IllegalArgumentException("Unsupported request");
+        }
+
+        @Override
+        public Optional<CookieHandler> cookieHandler() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Duration> connectTimeout() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Redirect followRedirects() {
+            return Redirect.NEVER;
+        }
+
+        @Override
+        public Optional<ProxySelector> proxy() {
+            return Optional.empty();
+        }
+
+        @Override
+        public SSLContext sslContext() {
+            return null;
+        }
+
+        @Override
+        public SSLParameters sslParameters() {
+            return null;
+        }
+
+        @Override
+        public Optional<Authenticator> authenticator() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Version version() {
+            return Version.HTTP_1_1;
+        }
+
+        @Override
+        public Optional<Executor> executor() {
+            return Optional.empty();
+        }
+    }
+}
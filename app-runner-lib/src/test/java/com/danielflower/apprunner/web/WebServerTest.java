@@ -3,6 +3,11 @@ package com.danielflower.apprunner.web;
 import com.danielflower.apprunner.AppEstate;
 import com.danielflower.apprunner.AppRunnerHooks;
 import com.danielflower.apprunner.FileSandbox;
+import com.danielflower.apprunner.StartupScheduler;
+import com.danielflower.apprunner.mgmt.BuildHistory;
+import com.danielflower.apprunner.mgmt.BuildQueue;
+import com.danielflower.apprunner.mgmt.BuildStatus;
+import com.danielflower.apprunner.mgmt.ShadowComparison;
 import com.danielflower.apprunner.mgmt.SystemInfo;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
 import com.danielflower.apprunner.web.v1.AppResource;
@@ -13,20 +18,39 @@ import io.muserver.MuServerBuilder;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import scaffolding.MockAppDescription;
+import scaffolding.TestConfig;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
 
 public class WebServerTest {
 
@@ -34,21 +58,24 @@ public class WebServerTest {
     private HttpClient client;
     private WebServer webServer;
     private ProxyMap proxyMap = new ProxyMap();
+    private UpstreamClients upstreamClients = new UpstreamClients(proxyMap, appName -> appName.equals("limited-app")
+        ? new UpstreamClientSettings(java.net.http.HttpClient.Version.HTTP_1_1, 1) : UpstreamClientSettings.DEFAULT);
     private TestServer appServer;
     private String webServerUrl;
+    private AppEstate estate;
 
     @Before
     public void setup() throws Exception {
         client = new HttpClient();
         client.setFollowRedirects(false);
         client.start();
-        AppEstate estate = new AppEstate(proxyMap, fileSandbox(),
-            new AppRunnerFactoryProvider(new ArrayList<>()), new AppRunnerHooks() {});
+        estate = new AppEstate(TestConfig.config, proxyMap, fileSandbox(),
+            new AppRunnerFactoryProvider(new ArrayList<>()), new AppRunnerHooks() {}, new BuildQueue(1));
         int port = WebServer.getAFreePort();
         webServerUrl = "http://localhost:" + port;
         SystemInfo systemInfo = SystemInfo.create();
-        webServer = new WebServer(port, -1, null, null, -1, proxyMap, "test-app",
-            new SystemResource(systemInfo, new AtomicBoolean(true), new ArrayList<>(), null), new AppResource(estate, systemInfo, fileSandbox(), new AppRunnerHooks() {}), PROXY_TIMEOUT, PROXY_TIMEOUT, "apprunner", 500 * 1024 * 1024);
+        webServer = new WebServer(port, -1, null, null, -1, proxyMap, upstreamClients, "test-app",
+            new SystemResource(systemInfo, new StartupScheduler(1, app -> 0), new BuildQueue(1), new ArrayList<>(), null, upstreamClients), new AppResource(estate, systemInfo, fileSandbox(), new AppRunnerHooks() {}), PROXY_TIMEOUT, PROXY_TIMEOUT, "apprunner", 500 * 1024 * 1024);
         webServer.start();
         appServer = new TestServer();
     }
@@ -101,19 +128,216 @@ public class WebServerTest {
         assertThat(resp.getStatus(), is(200));
     }
 
+    @Test
+    public void eachAppHasItsOwnUpstreamClient() throws Exception {
+        proxyMap.add("sample-app", appServer.url);
+        proxyMap.add("limited-app", appServer.url);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.GET(webServerUrl + "/limited-app/").getStatus(), is(200));
+        }
+        assertThat(client.GET(webServerUrl + "/sample-app/").getStatus(), is(200));
+
+        Map<String, UpstreamClient> clients = upstreamClients.clients().stream()
+            .collect(Collectors.toMap(UpstreamClient::appName, c -> c));
+        UpstreamClient limited = clients.get("limited-app");
+        assertThat(limited.settings().maxConnections, is(1));
+        assertThat(limited.requests(), is(3L));
+        assertThat(limited.http1Responses(), is(3L));
+        assertThat(limited.peakActiveRequests(), is(1));
+        assertThat(limited.activeRequests(), is(0));
+        assertThat(clients.get("sample-app").requests(), is(1L));
+    }
+
+    @Test
+    public void consoleLogsCanBeReadIncrementallyOrFollowed() throws Exception {
+        MockAppDescription app = new MockAppDescription("logging-app", "git://something/.git");
+        estate.add(app);
+        String url = webServerUrl + "/api/v1/apps/logging-app/console.log";
+        app.consoleLog.consumeLine("one\n");
+
+        ContentResponse resp = client.GET(url);
+        assertThat(resp.getContentAsString(), is("one\n"));
+        String since = resp.getHeaders().get(AppResource.NEXT_SINCE_HEADER);
+        assertThat(since, is("4"));
+
+        app.consoleLog.consumeLine("two\n");
+        resp = client.GET(url + "?since=" + since);
+        assertThat(resp.getContentAsString(), is("two\n"));
+        assertThat(resp.getHeaders().get(AppResource.NEXT_SINCE_HEADER), is("8"));
+
+        java.net.http.HttpClient followClient = java.net.http.HttpClient.newHttpClient();
+        HttpResponse<InputStream> followed = followClient.send(HttpRequest.newBuilder(URI.create(url + "?follow=true&since=" + since)).build(),
+            HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(followed.headers().firstValue(AppResource.SINCE_HEADER).orElse(null), is("4"));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(followed.body(), StandardCharsets.UTF_8))) {
+            assertThat(reader.readLine(), is("two"));
+            app.consoleLog.consumeLine("three\n");
+            assertThat(reader.readLine(), is("three"));
+            app.consoleLog.consumeLine("four\nfive\n");
+            assertThat(reader.readLine(), is("four"));
+            assertThat(reader.readLine(), is("five"));
+        }
+    }
+
+    @Test
+    public void buildLogsSupportByteRanges() throws Exception {
+        MockAppDescription app = new MockAppDescription("building-app", "git://something/.git");
+        estate.add(app);
+        String url = webServerUrl + "/api/v1/apps/building-app/build.log";
+        app.buildLog.append("0123456789".getBytes(StandardCharsets.UTF_8));
+
+        ContentResponse resp = client.GET(url);
+        assertThat(resp.getStatus(), is(200));
+        assertThat(resp.getContentAsString(), is("0123456789"));
+
+        resp = client.newRequest(url).header("Range", "bytes=3-5").send();
+        assertThat(resp.getStatus(), is(206));
+        assertThat(resp.getContentAsString(), is("345"));
+        assertThat(resp.getHeaders().get("Content-Range"), is("bytes 3-5/10"));
+
+        resp = client.newRequest(url).header("Range", "bytes=-4").send();
+        assertThat(resp.getContentAsString(), is("6789"));
+
+        resp = client.newRequest(url).header("Range", "bytes=10-").send();
+        assertThat(resp.getStatus(), is(416));
+        assertThat(resp.getHeaders().get("Content-Range"), is("bytes */10"));
+
+        resp = client.newRequest(url).header("Range", "bytes=99999999999999999999-").send();
+        assertThat(resp.getStatus(), is(416));
+        assertThat(resp.getHeaders().get("Content-Range"), is("bytes */10"));
+
+        resp = client.newRequest(url).header("Range", "bytes=7-" + Long.MAX_VALUE).send();
+        assertThat(resp.getStatus(), is(206));
+        assertThat(resp.getContentAsString(), is("789"));
+        assertThat(resp.getHeaders().get("Content-Range"), is("bytes 7-9/10"));
+
+        resp = client.newRequest(url).header("Range", "bytes=-99999999999999999999").send();
+        assertThat(resp.getStatus(), is(206));
+        assertThat(resp.getContentAsString(), is("0123456789"));
+    }
+
+    @Test
+    public void pastBuildLogsCanBeListedAndDownloaded() throws Exception {
+        MockAppDescription app = new MockAppDescription("history-app", "git://something/.git");
+        estate.add(app);
+        BuildHistory.Recording recording = app.buildHistory.start();
+        recording.consumeLine("Building history-app");
+        recording.finish(BuildStatus.success(Instant.now(), Instant.now(), "git://something/.git", null, "maven"));
+
+        ContentResponse resp = client.GET(webServerUrl + "/api/v1/apps/history-app/builds");
+        JSONObject build = new JSONObject(resp.getContentAsString()).getJSONArray("builds").getJSONObject(0);
+        assertThat(build.getLong("id"), is(recording.id));
+        assertThat(build.getString("status"), is("success"));
+        String logUrl = build.getString("buildLogUrl");
+
+        resp = client.GET(logUrl); // the jetty client accepts gzip and decodes it
+        assertThat(resp.getHeaders().get("Content-Encoding"), is("gzip"));
+        assertThat(resp.getContentAsString(), is("Building history-app" + System.lineSeparator()));
+
+        HttpResponse<String> plain = java.net.http.HttpClient.newHttpClient()
+            .send(HttpRequest.newBuilder(URI.create(logUrl)).build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(plain.headers().firstValue("Content-Encoding").isPresent(), is(false));
+        assertThat(plain.body(), is("Building history-app" + System.lineSeparator()));
+
+        assertThat(client.GET(webServerUrl + "/api/v1/apps/history-app/builds/100/build.log").getStatus(), is(404));
+    }
+
     @Test
     public void nonProxiedAndOtherNonSpecialURLsResultIn404s() throws Exception {
         ContentResponse resp = client.GET(webServerUrl + "/blahblabhlbah");
         assertThat(resp.getStatus(), is(404));
     }
 
+    @Test
+    public void liveRequestsCanBeMirroredToACandidateVersion() throws Exception {
+        proxyMap.add("test-app", appServer.url);
+        try (TestServer candidate = new TestServer()) {
+            ShadowMirror mirror = proxyMap.startShadowing("test-app", Collections.singletonList(candidate.url), 100);
+            for (int i = 0; i < 5; i++) {
+                assertThat(client.GET(webServerUrl + "/test-app/slow?millis=1").getStatus(), is(200));
+            }
+            assertThat(client.POST(webServerUrl + "/test-app/").send().getStatus(), is(200));
+            long giveUpAt = System.currentTimeMillis() + 10000;
+            while (candidate.requests.get() < 5 && System.currentTimeMillis() < giveUpAt) {
+                Thread.sleep(10);
+            }
+            ShadowComparison comparison = mirror.stop();
+            assertThat(comparison.primary.requests, is(5L));
+            assertThat(comparison.candidate.requests, is(5L));
+            assertThat(comparison.candidate.errors, is(0L));
+            assertThat(candidate.requests.get(), is(5));
+            assertThat(proxyMap.shadow("test-app"), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void canariesGetAShareOfRequestsAndCanBeRolledBack() throws Exception {
+        proxyMap.add("test-app", appServer.url);
+        try (TestServer candidate = new TestServer()) {
+            CanaryRoute canary = proxyMap.startCanary("test-app", Collections.singletonList(candidate.url));
+            canary.shift(50);
+            for (int i = 0; i < 40; i++) {
+                assertThat(client.GET(webServerUrl + "/test-app/hello").getStatus(), is(200));
+            }
+            long giveUpAt = System.currentTimeMillis() + 5000;
+            while (canary.liveStats().requests + canary.candidateStats().requests < 40 && System.currentTimeMillis() < giveUpAt) {
+                Thread.sleep(10);
+            }
+            assertThat(candidate.requests.get(), greaterThan(0));
+            assertThat(canary.candidateStats().requests, is((long) candidate.requests.get()));
+            assertThat(canary.liveStats().requests + canary.candidateStats().requests, is(40L));
+            assertThat(canary.instanceStats().size(), is(2));
+
+            canary.rollBack();
+            int candidateRequests = candidate.requests.get();
+            for (int i = 0; i < 10; i++) {
+                assertThat(client.GET(webServerUrl + "/test-app/hello").getStatus(), is(200));
+            }
+            assertThat(candidate.requests.get(), is(candidateRequests));
+            assertThat(proxyMap.route("/test-app/").canaries(), is(empty()));
+        }
+    }
+
+    @Test
+    public void requestsInFlightToCanariesAreCountedAndNotCutOffByARollBack() throws Exception {
+        proxyMap.add("test-app", appServer.url);
+        try (TestServer candidate = new TestServer()) {
+            CanaryRoute canary = proxyMap.startCanary("test-app", Collections.singletonList(candidate.url));
+            canary.shift(100);
+            CompletableFuture<ContentResponse> slow = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.GET(webServerUrl + "/test-app/slow?millis=500");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long giveUpAt = System.currentTimeMillis() + 5000;
+            while (canary.candidateActiveRequests() == 0 && System.currentTimeMillis() < giveUpAt) {
+                Thread.sleep(10);
+            }
+            assertThat(canary.candidateActiveRequests(), is(1));
+            canary.rollBack();
+            assertThat(slow.get(10, TimeUnit.SECONDS).getStatus(), is(200));
+            giveUpAt = System.currentTimeMillis() + 5000;
+            while (canary.candidateActiveRequests() > 0 && System.currentTimeMillis() < giveUpAt) {
+                Thread.sleep(10);
+            }
+            assertThat(canary.candidateActiveRequests(), is(0));
+        }
+    }
 
     private static class TestServer implements AutoCloseable {
         private final MuServer server;
         final URL url;
+        final AtomicInteger requests = new AtomicInteger();
 
         TestServer() throws Exception {
             server = MuServerBuilder.httpServer()
+                .addHandler((request, response) -> {
+                    requests.incrementAndGet();
+                    return false;
+                })
                 .addHandler(Method.GET, "/test-app", (request, response, pathParams) -> {
                     response.redirect("/test-app/");
                 })
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import static com.danielflower.apprunner.FileSandbox.fullPath;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static scaffolding.ContentResponseMatcher.equalTo;
 
@@ -45,4 +46,21 @@ public class MavenTest {
         assertThat(restClient.deploy(appId).getStatus(), is(200));
         assertThat(restClient.homepage(appId), is(equalTo(200, containsString("My Maven App"))));
     }
+
+    @Test
+    public void redeployingAnUnchangedCommitLaunchesTheCachedBuild() throws Exception {
+        restClient.createApp(appRepo.gitUrl());
+        assertThat(restClient.deploy(appId).getStatus(), is(200));
+        assertThat(restClient.get("/api/v1/apps/" + appId + "/build.log").getContentAsString(), containsString("Cached the build"));
+
+        assertThat(restClient.deploy(appId).getStatus(), is(200));
+        String buildLog = restClient.get("/api/v1/apps/" + appId + "/build.log").getContentAsString();
+        assertThat(buildLog, containsString("so the cached build will be launched"));
+        assertThat(buildLog, not(containsString("Building my-maven-app")));
+        assertThat(restClient.homepage(appId), is(equalTo(200, containsString("My Maven App"))));
+
+        assertThat(restClient.clearBuildCaches(appId).getStatus(), is(204));
+        assertThat(restClient.deploy(appId).getStatus(), is(200));
+        assertThat(restClient.get("/api/v1/apps/" + appId + "/build.log").getContentAsString(), not(containsString("so the cached build will be launched")));
+    }
 }
@@ -1,20 +1,34 @@
 package scaffolding;
 
+import com.danielflower.apprunner.io.ChunkedLog;
+import com.danielflower.apprunner.io.RingBuffer;
 import com.danielflower.apprunner.mgmt.AppDescription;
 import com.danielflower.apprunner.mgmt.Availability;
+import com.danielflower.apprunner.mgmt.BuildHistory;
 import com.danielflower.apprunner.mgmt.BuildStatus;
+import com.danielflower.apprunner.mgmt.ProcessHistory;
 import com.danielflower.apprunner.runners.AppRunnerFactoryProvider;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.maven.shared.invoker.InvocationOutputHandler;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MockAppDescription implements AppDescription {
     private volatile String gitUrl;
     private final  String name;
     public int updateCount = 0;
     private ArrayList<String> contributors;
+    public final ChunkedLog buildLog = new ChunkedLog();
+    public final BuildHistory buildHistory = new BuildHistory(new File("target/build-history/" + UUID.randomUUID()), 20, Long.MAX_VALUE);
+    public final RingBuffer consoleLog = new RingBuffer(64 * 1024);
+    public final List<Long> processIds = new CopyOnWriteArrayList<>();
+    public final ProcessHistory processHistory = new ProcessHistory(() -> processIds);
 
     public MockAppDescription(String name, String gitUrl) {
         this.gitUrl = gitUrl;
@@ -50,13 +64,28 @@ public class MockAppDescription implements AppDescription {
     }
 
     public String latestBuildLog() {
-        return "";
+        return buildLog.asString();
+    }
+
+    @Override
+    public ChunkedLog buildLog() {
+        return buildLog;
+    }
+
+    @Override
+    public BuildHistory buildHistory() {
+        return buildHistory;
     }
 
     public String latestConsoleLog() {
         return "";
     }
 
+    @Override
+    public RingBuffer consoleLog() {
+        return consoleLog;
+    }
+
     public ArrayList<String> contributors() {
         return contributors;
     }
@@ -66,6 +95,14 @@ public class MockAppDescription implements AppDescription {
         throw new NotImplementedException("dataDir");
     }
 
+    public Map<String, Long> resourceUsage() {
+        return Collections.emptyMap();
+    }
+
+    public ProcessHistory processHistory() {
+        return processHistory;
+    }
+
     public void stopApp() {
     }
 
@@ -73,6 +110,11 @@ public class MockAppDescription implements AppDescription {
         ++updateCount;
     }
 
+    @Override
+    public void clearBuildCaches() {
+
+    }
+
     @Override
     public void delete() {
 
@@ -100,4 +100,10 @@ public class RestClient {
             .method(HttpMethod.DELETE)
             .send();
     }
+
+    public ContentResponse clearBuildCaches(String appId) throws Exception {
+        return client.newRequest(appRunnerUrl + "/api/v1/apps/" + appId + "/build-cache")
+            .method(HttpMethod.DELETE)
+            .send();
+    }
 }